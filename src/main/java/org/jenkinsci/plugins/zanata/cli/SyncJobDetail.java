@@ -47,6 +47,26 @@ public class SyncJobDetail implements Serializable {
 
     private String projectConfigs;
 
+    private String pullMode;
+
+    private boolean normalizeTranslations;
+
+    private boolean deltaSync;
+
+    private boolean resumeSync;
+
+    private boolean batchCopyTrans;
+
+    private String readReplicas;
+
+    private int workerIdleMinutes;
+
+    private String transferCompression;
+
+    private int compressionMinBytes;
+
+    private String responseCacheScope;
+
     private String initiatedFromHostURL;
 
     public String getSrcRepoUrl() {
@@ -93,10 +113,86 @@ public class SyncJobDetail implements Serializable {
         return projectConfigs;
     }
 
+    public String getPullMode() {
+        return pullMode;
+    }
+
+    public boolean isNormalizeTranslations() {
+        return normalizeTranslations;
+    }
+
+    public boolean isDeltaSync() {
+        return deltaSync;
+    }
+
+    public boolean isResumeSync() {
+        return resumeSync;
+    }
+
+    public boolean isBatchCopyTrans() {
+        return batchCopyTrans;
+    }
+
+    /**
+     * @return comma separated URLs of read replicas of the Zanata server
+     */
+    public String getReadReplicas() {
+        return readReplicas;
+    }
+
+    /**
+     * @return how long the agent keeps clients and caches warm after a sync.
+     * 0 means not at all.
+     */
+    public int getWorkerIdleMinutes() {
+        return workerIdleMinutes;
+    }
+
+    /**
+     * @return off, responses or both
+     */
+    public String getTransferCompression() {
+        return transferCompression;
+    }
+
+    public int getCompressionMinBytes() {
+        return compressionMinBytes;
+    }
+
+    /**
+     * @return opaque key, given by the controller, under which this sync may
+     * use the shared response cache. null if it may not.
+     */
+    public String getResponseCacheScope() {
+        return responseCacheScope;
+    }
+
     public String getInitiatedFromHostURL() {
         return initiatedFromHostURL;
     }
 
+    /**
+     * @return the settings that decide what a sync pushes and pulls. Settings
+     * that only change how it is done (e.g. compression, read replicas) are
+     * left out, so changing them does not discard a resumable sync.
+     */
+    public String describeSyncInputs() {
+        return MoreObjects.toStringHelper(this)
+                .add("srcRepoUrl", srcRepoUrl)
+                .add("srcRepoBranch", srcRepoBranch)
+                .add("srcRepoType", srcRepoType)
+                .add("zanataUrl", zanataUrl)
+                .add("zanataUsername", zanataUsername)
+                .add("syncToZanataOption", syncToZanataOption)
+                .add("localeId", localeId)
+                .add("projectConfigs", projectConfigs)
+                .add("pullMode", pullMode)
+                .add("normalizeTranslations", normalizeTranslations)
+                .add("deltaSync", deltaSync)
+                .add("batchCopyTrans", batchCopyTrans)
+                .toString();
+    }
+
     @Override
     public String toString() {
         return MoreObjects.toStringHelper(this)
@@ -111,6 +207,15 @@ public class SyncJobDetail implements Serializable {
                 .add("syncToZanataOption", syncToZanataOption)
                 .add("localeId", localeId)
                 .add("projectConfigs", projectConfigs)
+                .add("pullMode", pullMode)
+                .add("normalizeTranslations", normalizeTranslations)
+                .add("deltaSync", deltaSync)
+                .add("resumeSync", resumeSync)
+                .add("batchCopyTrans", batchCopyTrans)
+                .add("readReplicas", readReplicas)
+                .add("workerIdleMinutes", workerIdleMinutes)
+                .add("transferCompression", transferCompression)
+                .add("compressionMinBytes", compressionMinBytes)
                 .toString();
     }
 
@@ -181,6 +286,57 @@ public class SyncJobDetail implements Serializable {
             return this;
         }
 
+        public Builder setPullMode(String pullMode) {
+            syncJobDetail.pullMode = pullMode;
+            return this;
+        }
+
+        public Builder setNormalizeTranslations(
+                boolean normalizeTranslations) {
+            syncJobDetail.normalizeTranslations = normalizeTranslations;
+            return this;
+        }
+
+        public Builder setDeltaSync(boolean deltaSync) {
+            syncJobDetail.deltaSync = deltaSync;
+            return this;
+        }
+
+        public Builder setResumeSync(boolean resumeSync) {
+            syncJobDetail.resumeSync = resumeSync;
+            return this;
+        }
+
+        public Builder setBatchCopyTrans(boolean batchCopyTrans) {
+            syncJobDetail.batchCopyTrans = batchCopyTrans;
+            return this;
+        }
+
+        public Builder setReadReplicas(String readReplicas) {
+            syncJobDetail.readReplicas = readReplicas;
+            return this;
+        }
+
+        public Builder setWorkerIdleMinutes(int workerIdleMinutes) {
+            syncJobDetail.workerIdleMinutes = workerIdleMinutes;
+            return this;
+        }
+
+        public Builder setTransferCompression(String transferCompression) {
+            syncJobDetail.transferCompression = transferCompression;
+            return this;
+        }
+
+        public Builder setCompressionMinBytes(int compressionMinBytes) {
+            syncJobDetail.compressionMinBytes = compressionMinBytes;
+            return this;
+        }
+
+        public Builder setResponseCacheScope(String responseCacheScope) {
+            syncJobDetail.responseCacheScope = responseCacheScope;
+            return this;
+        }
+
         public Builder setInitiatedFromHostURL(String url) {
             syncJobDetail.initiatedFromHostURL = url;
             return this;
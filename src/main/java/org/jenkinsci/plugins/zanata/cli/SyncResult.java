@@ -0,0 +1,403 @@
+/*
+ * Copyright 2017, Red Hat, Inc. and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jenkinsci.plugins.zanata.cli;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+import com.google.common.base.MoreObjects;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+/**
+ * DTO for the outcome of a sync job. It is filled in as each phase runs (on
+ * the agent) and handed back to the build so later steps can tell whether
+ * anything changed.
+ */
+public class SyncResult implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public static final String PHASE_PUSH = "push";
+    public static final String PHASE_PULL = "pull";
+    public static final String PHASE_COMMIT = "commit";
+
+    private int pushedVersions;
+    private int pulledFiles;
+    private final List<String> changedFiles = new ArrayList<>();
+    private String commitId;
+    private final Map<String, Long> durations = new LinkedHashMap<>();
+    private final List<TargetResult> targets = new ArrayList<>();
+    private long bytesSent;
+    private long bytesSentOnWire;
+    private long bytesReceived;
+    private long bytesReceivedOnWire;
+    private final List<String> endpointStats = new ArrayList<>();
+    private int pushedDocuments;
+    private int pulledDocuments;
+    private final Set<String> locales = new TreeSet<>();
+    private long leaseWaitMillis;
+    private int skippedPushes;
+    private int leasedClients;
+    private int idleClients;
+
+    /**
+     * @return number of project versions pushed to Zanata
+     */
+    public int getPushedVersions() {
+        return pushedVersions;
+    }
+
+    public void setPushedVersions(int pushedVersions) {
+        this.pushedVersions = pushedVersions;
+    }
+
+    /**
+     * @return number of local translation files created or updated by pull
+     */
+    public int getPulledFiles() {
+        return pulledFiles;
+    }
+
+    public void setPulledFiles(int pulledFiles) {
+        this.pulledFiles = pulledFiles;
+    }
+
+    /**
+     * @return files committed to the repo
+     */
+    public List<String> getChangedFiles() {
+        return Collections.unmodifiableList(changedFiles);
+    }
+
+    public void addChangedFiles(Collection<String> files) {
+        changedFiles.addAll(files);
+    }
+
+    /**
+     * @return id of the commit made by the sync, or null if nothing was
+     * committed
+     */
+    public String getCommitId() {
+        return commitId;
+    }
+
+    public void setCommitId(String commitId) {
+        this.commitId = commitId;
+    }
+
+    /**
+     * @return duration in milliseconds of each phase that ran
+     */
+    public Map<String, Long> getDurations() {
+        return Collections.unmodifiableMap(durations);
+    }
+
+    public void recordDuration(String phase, long millis) {
+        durations.put(phase, millis);
+    }
+
+    /**
+     * @return push outcome of each Zanata server, when pushing to more than
+     * one server
+     */
+    public List<TargetResult> getTargets() {
+        return Collections.unmodifiableList(targets);
+    }
+
+    public void addTarget(TargetResult target) {
+        targets.add(target);
+    }
+
+    public boolean hasFailedTarget() {
+        return targets.stream().anyMatch(target -> !target.isSuccess());
+    }
+
+    /**
+     * @return request body bytes before compression
+     */
+    public long getBytesSent() {
+        return bytesSent;
+    }
+
+    public long getBytesSentOnWire() {
+        return bytesSentOnWire;
+    }
+
+    /**
+     * @return response body bytes after decompression
+     */
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    public long getBytesReceivedOnWire() {
+        return bytesReceivedOnWire;
+    }
+
+    public void addTransferred(long sent, long sentOnWire, long received,
+            long receivedOnWire) {
+        bytesSent += sent;
+        bytesSentOnWire += sentOnWire;
+        bytesReceived += received;
+        bytesReceivedOnWire += receivedOnWire;
+    }
+
+    /**
+     * @return source and translation documents pushed to Zanata
+     */
+    public int getPushedDocuments() {
+        return pushedDocuments;
+    }
+
+    public void addPushedDocuments(int documents) {
+        pushedDocuments += documents;
+    }
+
+    /**
+     * @return translation documents downloaded from Zanata, whether or not
+     * they changed a local file
+     */
+    public int getPulledDocuments() {
+        return pulledDocuments;
+    }
+
+    public void addPulledDocuments(int documents) {
+        pulledDocuments += documents;
+    }
+
+    /**
+     * @return documents transferred one by one to or from Zanata
+     */
+    public int getDocuments() {
+        return pushedDocuments + pulledDocuments;
+    }
+
+    /**
+     * @return locales translations were transferred for
+     */
+    public Set<String> getLocales() {
+        return Collections.unmodifiableSet(locales);
+    }
+
+    public void addLocales(Collection<String> locales) {
+        this.locales.addAll(locales);
+    }
+
+    /**
+     * @return time spent waiting for other jobs syncing the same project
+     * versions
+     */
+    public long getLeaseWaitMillis() {
+        return leaseWaitMillis;
+    }
+
+    /**
+     * @return project versions not pushed because another job had just
+     * pushed the same input
+     */
+    public int getSkippedPushes() {
+        return skippedPushes;
+    }
+
+    public void addLeaseWait(long waitMillis, int skipped) {
+        leaseWaitMillis += waitMillis;
+        skippedPushes += skipped;
+    }
+
+    /**
+     * @return REST clients the agent's worker had leased when the last phase
+     * ended
+     */
+    public int getLeasedClients() {
+        return leasedClients;
+    }
+
+    /**
+     * @return REST clients the agent's worker kept warm when the last phase
+     * ended
+     */
+    public int getIdleClients() {
+        return idleClients;
+    }
+
+    public void setClients(int leased, int idle) {
+        leasedClients = leased;
+        idleClients = idle;
+    }
+
+    /**
+     * @return request count, statuses and latency histogram of each REST
+     * endpoint used, one line per endpoint and phase
+     */
+    public List<String> getEndpointStats() {
+        return Collections.unmodifiableList(endpointStats);
+    }
+
+    public void addEndpointStats(Collection<String> stats) {
+        endpointStats.addAll(stats);
+    }
+
+    /**
+     * Adds the result of one repository to the result of a job syncing
+     * several. Files are prefixed with the repository name. Commit id and
+     * push targets are per repository so they are not carried over.
+     */
+    public void merge(String repository, SyncResult other) {
+        pushedVersions += other.pushedVersions;
+        pulledFiles += other.pulledFiles;
+        for (String file : other.changedFiles) {
+            changedFiles.add(repository + "/" + file);
+        }
+        other.durations.forEach((phase, millis) -> durations.merge(phase,
+                millis, Long::sum));
+        addTransferred(other.bytesSent, other.bytesSentOnWire,
+                other.bytesReceived, other.bytesReceivedOnWire);
+        pushedDocuments += other.pushedDocuments;
+        pulledDocuments += other.pulledDocuments;
+        locales.addAll(other.locales);
+        addLeaseWait(other.leaseWaitMillis, other.skippedPushes);
+    }
+
+    /**
+     * Pushing to Zanata doesn't change anything later stages build from, so
+     * only pulled files and the commit count.
+     *
+     * @return true if the sync changed local files or committed
+     */
+    public boolean isChanged() {
+        return pulledFiles > 0 || !changedFiles.isEmpty() || commitId != null;
+    }
+
+    public String toJson() {
+        JSONObject json = new JSONObject();
+        json.put("changed", isChanged());
+        json.put("pushedVersions", pushedVersions);
+        json.put("pulledFiles", pulledFiles);
+        json.put("changedFiles", changedFiles);
+        json.put("commitId", commitId == null ? "" : commitId);
+        json.put("durations", durations);
+        JSONArray targetsJson = new JSONArray();
+        for (TargetResult target : targets) {
+            JSONObject targetJson = new JSONObject();
+            targetJson.put("server", target.getServer());
+            targetJson.put("success", target.isSuccess());
+            targetJson.put("pushedVersions", target.getPushedVersions());
+            targetJson.put("durationMillis", target.getDurationMillis());
+            if (target.getError() != null) {
+                targetJson.put("error", target.getError());
+            }
+            targetsJson.add(targetJson);
+        }
+        json.put("targets", targetsJson);
+        JSONObject transfer = new JSONObject();
+        transfer.put("sent", bytesSent);
+        transfer.put("sentOnWire", bytesSentOnWire);
+        transfer.put("received", bytesReceived);
+        transfer.put("receivedOnWire", bytesReceivedOnWire);
+        json.put("transferBytes", transfer);
+        json.put("pushedDocuments", pushedDocuments);
+        json.put("pulledDocuments", pulledDocuments);
+        json.put("leaseWaitMillis", leaseWaitMillis);
+        json.put("skippedPushes", skippedPushes);
+        return json.toString(2);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("pushedVersions", pushedVersions)
+                .add("pulledFiles", pulledFiles)
+                .add("changedFiles", changedFiles.size())
+                .add("commitId", commitId)
+                .add("durations", durations)
+                .add("targets", targets)
+                .toString();
+    }
+
+    /**
+     * Outcome of pushing to one Zanata server.
+     */
+    @ExportedBean(defaultVisibility = 2)
+    public static class TargetResult implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final String server;
+        private final int pushedVersions;
+        private final String error;
+        private final long durationMillis;
+
+        public TargetResult(String server, int pushedVersions, String error,
+                long durationMillis) {
+            this.server = server;
+            this.pushedVersions = pushedVersions;
+            this.error = error;
+            this.durationMillis = durationMillis;
+        }
+
+        @Exported
+        public String getServer() {
+            return server;
+        }
+
+        @Exported
+        public int getPushedVersions() {
+            return pushedVersions;
+        }
+
+        /**
+         * @return failure message or null if push succeeded
+         */
+        @Exported
+        public String getError() {
+            return error;
+        }
+
+        @Exported
+        public long getDurationMillis() {
+            return durationMillis;
+        }
+
+        @Exported
+        public boolean isSuccess() {
+            return error == null;
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("server", server)
+                    .add("pushedVersions", pushedVersions)
+                    .add("error", error)
+                    .add("durationMillis", durationMillis)
+                    .toString();
+        }
+    }
+}
@@ -29,6 +29,9 @@ import org.zanata.client.commands.pull.PullOptions;
  */
 public interface PullService extends Serializable {
 
-    void pullFromZanata(PullOptions pullOptions);
+    /**
+     * @return number of local translation files created or updated
+     */
+    int pullFromZanata(PullOptions pullOptions);
 
 }
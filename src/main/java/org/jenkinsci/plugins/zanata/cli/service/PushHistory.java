@@ -0,0 +1,61 @@
+/*
+ * Copyright 2017, Red Hat, Inc. and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jenkinsci.plugins.zanata.cli.service;
+
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Tells the push which files changed since a project version was last pushed.
+ */
+public interface PushHistory {
+
+    /**
+     * History that knows nothing. Every push is a full push.
+     */
+    PushHistory NONE = new PushHistory() {
+        @Override
+        public Optional<Set<String>> changedPaths(String project,
+                String version) {
+            return Optional.empty();
+        }
+
+        @Override
+        public void pushed(String project, String version) {
+        }
+    };
+
+    /**
+     * @param project
+     *         Zanata project id
+     * @param version
+     *         Zanata project version id
+     * @return paths (relative to repo base, '/' separated) changed since the
+     * last successful push of this project version, or empty if it can not
+     * be worked out and a full push is needed
+     */
+    Optional<Set<String>> changedPaths(String project, String version);
+
+    /**
+     * Records that the project version is now in sync with current revision.
+     */
+    void pushed(String project, String version);
+}
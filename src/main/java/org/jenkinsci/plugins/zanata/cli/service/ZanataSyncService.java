@@ -25,18 +25,56 @@ import java.nio.file.Path;
 
 import org.zanata.client.commands.pull.PullOptions;
 import org.zanata.client.commands.push.PushOptions;
+import org.jenkinsci.plugins.zanata.cli.util.SyncJournal;
 import org.jenkinsci.plugins.zanata.exception.ZanataSyncException;
 
 /**
  * @author Patrick Huang <a href="mailto:pahuang@redhat.com">pahuang@redhat.com</a>
  */
 public interface ZanataSyncService extends Serializable {
+    /**
+     * Pull every document for every locale with separate requests.
+     */
+    String PULL_MODE_DOCUMENT = "document";
+    /**
+     * Only pull documents and locales that changed since last pull.
+     */
+    String PULL_MODE_INCREMENTAL = "incremental";
+
+    String PUSH_TYPE_SOURCE = "source";
+    String PUSH_TYPE_TRANS = "trans";
+    String PUSH_TYPE_BOTH = "both";
 
     PullOptions getPullOptions();
 
     PushOptions getPushOptions();
 
-    void pushToZanata(Path repoBase) throws ZanataSyncException;
+    /**
+     * @return number of project versions pushed
+     */
+    int pushToZanata(Path repoBase) throws ZanataSyncException;
+
+    /**
+     * Pushes only what changed according to the given history. Project
+     * versions without usable history get a full push. Project versions
+     * already completed according to the journal are skipped.
+     *
+     * @return number of project versions pushed (skipped ones not counted)
+     */
+    int pushToZanata(Path repoBase, PushHistory pushHistory,
+            SyncJournal journal) throws ZanataSyncException;
+
+    /**
+     * @return number of local translation files created or updated
+     */
+    int pullFromZanata(Path repoBase) throws ZanataSyncException;
 
-    void pullFromZanata(Path repoBase) throws ZanataSyncException;
+    /**
+     * Pulls everything except the locales already completed according to the
+     * journal, whose pulled files are still in the workspace.
+     *
+     * @return number of local translation files created or updated
+     */
+    int pullFromZanata(Path repoBase, SyncJournal journal)
+            throws ZanataSyncException;
 }
@@ -0,0 +1,314 @@
+/*
+ * Copyright 2017, Red Hat, Inc. and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jenkinsci.plugins.zanata.cli.service.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.Invocation;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.GenericType;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import org.jenkinsci.plugins.zanata.cli.service.PullService;
+import org.jenkinsci.plugins.zanata.cli.util.CancellableSync;
+import org.jenkinsci.plugins.zanata.cli.util.ChangedFileWriter;
+import org.jenkinsci.plugins.zanata.cli.util.PoFileMerger;
+import org.jenkinsci.plugins.zanata.cli.util.PushPullOptionsUtil;
+import org.jenkinsci.plugins.zanata.cli.util.SyncStateStore;
+import org.jenkinsci.plugins.zanata.exception.ZanataSyncException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.zanata.client.commands.pull.PullOptions;
+import org.zanata.client.config.LocaleMapping;
+import org.zanata.rest.dto.resource.ResourceMeta;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Pulls each document and locale only if it changed since the last pull.
+ * <p>
+ * Zanata can not filter translations by modification time, so for each
+ * document and locale the ETag of the last download is remembered and sent
+ * back as If-None-Match. An unchanged translation costs one request with an
+ * empty 304 response. A changed one is downloaded and merged into the local
+ * file with {@link PoFileMerger} so entries that did not change keep their
+ * exact bytes.
+ * <p>
+ * If a local file was modified outside of the sync (its hash no longer
+ * matches what we wrote) it is fetched unconditionally and overwritten.
+ * Only PO based project types (gettext and podir) are supported. Other types
+ * fall back to the standard pull.
+ * <p>
+ * Servers that send no ETag for translation files (stock Zanata does not)
+ * can not answer with 304, so every document would be downloaded in full
+ * and merged on top. When that is detected the pull falls back to the
+ * standard pull, and keeps doing so for {@link #RECHECK_MILLIS} before the
+ * server is asked again.
+ */
+public class IncrementalPullServiceImpl implements PullService {
+    private static final Logger log =
+            LoggerFactory.getLogger(IncrementalPullServiceImpl.class);
+    private static final long serialVersionUID = 1L;
+    static final String STORE_NAME = "incremental-pull";
+    private static final int SAVE_INTERVAL = 50;
+    static final long RECHECK_MILLIS = TimeUnit.DAYS.toMillis(1);
+    private static final Set<String> SUPPORTED_TYPES =
+            ImmutableSet.of("gettext", "podir");
+
+    private final Set<String> restrictedLocales;
+    private final boolean normalize;
+    private final PullService fallback;
+
+    public IncrementalPullServiceImpl(Set<String> restrictedLocales,
+            boolean normalize) {
+        this.restrictedLocales = ImmutableSet.copyOf(restrictedLocales);
+        this.normalize = normalize;
+        this.fallback = new PullServiceImpl(normalize);
+    }
+
+    @Override
+    public int pullFromZanata(PullOptions pullOptions) {
+        String projectType = pullOptions.getProjectType();
+        if (projectType == null ||
+                !SUPPORTED_TYPES.contains(projectType.toLowerCase())) {
+            log.info("incremental pull does not support project type {}. Fall back to full pull",
+                    projectType);
+            return fallback.pullFromZanata(pullOptions);
+        }
+        List<LocaleMapping> locales = StreamSupport
+                .stream(pullOptions.getLocaleMapList().spliterator(), false)
+                .filter(mapping -> restrictedLocales.isEmpty() ||
+                        restrictedLocales.contains(mapping.getLocale()))
+                .collect(Collectors.toList());
+        SyncStateStore store = SyncStateStore.load(
+                pullOptions.getProjectConfig().getAbsoluteFile()
+                        .getParentFile().toPath(), STORE_NAME);
+        if (!sendsEntityTags(store, pullOptions)) {
+            log.warn("{} does not send ETags for translation files. Fall back to full pull",
+                    pullOptions.getUrl());
+            return fallback.pullFromZanata(pullOptions);
+        }
+        Client client = PushPullOptionsUtil.makeResteasyClient(pullOptions);
+        int notModified = 0;
+        int updated = 0;
+        try {
+            for (String docId : listDocuments(client, pullOptions)) {
+                for (LocaleMapping locale : locales) {
+                    CancellableSync.checkCancelled();
+                    if (pullDocument(client, pullOptions, store, docId,
+                            locale)) {
+                        updated++;
+                    } else {
+                        notModified++;
+                    }
+                    if (!sendsEntityTags(store, pullOptions)) {
+                        log.warn("{} does not send ETags for translation files. Fall back to full pull",
+                                pullOptions.getUrl());
+                        // files written so far are rewritten only if different
+                        return fallback.pullFromZanata(pullOptions);
+                    }
+                    if ((updated + notModified) % SAVE_INTERVAL == 0) {
+                        // so that an interrupted pull can carry on from here
+                        store.save();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new ZanataSyncException("failed pulling from zanata", e);
+        } finally {
+            client.close();
+            store.save();
+        }
+        log.info("incremental pull for {}:{}: {} updated, {} not modified",
+                pullOptions.getProj(), pullOptions.getProjectVersion(),
+                updated, notModified);
+        return updated;
+    }
+
+    private static List<String> listDocuments(Client client,
+            PullOptions opts) {
+        String path = String.format("rest/projects/p/%s/iterations/i/%s/r",
+                opts.getProj(), opts.getProjectVersion());
+        Response response = request(client, opts, path)
+                .accept(MediaType.APPLICATION_JSON_TYPE).get();
+        try {
+            if (response.getStatus() != 200) {
+                throw new ZanataSyncException(
+                        "failed listing documents: " + response.getStatus());
+            }
+            return response.readEntity(new GenericType<List<ResourceMeta>>() {})
+                    .stream().map(ResourceMeta::getName)
+                    .collect(Collectors.toList());
+        } finally {
+            response.close();
+        }
+    }
+
+    /**
+     * @return true if local file is updated
+     */
+    private boolean pullDocument(Client client, PullOptions opts,
+            SyncStateStore store, String docId, LocaleMapping locale)
+            throws IOException {
+        String etagKey = SyncStateStore.key("etag", opts.getProj(),
+                opts.getProjectVersion(), docId, locale.getLocale());
+        String hashKey = SyncStateStore.key("hash", opts.getProj(),
+                opts.getProjectVersion(), docId, locale.getLocale());
+        Path target = PushPullOptionsUtil
+                .resolveTransFile(opts, docId + ".po", locale).toPath();
+        boolean trusted = Files.isRegularFile(target) &&
+                ChangedFileWriter.sha256Hex(target).equals(store.get(hashKey));
+        if (!trusted && Files.exists(target)) {
+            log.info("{} was changed outside of sync. Fetch in full", target);
+        }
+
+        String path = String.format("rest/file/translation/%s/%s/%s/po",
+                opts.getProj(), opts.getProjectVersion(), locale.getLocale());
+        Invocation.Builder request = request(client, opts, path, docId);
+        String etag = store.get(etagKey);
+        if (trusted && etag != null) {
+            request.header("If-None-Match", etag);
+        }
+        Response response = request.get();
+        try {
+            if (response.getStatus() == 304) {
+                ChangedFileWriter.recordOutput(target);
+                return false;
+            }
+            if (response.getStatus() == 404) {
+                // no translation for this document yet
+                return false;
+            }
+            if (response.getStatus() != 200) {
+                throw new ZanataSyncException("failed downloading " + docId +
+                        " for " + locale.getLocale() + ": " +
+                        response.getStatus());
+            }
+            Path downloaded = Files.createTempFile("zanata-pull", ".po");
+            try {
+                try (InputStream in = response.readEntity(InputStream.class)) {
+                    Files.copy(in, downloaded,
+                            StandardCopyOption.REPLACE_EXISTING);
+                }
+                boolean changed = writeLocal(downloaded, target, trusted);
+                ChangedFileWriter.recordOutput(target);
+                if (response.getEntityTag() != null) {
+                    store.put(etagKey, response.getEntityTag().toString());
+                } else {
+                    store.remove(etagKey);
+                    markNoEntityTags(store, opts.getUrl().toString(),
+                            System.currentTimeMillis());
+                }
+                store.put(hashKey, ChangedFileWriter.sha256Hex(target));
+                return changed;
+            } finally {
+                Files.deleteIfExists(downloaded);
+            }
+        } finally {
+            response.close();
+        }
+    }
+
+    private static String noEntityTagKey(String server) {
+        return SyncStateStore.key("no-etag", server);
+    }
+
+    static void markNoEntityTags(SyncStateStore store, String server,
+            long now) {
+        store.put(noEntityTagKey(server), String.valueOf(now));
+    }
+
+    /**
+     * @return false if the server was seen sending a translation file
+     *         without ETag less than {@link #RECHECK_MILLIS} ago
+     */
+    private static boolean sendsEntityTags(SyncStateStore store,
+            PullOptions opts) {
+        return sendsEntityTags(store, opts.getUrl().toString(),
+                System.currentTimeMillis());
+    }
+
+    static boolean sendsEntityTags(SyncStateStore store, String server,
+            long now) {
+        String seen = store.get(noEntityTagKey(server));
+        if (seen == null) {
+            return true;
+        }
+        try {
+            if (now - Long.parseLong(seen) < RECHECK_MILLIS) {
+                return false;
+            }
+        } catch (NumberFormatException e) {
+            log.debug("ignore unreadable entry {}", seen);
+        }
+        store.remove(noEntityTagKey(server));
+        return true;
+    }
+
+    private boolean writeLocal(Path downloaded, Path target, boolean trusted)
+            throws IOException {
+        Path source = downloaded;
+        Path merged = null;
+        try {
+            if (trusted) {
+                merged = Files.createTempFile("zanata-merge", ".po");
+                int changedEntries =
+                        PoFileMerger.merge(target, downloaded, merged);
+                log.debug("{} entries changed in {}", changedEntries, target);
+                source = merged;
+            }
+            try (InputStream in = Files.newInputStream(source)) {
+                return ChangedFileWriter.write(in, target, normalize);
+            }
+        } finally {
+            if (merged != null) {
+                Files.deleteIfExists(merged);
+            }
+        }
+    }
+
+    private static Invocation.Builder request(Client client, PullOptions opts,
+            String path) {
+        return request(client, opts, path, null);
+    }
+
+    private static Invocation.Builder request(Client client, PullOptions opts,
+            String path, String docId) {
+        String url = opts.getUrl().toString();
+        String base = url.endsWith("/") ? url : url + "/";
+        WebTarget target = client.target(base + path);
+        if (docId != null) {
+            target = target.queryParam("docId", docId);
+        }
+        return target.request()
+                .header("X-Auth-User", opts.getUsername())
+                .header("X-Auth-Token", opts.getKey());
+    }
+}
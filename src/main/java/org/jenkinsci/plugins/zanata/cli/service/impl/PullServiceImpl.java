@@ -20,24 +20,99 @@
  */
 package org.jenkinsci.plugins.zanata.cli.service.impl;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Path;
+
 import org.jenkinsci.plugins.zanata.cli.service.PullService;
+import org.jenkinsci.plugins.zanata.cli.util.ChangedFileWriter;
 import org.jenkinsci.plugins.zanata.cli.util.PushPullOptionsUtil;
 import org.zanata.client.commands.pull.PullCommand;
 import org.zanata.client.commands.pull.PullOptions;
 import org.jenkinsci.plugins.zanata.exception.ZanataSyncException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import hudson.Util;
 
 /**
+ * Runs zanata client pull command into a staging directory and then copies
+ * the result into the real trans dir using {@link ChangedFileWriter}, so that
+ * files with identical content are left untouched.
+ *
  * @author Patrick Huang <a href="mailto:pahuang@redhat.com">pahuang@redhat.com</a>
  */
 public class PullServiceImpl implements PullService {
+    private static final Logger log =
+            LoggerFactory.getLogger(PullServiceImpl.class);
+    private static final long serialVersionUID = 1L;
+
+    private final boolean normalize;
+
+    public PullServiceImpl() {
+        this(false);
+    }
+
+    /**
+     * @param normalize
+     *         whether files that only differ in volatile content (e.g.
+     *         PO-Revision-Date) should be treated as unchanged
+     */
+    public PullServiceImpl(boolean normalize) {
+        this.normalize = normalize;
+    }
 
     @Override
-    public void pullFromZanata(PullOptions pullOptions) {
+    public int pullFromZanata(PullOptions pullOptions) {
+        File transDir = pullOptions.getTransDir();
+        Path staging = createStagingDir(transDir);
+        pullOptions.setTransDir(staging.toFile());
         PullCommand pullCommand = PushPullOptionsUtil.makePullCommand(pullOptions);
         try {
             pullCommand.run();
+            return ChangedFileWriter.syncDir(staging, transDir.toPath(),
+                    normalize);
         } catch (Exception e) {
             throw new ZanataSyncException("failed pulling from zanata", e);
+        } finally {
+            pullOptions.setTransDir(transDir);
+            deleteStagingDir(staging);
+        }
+    }
+
+    private static Path createStagingDir(File transDir) {
+        try {
+            Path parent = transDir.getAbsoluteFile().getParentFile().toPath();
+            deleteStaleStagingDirs(parent);
+            return Files.createTempDirectory(parent,
+                    ChangedFileWriter.STAGING_PREFIX);
+        } catch (IOException e) {
+            throw new ZanataSyncException("failed creating staging dir", e);
+        }
+    }
+
+    /**
+     * Staging dirs of an aborted pull (e.g. agent killed) are not cleaned up
+     * by that pull, so do it here.
+     */
+    private static void deleteStaleStagingDirs(Path parent)
+            throws IOException {
+        try (DirectoryStream<Path> stale = Files.newDirectoryStream(parent,
+                ChangedFileWriter.STAGING_PREFIX + "*")) {
+            for (Path dir : stale) {
+                log.info("deleting {} left by an aborted pull", dir);
+                deleteStagingDir(dir);
+            }
+        }
+    }
+
+    private static void deleteStagingDir(Path staging) {
+        try {
+            Util.deleteRecursive(staging.toFile());
+        } catch (IOException e) {
+            throw new ZanataSyncException(
+                    "failed deleting staging dir " + staging, e);
         }
     }
 }
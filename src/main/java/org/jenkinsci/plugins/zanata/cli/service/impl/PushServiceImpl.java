@@ -21,17 +21,40 @@
 package org.jenkinsci.plugins.zanata.cli.service.impl;
 
 import org.jenkinsci.plugins.zanata.cli.service.PushService;
+import org.jenkinsci.plugins.zanata.cli.util.AsyncProcessMonitor;
+import org.jenkinsci.plugins.zanata.cli.util.DeferredCopyTransClient;
 import org.jenkinsci.plugins.zanata.cli.util.PushPullOptionsUtil;
 import org.zanata.client.commands.push.PushCommand;
 import org.zanata.client.commands.push.PushOptions;
+import org.zanata.rest.client.RestClientFactory;
 import org.jenkinsci.plugins.zanata.exception.ZanataSyncException;
 
 /**
  * @author Patrick Huang <a href="mailto:pahuang@redhat.com">pahuang@redhat.com</a>
  */
 public class PushServiceImpl implements PushService {
+    private static final long serialVersionUID = 1L;
+
+    private final boolean batchCopyTrans;
+
+    public PushServiceImpl() {
+        this(false);
+    }
+
+    /**
+     * @param batchCopyTrans
+     *         whether to run copy-trans for all pushed documents after they
+     *         are uploaded instead of after each document
+     */
+    public PushServiceImpl(boolean batchCopyTrans) {
+        this.batchCopyTrans = batchCopyTrans;
+    }
 
     public void pushToZanata(PushOptions pushOptions) {
+        if (batchCopyTrans && pushOptions.getCopyTrans()) {
+            pushWithBatchedCopyTrans(pushOptions);
+            return;
+        }
         PushCommand pushCommand = PushPullOptionsUtil.makePushCommand(pushOptions);
         try {
             pushCommand.run();
@@ -40,4 +63,20 @@ public class PushServiceImpl implements PushService {
         }
     }
 
+    private void pushWithBatchedCopyTrans(PushOptions pushOptions) {
+        RestClientFactory factory =
+                PushPullOptionsUtil.makeRestClientFactory(pushOptions);
+        DeferredCopyTransClient copyTransClient =
+                new DeferredCopyTransClient(factory, AsyncProcessMonitor.get(),
+                        pushOptions.getUrl().toString());
+        PushCommand pushCommand = PushPullOptionsUtil
+                .makePushCommand(pushOptions, factory, copyTransClient);
+        try {
+            pushCommand.run();
+        } catch (Exception e) {
+            throw new ZanataSyncException("failed pushing to Zanata", e);
+        }
+        copyTransClient.runPending();
+    }
+
 }
@@ -26,23 +26,45 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.jenkinsci.plugins.zanata.cli.SyncJobDetail;
+import org.jenkinsci.plugins.zanata.cli.service.PullService;
+import org.jenkinsci.plugins.zanata.cli.service.PushHistory;
 import org.jenkinsci.plugins.zanata.cli.service.ZanataSyncService;
+import org.jenkinsci.plugins.zanata.cli.util.CancellableSync;
+import org.jenkinsci.plugins.zanata.cli.util.ChangedFileWriter;
+import org.jenkinsci.plugins.zanata.cli.util.DeltaPushScope;
+import org.jenkinsci.plugins.zanata.cli.util.ProjectVersionLease;
 import org.jenkinsci.plugins.zanata.cli.util.PushPullOptionsUtil;
+import org.jenkinsci.plugins.zanata.cli.util.ReadReplicaRouter;
+import org.jenkinsci.plugins.zanata.cli.util.SyncJournal;
+import org.jenkinsci.plugins.zanata.cli.util.SyncStateStore;
 import org.zanata.client.commands.PushPullOptions;
 import org.zanata.client.commands.pull.PullOptions;
 import org.zanata.client.commands.pull.PullOptionsImpl;
 import org.zanata.client.commands.push.PushOptions;
 import org.zanata.client.commands.push.PushOptionsImpl;
+import org.zanata.client.config.LocaleList;
+import org.zanata.client.config.LocaleMapping;
+import org.jenkinsci.plugins.zanata.exception.SyncCancelledException;
 import org.jenkinsci.plugins.zanata.exception.ZanataSyncException;
 import com.google.common.base.Splitter;
 import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 
 /**
@@ -53,14 +75,21 @@ public class ZanataSyncServiceImpl implements ZanataSyncService {
     private static final Logger log =
             LoggerFactory.getLogger(ZanataSyncServiceImpl.class);
     private static final long serialVersionUID = 1L;
+    private static final int MAX_CONCURRENT_PUSHES = 4;
 
     private final transient PullOptions pullOptions;
-    private final transient PushOptions pushOptions;
+    private final transient PushOptionsImpl pushOptions;
 
-    private final PushServiceImpl pushService = new PushServiceImpl();
-    private final PullServiceImpl pullService = new PullServiceImpl();
+    private final PushServiceImpl pushService;
+    private final PullService pullService;
     private final String zanataUrl;
+    private final String pushType;
     private final Set<String> projectConfigs;
+    private final String username;
+    private final String apiKey;
+    private final String localeId;
+    private final List<String> readReplicas;
+    private transient ReadReplicaRouter readReplicaRouter;
 
     public ZanataSyncServiceImpl(SyncJobDetail jobDetail) {
         String zanataUrl = jobDetail.getZanataUrl();
@@ -68,30 +97,33 @@ public class ZanataSyncServiceImpl implements ZanataSyncService {
         String apiKey = jobDetail.getZanataSecret();
         String syncToZanataOption = jobDetail.getSyncToZanataOption();
         String pushToZanataOption = Strings.emptyToNull(syncToZanataOption);
+        this.pushType = pushToZanataOption == null ? PUSH_TYPE_SOURCE :
+                pushToZanataOption;
         projectConfigs = getProjectConfigs(jobDetail.getProjectConfigs());
 
         String localeId = jobDetail.getLocaleId();
+        this.username = username;
+        this.apiKey = apiKey;
+        this.localeId = localeId;
         this.zanataUrl = zanataUrl;
+        this.readReplicas = getReadReplicas(jobDetail.getReadReplicas());
+        this.pushService = new PushServiceImpl(jobDetail.isBatchCopyTrans());
+        this.pullService = makePullService(jobDetail.getPullMode(), localeId,
+                jobDetail.isNormalizeTranslations());
         PullOptionsImpl pullOptions = new PullOptionsImpl();
-        PushOptionsImpl pushOptions = new PushOptionsImpl();
         pullOptions.setInteractiveMode(false);
-        pushOptions.setInteractiveMode(false);
         pullOptions.setUsername(username);
         pullOptions.setKey(apiKey);
-        pushOptions.setUsername(username);
-        pushOptions.setKey(apiKey);
-        pushOptions.setPushType(pushToZanataOption);
         // TODO until https://zanata.atlassian.net/browse/ZNTA-1427 is fixed we can't trust etag cache
         pullOptions.setUseCache(false);
 
-        this.pushOptions = pushOptions;
+        this.pushOptions = newPushOptions();
         this.pullOptions = pullOptions;
 //        this.pushOptions.setLogHttp(true);
 //        this.pullOptions.setLogHttp(true);
         // if localeId is given, only handle this locale
         if (!Strings.isNullOrEmpty(localeId)) {
             pullOptions.setLocales(localeId);
-            pushOptions.setLocales(localeId);
         }
         // if project id is given, only handle this project
 //        String projectId = jobDetail.getProject();
@@ -102,6 +134,59 @@ public class ZanataSyncServiceImpl implements ZanataSyncService {
 
     }
 
+    /**
+     * Each project version pushed in parallel needs its own options since
+     * applying zanata.xml modifies them.
+     */
+    private PushOptionsImpl newPushOptions() {
+        PushOptionsImpl options = new PushOptionsImpl();
+        options.setInteractiveMode(false);
+        options.setUsername(username);
+        options.setKey(apiKey);
+        options.setPushType(pushType);
+        // if localeId is given, only handle this locale
+        if (!Strings.isNullOrEmpty(localeId)) {
+            options.setLocales(localeId);
+        }
+        return options;
+    }
+
+    private static PullService makePullService(String pullMode,
+            String localeId, boolean normalize) {
+        Set<String> locales = Strings.isNullOrEmpty(localeId) ?
+                Collections.emptySet() :
+                ImmutableSet.copyOf(Splitter.on(",").trimResults()
+                        .omitEmptyStrings().split(localeId));
+        if (PULL_MODE_INCREMENTAL.equals(pullMode)) {
+            return new IncrementalPullServiceImpl(locales, normalize);
+        }
+        // also jobs saved with the archive mode, which has been dropped
+        return new PullServiceImpl(normalize);
+    }
+
+    private static List<String> getReadReplicas(String readReplicas) {
+        if (Strings.isNullOrEmpty(readReplicas)) {
+            return Collections.emptyList();
+        }
+        return ImmutableList.copyOf(Splitter.on(",").trimResults()
+                .omitEmptyStrings().split(readReplicas));
+    }
+
+    /**
+     * @return router for reads, or null if there is no read replica. Replicas
+     * are only used when the primary is given explicitly, since the URL in
+     * zanata.xml may be a different server altogether.
+     */
+    private ReadReplicaRouter getReadReplicaRouter() {
+        if (readReplicas.isEmpty() || Strings.isNullOrEmpty(zanataUrl)) {
+            return null;
+        }
+        if (readReplicaRouter == null) {
+            readReplicaRouter = new ReadReplicaRouter(zanataUrl, readReplicas);
+        }
+        return readReplicaRouter;
+    }
+
     private static Set<String> getProjectConfigs(String projectConfigs) {
         if (Strings.isNullOrEmpty(projectConfigs)) {
             return Collections.emptySet();
@@ -122,34 +207,193 @@ public class ZanataSyncServiceImpl implements ZanataSyncService {
     }
 
     @Override
-    public void pushToZanata(Path repoBase) throws ZanataSyncException {
+    public int pushToZanata(Path repoBase) throws ZanataSyncException {
+        return pushToZanata(repoBase, PushHistory.NONE, SyncJournal.DISABLED);
+    }
+
+    @Override
+    public int pushToZanata(Path repoBase, PushHistory pushHistory,
+            SyncJournal journal) throws ZanataSyncException {
         String project = getPushOptions().getProj();
+        List<File> configs = resolveProjectConfigs(repoBase);
+        if (configs.size() == 1) {
+            File config = configs.get(0);
+            PushPullOptionsUtil.applyProjectConfig(pushOptions, config);
+            log.info("{} - {}", config, getPushOptions());
+            return pushIfProjectIdMatchesConfig(pushOptions, project, config,
+                    repoBase, pushHistory, journal) ? 1 : 0;
+        }
+        return pushConcurrently(configs, project, repoBase, pushHistory,
+                journal);
+    }
+
+    private List<File> resolveProjectConfigs(Path repoBase) {
         if (projectConfigs.isEmpty()) {
-            Set<File> projectConfigs = findProjectConfigsOrThrow(repoBase);
-            for (File config : projectConfigs) {
-                PushPullOptionsUtil
-                        .applyProjectConfig(getPushOptions(), config);
-                log.info("{} - {}", getPushOptions());
-                pushIfProjectIdMatchesConfig(project, config);
+            return new ArrayList<>(findProjectConfigsOrThrow(repoBase));
+        }
+        return projectConfigs.stream()
+                .map(config -> Paths.get(repoBase.toString(), config).toFile())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Most of a push is spent waiting for the server to process documents.
+     * Pushing project versions in parallel lets those waits overlap.
+     */
+    private int pushConcurrently(List<File> configs, String project,
+            Path repoBase, PushHistory pushHistory, SyncJournal journal) {
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.min(configs.size(), MAX_CONCURRENT_PUSHES), r -> {
+                    Thread thread = new Thread(r, "zanata-push");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (File config : configs) {
+                results.add(executor.submit(() -> {
+                    PushOptionsImpl opts = newPushOptions();
+                    PushPullOptionsUtil.applyProjectConfig(opts, config);
+                    log.info("{} - {}", config, opts);
+                    return pushIfProjectIdMatchesConfig(opts, project, config,
+                            repoBase, pushHistory, journal);
+                }));
             }
-        } else {
-            for (String projectConfig : projectConfigs) {
-                Path absPath = Paths.get(repoBase.toString(), projectConfig);
-                PushPullOptionsUtil.applyProjectConfig(getPushOptions(), absPath.toFile());
-                pushIfProjectIdMatchesConfig(project, absPath.toFile());
+            int pushed = 0;
+            for (Future<Boolean> result : results) {
+                if (result.get()) {
+                    pushed++;
+                }
+            }
+            return pushed;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SyncCancelledException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
             }
+            throw new ZanataSyncException("failed pushing to Zanata",
+                    e.getCause());
+        } finally {
+            executor.shutdownNow();
         }
     }
 
-    private void pushIfProjectIdMatchesConfig(String project, File config) {
-        if (Strings.isNullOrEmpty(project) || Objects.equals(getPushOptions().getProj(), project)) {
-            overrideURLIfSpecified(getPushOptions(), zanataUrl);
-            pushService.pushToZanata(getPushOptions());
+    /**
+     * @return true if anything was pushed
+     */
+    private boolean pushIfProjectIdMatchesConfig(PushOptionsImpl opts,
+            String project, File config, Path repoBase,
+            PushHistory pushHistory, SyncJournal journal) {
+        if (Strings.isNullOrEmpty(project) || Objects.equals(opts.getProj(), project)) {
+            CancellableSync.checkCancelled();
+            overrideURLIfSpecified(opts, zanataUrl);
+            String proj = opts.getProj();
+            String version = opts.getProjectVersion();
+            String unit = SyncStateStore.key(proj, version);
+            if (journal.isDone(SyncJournal.PHASE_PUSH, unit)) {
+                pushHistory.pushed(proj, version);
+                return false;
+            }
+            try (ProjectVersionLease.Held lease = ProjectVersionLease
+                    .acquire(leaseServer(opts), proj, version, opts,
+                            pushType)) {
+                if (lease.isIdenticalToLastPush()) {
+                    log.info("{}:{} was just pushed with the same input by {}. Skipped",
+                            proj, version, lease.getIdenticalPushBy());
+                    pushHistory.pushed(proj, version);
+                    journal.markDone(SyncJournal.PHASE_PUSH, unit);
+                    lease.succeeded();
+                    return false;
+                }
+                Optional<Set<String>> changedPaths =
+                        pushHistory.changedPaths(proj, version);
+                boolean pushed = true;
+                if (changedPaths.isPresent()) {
+                    pushed = pushDelta(opts, repoBase, changedPaths.get());
+                } else {
+                    pushService.pushToZanata(opts);
+                }
+                pushHistory.pushed(proj, version);
+                journal.markDone(SyncJournal.PHASE_PUSH, unit);
+                lease.succeeded();
+                return pushed;
+            }
         } else if (!Strings.isNullOrEmpty(project)) {
             log.warn(
                     "project id is provided as {}. Skip {} which has project set to {}",
-                    config, getPushOptions().getProj());
+                    project, config, opts.getProj());
+        }
+        return false;
+    }
+
+    /**
+     * Zanata push removes documents on the server which are not pushed, so
+     * source is always pushed in full. What we can save is skipping source
+     * and/or translation push when nothing relevant changed, and only pushing
+     * translations for locales that changed.
+     *
+     * @return false if nothing needed pushing
+     */
+    private boolean pushDelta(PushOptionsImpl opts, Path repoBase,
+            Set<String> changedPaths) {
+        DeltaPushScope scope = DeltaPushScope.of(opts, repoBase, changedPaths);
+        log.info("changes for {}:{} - {}", opts.getProj(),
+                opts.getProjectVersion(), scope);
+        boolean pushSource = !PUSH_TYPE_TRANS.equals(pushType) &&
+                !scope.getSourceDocs().isEmpty();
+        boolean pushTrans = !PUSH_TYPE_SOURCE.equals(pushType) &&
+                !scope.getTransLocales().isEmpty();
+        if (!pushSource && !pushTrans) {
+            log.info("nothing to push for {}:{}", opts.getProj(),
+                    opts.getProjectVersion());
+            return false;
+        }
+        if (pushTrans) {
+            // locale map list is reloaded from zanata.xml for each config
+            LocaleList changedLocales = new LocaleList();
+            changedLocales.addAll(scope.getTransLocales());
+            opts.setLocaleMapList(changedLocales);
+        }
+        String deltaPushType = pushSource && pushTrans ? PUSH_TYPE_BOTH :
+                pushSource ? PUSH_TYPE_SOURCE : PUSH_TYPE_TRANS;
+        opts.setPushType(deltaPushType);
+        try {
+            pushService.pushToZanata(opts);
+        } finally {
+            opts.setPushType(pushType);
         }
+        return true;
+    }
+
+    /**
+     * Leases are per main server, even when reads go to a replica.
+     */
+    private String leaseServer(PushPullOptions opts) {
+        return Strings.isNullOrEmpty(zanataUrl) ? String.valueOf(opts.getUrl()) :
+                zanataUrl;
+    }
+
+    /**
+     * Locales fetched while applying zanata.xml may come from a read replica.
+     */
+    private void routeMetadataReads() {
+        ReadReplicaRouter router = getReadReplicaRouter();
+        if (router != null) {
+            overrideURLIfSpecified(getPullOptions(),
+                    router.metadataUrl(getPullOptions()));
+        }
+    }
+
+    private String pullUrl() {
+        ReadReplicaRouter router = getReadReplicaRouter();
+        if (router == null) {
+            return zanataUrl;
+        }
+        // credentials and project are known once zanata.xml is applied
+        return router.pullUrl(getPullOptions(), getPullOptions().getProj(),
+                getPullOptions().getProjectVersion());
     }
 
     private static void overrideURLIfSpecified(PushPullOptions opts,
@@ -177,33 +421,88 @@ public class ZanataSyncServiceImpl implements ZanataSyncService {
     }
 
     @Override
-    public void pullFromZanata(Path repoBase) throws ZanataSyncException {
+    public int pullFromZanata(Path repoBase) throws ZanataSyncException {
+        return pullFromZanata(repoBase, SyncJournal.DISABLED);
+    }
+
+    @Override
+    public int pullFromZanata(Path repoBase, SyncJournal journal)
+            throws ZanataSyncException {
         String project = getPullOptions().getProj();
+        int changed = 0;
         if (projectConfigs.isEmpty()) {
             Set<File> projectConfigs =
                     findProjectConfigsOrThrow(repoBase);
             for (File config : projectConfigs) {
+                routeMetadataReads();
                 PushPullOptionsUtil
                         .applyProjectConfig(getPullOptions(), config);
-                pullIfProjectIdMatchesConfig(project, config);
+                changed += pullIfProjectIdMatchesConfig(project, config,
+                        journal);
             }
         } else {
             for (String projectConfig : projectConfigs) {
                 Path absPath = Paths.get(repoBase.toString(), projectConfig);
+                routeMetadataReads();
                 PushPullOptionsUtil.applyProjectConfig(getPullOptions(), absPath.toFile());
-                pullIfProjectIdMatchesConfig(project, absPath.toFile());
+                changed += pullIfProjectIdMatchesConfig(project,
+                        absPath.toFile(), journal);
             }
         }
+        return changed;
     }
 
-    private void pullIfProjectIdMatchesConfig(String project, File config) {
+    private int pullIfProjectIdMatchesConfig(String project, File config,
+            SyncJournal journal) {
         if (Strings.isNullOrEmpty(project) || Objects.equals(getPushOptions().getProj(), project)) {
-            overrideURLIfSpecified(getPullOptions(), zanataUrl);
-            pullService.pullFromZanata(getPullOptions());
+            CancellableSync.checkCancelled();
+            try (ProjectVersionLease.Held lease = ProjectVersionLease
+                    .acquire(leaseServer(getPullOptions()),
+                            getPullOptions().getProj(),
+                            getPullOptions().getProjectVersion(), null,
+                            null)) {
+                overrideURLIfSpecified(getPullOptions(), pullUrl());
+                int pulled = journal.isEnabled() ? pullByLocale(journal) :
+                        pullService.pullFromZanata(getPullOptions());
+                lease.succeeded();
+                return pulled;
+            }
         } else if (!Strings.isNullOrEmpty(project)) {
             log.warn(
                     "project id is provided as {}. Skip {} which has project set to {}",
                     config, getPushOptions().getProj());
         }
+        return 0;
+    }
+
+    /**
+     * Pulls one locale at a time so that each completed locale can be recorded
+     * in the journal together with the files it pulled.
+     */
+    private int pullByLocale(SyncJournal journal) {
+        String proj = getPullOptions().getProj();
+        String version = getPullOptions().getProjectVersion();
+        LocaleList allLocales = getPullOptions().getLocaleMapList();
+        int changed = 0;
+        try {
+            for (LocaleMapping locale : allLocales) {
+                String unit =
+                        SyncStateStore.key(proj, version, locale.getLocale());
+                if (journal.isDone(SyncJournal.PHASE_PULL, unit)) {
+                    continue;
+                }
+                CancellableSync.checkCancelled();
+                LocaleList single = new LocaleList();
+                single.add(locale);
+                getPullOptions().setLocaleMapList(single);
+                Set<Path> outputs = ConcurrentHashMap.newKeySet();
+                changed += ChangedFileWriter.collectOutputs(outputs,
+                        () -> pullService.pullFromZanata(getPullOptions()));
+                journal.markDone(SyncJournal.PHASE_PULL, unit, outputs);
+            }
+        } finally {
+            getPullOptions().setLocaleMapList(allLocales);
+        }
+        return changed;
     }
 }
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2017, Red Hat, Inc. and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jenkinsci.plugins.zanata.cli.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Waits for server side asynchronous processes (e.g. document push,
+ * copy-trans) with adaptive polling.
+ * <p>
+ * The first poll comes quickly and the interval then grows exponentially, so
+ * short processes are picked up promptly while long ones cost few requests.
+ * How quickly to start is tuned from how long previous processes of the same
+ * kind took on the same server. Each waiting thread sleeps on its own, so
+ * waits for several project versions pushed in parallel overlap.
+ */
+public class AsyncProcessMonitor {
+    private static final Logger log =
+            LoggerFactory.getLogger(AsyncProcessMonitor.class);
+    private static final long MIN_INTERVAL_MS = 100;
+    private static final long MAX_INTERVAL_MS = 10_000;
+    private static final double BACKOFF = 1.5;
+    private static final long DEFAULT_TYPICAL_MS = 1000;
+    // weight given to the latest observation
+    private static final double SMOOTHING = 0.3;
+
+    private static final AsyncProcessMonitor INSTANCE = new AsyncProcessMonitor();
+
+    private final ConcurrentMap<String, Long> typicalMillis =
+            new ConcurrentHashMap<>();
+
+    private AsyncProcessMonitor() {
+    }
+
+    /**
+     * @return the monitor shared by all syncs in this JVM, so that what is
+     * learned about a server carries over to the next build
+     */
+    public static AsyncProcessMonitor get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Blocks until the process is finished.
+     *
+     * @param kind
+     *         what is waited for, including the server (e.g.
+     *         {@code https://zanata.example.com|push})
+     * @param current
+     *         status already known
+     * @param poll
+     *         fetches a fresh status given the previous one
+     * @param finished
+     *         whether a status is final
+     * @return the final status
+     */
+    public <S> S await(String kind, S current, UnaryOperator<S> poll,
+            Predicate<S> finished) throws InterruptedException {
+        long start = System.currentTimeMillis();
+        long interval = initialInterval(kind);
+        S status = current;
+        int polls = 0;
+        while (!finished.test(status)) {
+            CancellableSync.checkCancelled();
+            Thread.sleep(interval);
+            status = poll.apply(status);
+            polls++;
+            interval = nextInterval(interval);
+        }
+        long elapsed = System.currentTimeMillis() - start;
+        if (polls > 0) {
+            record(kind, elapsed);
+        }
+        log.debug("{} finished after {} ms and {} polls", kind, elapsed, polls);
+        return status;
+    }
+
+    private long initialInterval(String kind) {
+        long typical = typicalMillis.getOrDefault(kind, DEFAULT_TYPICAL_MS);
+        // first few polls are spread over the typical duration
+        return clamp(typical / 8);
+    }
+
+    private static long nextInterval(long interval) {
+        return clamp((long) (interval * BACKOFF));
+    }
+
+    private void record(String kind, long elapsedMillis) {
+        typicalMillis.merge(kind, elapsedMillis,
+                (old, latest) -> (long) (old * (1 - SMOOTHING) +
+                        latest * SMOOTHING));
+    }
+
+    private static long clamp(long interval) {
+        return Math.max(MIN_INTERVAL_MS, Math.min(MAX_INTERVAL_MS, interval));
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright 2017, Red Hat, Inc. and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jenkinsci.plugins.zanata.cli.util;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientRequestContext;
+import javax.ws.rs.client.ClientRequestFilter;
+
+import org.jenkinsci.plugins.zanata.exception.SyncCancelledException;
+import org.jenkinsci.plugins.zanata.exception.ZanataSyncException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs a sync phase so that it can be aborted promptly.
+ * <p>
+ * Zanata client blocks in socket reads which ignore
+ * {@link Thread#interrupt()}. So the phase runs in a worker thread while the
+ * calling thread (the one Jenkins interrupts on abort) waits for it. On
+ * interrupt every REST client used by the phase is closed, which fails the
+ * in-flight request straight away, and {@link Filter} refuses any further
+ * request (e.g. async process polling). Files are always written to a temp
+ * file then renamed (see {@link ChangedFileWriter}), so stopping half way
+ * leaves no partially written file behind.
+ */
+public final class CancellableSync {
+    private static final Logger log =
+            LoggerFactory.getLogger(CancellableSync.class);
+    private static final long GRACE_MILLIS = 2000;
+    private static final InheritableThreadLocal<CancellableSync> CURRENT =
+            new InheritableThreadLocal<>();
+
+    private final Set<Client> clients = ConcurrentHashMap.newKeySet();
+    private final Map<String, Object> attachments = new ConcurrentHashMap<>();
+    private final List<Consumer<Boolean>> doneActions =
+            new CopyOnWriteArrayList<>();
+    private volatile boolean cancelled;
+
+    private CancellableSync() {
+    }
+
+    /**
+     * @param name
+     *         phase name used in thread name and logging
+     * @param task
+     *         the phase
+     * @return result of the task
+     * @throws InterruptedException
+     *         if current thread is interrupted. The task has been asked to
+     *         stop by then.
+     */
+    public static <T> T run(String name, Callable<T> task)
+            throws IOException, InterruptedException {
+        CancellableSync scope = new CancellableSync();
+        ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "zanata-sync-" + name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        Future<T> future = executor.submit(() -> {
+            CURRENT.set(scope);
+            try {
+                return task.call();
+            } finally {
+                CURRENT.remove();
+                scope.done();
+            }
+        });
+        executor.shutdown();
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            long start = System.currentTimeMillis();
+            scope.cancel();
+            future.cancel(true);
+            boolean stopped = executor.awaitTermination(GRACE_MILLIS,
+                    TimeUnit.MILLISECONDS);
+            long latency = System.currentTimeMillis() - start;
+            if (stopped) {
+                log.info("{} cancelled in {} ms", name, latency);
+            } else {
+                log.warn("{} did not stop within {} ms. It will be abandoned",
+                        name, latency);
+            }
+            throw e;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (isCancellation(cause)) {
+                throw new InterruptedException("sync cancelled");
+            }
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new ZanataSyncException(name + " failed", cause);
+        }
+    }
+
+    /**
+     * Checks whether the current sync has been aborted. Long running loops
+     * should call this between units of work.
+     *
+     * @throws SyncCancelledException
+     *         if aborted
+     */
+    public static void checkCancelled() {
+        CancellableSync scope = CURRENT.get();
+        if ((scope != null && scope.cancelled) ||
+                Thread.currentThread().isInterrupted()) {
+            throw new SyncCancelledException();
+        }
+    }
+
+    /**
+     * @return true if the current thread runs a sync phase
+     */
+    public static boolean inSync() {
+        return CURRENT.get() != null;
+    }
+
+    /**
+     * @param key
+     *         identifies the object within the current sync phase
+     * @param create
+     *         makes the object the first time it is asked for
+     * @return the object shared by all threads of the current sync phase, or
+     * a new one if not in a sync phase
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T scoped(String key, Supplier<T> create) {
+        CancellableSync scope = CURRENT.get();
+        if (scope == null) {
+            return create.get();
+        }
+        return (T) scope.attachments.computeIfAbsent(key, k -> create.get());
+    }
+
+    /**
+     * @param action
+     *         run once the current sync phase finishes, given whether it was
+     *         cancelled. Ignored if not in a sync phase.
+     */
+    public static void whenDone(Consumer<Boolean> action) {
+        CancellableSync scope = CURRENT.get();
+        if (scope != null) {
+            scope.doneActions.add(action);
+        }
+    }
+
+    private void done() {
+        for (Consumer<Boolean> action : doneActions) {
+            try {
+                action.accept(cancelled);
+            } catch (RuntimeException e) {
+                log.warn("error finishing sync phase", e);
+            }
+        }
+    }
+
+    /**
+     * Zanata client wraps whatever it catches, so look through the causes.
+     */
+    private static boolean isCancellation(Throwable throwable) {
+        for (Throwable t = throwable; t != null; t = t.getCause()) {
+            if (t instanceof SyncCancelledException ||
+                    t instanceof InterruptedException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void track(Client client) {
+        CancellableSync scope = CURRENT.get();
+        if (scope != null) {
+            scope.clients.add(client);
+        }
+    }
+
+    private void cancel() {
+        cancelled = true;
+        for (Client client : clients) {
+            try {
+                client.close();
+            } catch (RuntimeException e) {
+                log.debug("error closing client", e);
+            }
+        }
+    }
+
+    /**
+     * Registered on every REST client we create. It remembers which clients
+     * the current sync uses so they can be closed on abort, and rejects new
+     * requests once aborted.
+     */
+    public static class Filter implements ClientRequestFilter {
+        @Override
+        public void filter(ClientRequestContext requestContext)
+                throws IOException {
+            checkCancelled();
+            track(requestContext.getClient());
+        }
+    }
+}
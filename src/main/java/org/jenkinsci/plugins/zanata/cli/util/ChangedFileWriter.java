@@ -0,0 +1,244 @@
+/*
+ * Copyright 2017, Red Hat, Inc. and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jenkinsci.plugins.zanata.cli.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.jenkinsci.plugins.zanata.exception.ZanataSyncException;
+import com.google.common.io.ByteStreams;
+
+/**
+ * Writes pulled files only when their content differs from what is already on
+ * disk. Unchanged files keep their mtime so git status and incremental builds
+ * don't need to look at them again. Changed files are written to a temp file
+ * next to the target then renamed over it, so a reader never sees a partially
+ * written file.
+ */
+public final class ChangedFileWriter {
+    private static final Logger log =
+            LoggerFactory.getLogger(ChangedFileWriter.class);
+    private static final String TEMP_SUFFIX = ".zanata-tmp";
+    /**
+     * Prefix of the directories that pulled files are staged in.
+     */
+    public static final String STAGING_PREFIX = ".zanata-pull";
+    // pulled files are collected here while a pull unit runs
+    private static final InheritableThreadLocal<Set<Path>> OUTPUTS =
+            new InheritableThreadLocal<>();
+
+    private ChangedFileWriter() {
+    }
+
+    /**
+     * @param content
+     *         new content. It is not closed by this method.
+     * @param target
+     *         file to write
+     * @return true if target is created or replaced, false if target already
+     * has the same content
+     */
+    public static boolean write(InputStream content, Path target)
+            throws IOException {
+        return write(content, target, false);
+    }
+
+    /**
+     * @param content
+     *         new content. It is not closed by this method.
+     * @param target
+     *         file to write
+     * @param normalize
+     *         whether to ignore volatile content (see
+     *         {@link TranslationFileNormalizer}) when comparing
+     * @return true if target is created or replaced, false if target already
+     * has the same (normalized) content
+     */
+    public static boolean write(InputStream content, Path target,
+            boolean normalize) throws IOException {
+        Path parent = target.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent,
+                "." + target.getFileName(), TEMP_SUFFIX);
+        try {
+            MessageDigest digest = newDigest();
+            try (OutputStream out = new DigestOutputStream(
+                    Files.newOutputStream(temp), digest)) {
+                ByteStreams.copy(content, out);
+            }
+            if (Files.isRegularFile(target) &&
+                    Files.size(target) == Files.size(temp) &&
+                    Arrays.equals(digest.digest(), hash(target))) {
+                return false;
+            }
+            if (normalize && Files.isRegularFile(target) &&
+                    TranslationFileNormalizer.isSupported(target) &&
+                    Arrays.equals(
+                            TranslationFileNormalizer.normalizedDigest(temp, target),
+                            TranslationFileNormalizer.normalizedDigest(target))) {
+                log.debug("{} only has volatile changes", target);
+                return false;
+            }
+            move(temp, target);
+            return true;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Copies every file under stagingDir into targetDir (keeping the relative
+     * path) using {@link #write(InputStream, Path, boolean)}.
+     *
+     * @return number of files created or replaced in targetDir
+     */
+    public static int syncDir(Path stagingDir, Path targetDir,
+            boolean normalize) throws IOException {
+        List<Path> files;
+        try (Stream<Path> stream = Files.walk(stagingDir)) {
+            files = stream.filter(Files::isRegularFile)
+                    .collect(Collectors.toList());
+        }
+        int changed = 0;
+        for (Path file : files) {
+            CancellableSync.checkCancelled();
+            Path target = targetDir.resolve(stagingDir.relativize(file));
+            try (InputStream in = Files.newInputStream(file)) {
+                if (write(in, target, normalize)) {
+                    changed++;
+                }
+            }
+            recordOutput(target);
+        }
+        log.info("{} of {} pulled files changed in {}", changed,
+                files.size(), targetDir);
+        return changed;
+    }
+
+    /**
+     * Runs work and collects every file it pulled into outputs, whether the
+     * file changed or already had the pulled content.
+     *
+     * @param outputs
+     *         thread safe set, since work may pull in several threads
+     */
+    public static <T> T collectOutputs(Set<Path> outputs, Supplier<T> work) {
+        Set<Path> previous = OUTPUTS.get();
+        OUTPUTS.set(outputs);
+        try {
+            return work.get();
+        } finally {
+            if (previous == null) {
+                OUTPUTS.remove();
+            } else {
+                OUTPUTS.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Tells {@link #collectOutputs} that target holds pulled content.
+     */
+    public static void recordOutput(Path target) {
+        Set<Path> outputs = OUTPUTS.get();
+        if (outputs != null) {
+            outputs.add(target.toAbsolutePath());
+        }
+    }
+
+    /**
+     * @param path
+     *         path relative to the repo, '/' separated
+     * @return true if it is a temp file or staging directory left behind by
+     * an aborted sync
+     */
+    public static boolean isTempPath(String path) {
+        if (path.endsWith(TEMP_SUFFIX)) {
+            return true;
+        }
+        for (String segment : path.split("/")) {
+            if (segment.startsWith(STAGING_PREFIX)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            log.debug("atomic move not supported for {}", target);
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * @param file
+     *         file to hash
+     * @return SHA-256 of the file content in hex
+     */
+    public static String sha256Hex(Path file) throws IOException {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : hash(file)) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    private static byte[] hash(Path file) throws IOException {
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[8192];
+        try (InputStream in = new DigestInputStream(
+                Files.newInputStream(file), digest)) {
+            while (in.read(buffer) != -1) {
+                // digest is updated as we read
+            }
+        }
+        return digest.digest();
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new ZanataSyncException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2017, Red Hat, Inc. and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jenkinsci.plugins.zanata.cli.util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+import org.jenkinsci.plugins.zanata.exception.SyncCancelledException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.zanata.rest.client.CopyTransClient;
+import org.zanata.rest.client.RestClientFactory;
+import org.zanata.rest.dto.CopyTransStatus;
+
+/**
+ * Push command runs copy-trans right after each document is uploaded and
+ * waits for it before uploading the next one. This client only records which
+ * documents need copy-trans and reports them as done. Once all documents of
+ * the version are uploaded, {@link #runPending()} runs copy-trans one document
+ * after another. Copy-trans is heavy on the server, so the sync never has more
+ * than one running at a time, as with the push command.
+ */
+public class DeferredCopyTransClient extends CopyTransClient {
+    private static final Logger log =
+            LoggerFactory.getLogger(DeferredCopyTransClient.class);
+
+    private final AsyncProcessMonitor monitor;
+    private final String kind;
+    private final Set<Document> pending = new LinkedHashSet<>();
+
+    public DeferredCopyTransClient(RestClientFactory factory,
+            AsyncProcessMonitor monitor, String server) {
+        super(factory);
+        this.monitor = monitor;
+        this.kind = server + "|copytrans";
+    }
+
+    @Override
+    public CopyTransStatus startCopyTrans(String projectSlug,
+            String iterationSlug, String docId) {
+        pending.add(new Document(projectSlug, iterationSlug, docId));
+        return done();
+    }
+
+    @Override
+    public CopyTransStatus getCopyTransStatus(String projectSlug,
+            String iterationSlug, String docId) {
+        if (pending.contains(new Document(projectSlug, iterationSlug, docId))) {
+            return done();
+        }
+        return super.getCopyTransStatus(projectSlug, iterationSlug, docId);
+    }
+
+    /**
+     * Runs copy-trans for every document recorded so far.
+     *
+     * @return number of documents copy-trans was run for
+     */
+    public int runPending() {
+        List<Document> documents = new ArrayList<>(pending);
+        pending.clear();
+        if (documents.isEmpty()) {
+            return 0;
+        }
+        log.info("running copy-trans for {} documents", documents.size());
+        for (Document doc : documents) {
+            run(doc);
+        }
+        return documents.size();
+    }
+
+    private void run(Document doc) {
+        CancellableSync.checkCancelled();
+        CopyTransStatus started =
+                super.startCopyTrans(doc.project, doc.version, doc.docId);
+        try {
+            monitor.await(kind, started,
+                    previous -> super.getCopyTransStatus(doc.project,
+                            doc.version, doc.docId),
+                    status -> !status.isInProgress());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SyncCancelledException();
+        }
+    }
+
+    private static CopyTransStatus done() {
+        CopyTransStatus status = new CopyTransStatus();
+        status.setInProgress(false);
+        status.setPercentageComplete(100);
+        return status;
+    }
+
+    private static final class Document {
+        private final String project;
+        private final String version;
+        private final String docId;
+
+        private Document(String project, String version, String docId) {
+            this.project = project;
+            this.version = version;
+            this.docId = docId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Document)) {
+                return false;
+            }
+            Document other = (Document) o;
+            return project.equals(other.project) &&
+                    version.equals(other.version) &&
+                    docId.equals(other.docId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(project, version, docId);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2017, Red Hat, Inc. and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jenkinsci.plugins.zanata.cli.util;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.zanata.client.commands.PushPullOptions;
+import org.zanata.client.config.LocaleMapping;
+import com.google.common.base.MoreObjects;
+
+/**
+ * Maps changed file paths onto the source and translation files of a project
+ * config (after {@link PushPullOptionsUtil#applyProjectConfig} is applied).
+ */
+public final class DeltaPushScope {
+    private final Set<String> sourceDocs = new LinkedHashSet<>();
+    private final Set<LocaleMapping> transLocales = new LinkedHashSet<>();
+
+    private DeltaPushScope() {
+    }
+
+    /**
+     * @param options
+     *         push options with project config applied
+     * @param repoBase
+     *         repo base the changed paths are relative to
+     * @param changedPaths
+     *         changed paths relative to repo base
+     * @return the scope of the delta
+     */
+    public static DeltaPushScope of(PushPullOptions options, Path repoBase,
+            Set<String> changedPaths) {
+        DeltaPushScope scope = new DeltaPushScope();
+        Path srcDir = options.getSrcDir().toPath().toAbsolutePath().normalize();
+        Path transDir =
+                options.getTransDir().toPath().toAbsolutePath().normalize();
+        Path base = repoBase.toAbsolutePath().normalize();
+        for (String changed : changedPaths) {
+            Path path = base.resolve(changed).normalize();
+            LocaleMapping locale = path.startsWith(transDir) ?
+                    matchLocale(options, transDir.relativize(path)) : null;
+            if (locale != null) {
+                scope.transLocales.add(locale);
+            } else if (path.startsWith(srcDir)) {
+                scope.sourceDocs.add(srcDir.relativize(path).toString()
+                        .replace('\\', '/'));
+            }
+        }
+        return scope;
+    }
+
+    private static LocaleMapping matchLocale(PushPullOptions options,
+            Path relativePath) {
+        String fileName = relativePath.getFileName().toString();
+        int dot = fileName.lastIndexOf('.');
+        String baseName = dot > 0 ? fileName.substring(0, dot) : fileName;
+        List<String> segments =
+                Arrays.asList(relativePath.toString().split("[/\\\\]"));
+        for (LocaleMapping mapping : options.getLocaleMapList()) {
+            String local = mapping.getLocalLocale();
+            String underscore = local.replace('-', '_');
+            if (segments.subList(0, segments.size() - 1).contains(local) ||
+                    baseName.equals(local) || baseName.equals(underscore) ||
+                    baseName.endsWith("_" + underscore)) {
+                return mapping;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return changed files under src dir (relative to src dir). Note they
+     * may not all be documents.
+     */
+    public Set<String> getSourceDocs() {
+        return sourceDocs;
+    }
+
+    /**
+     * @return locales that have changed translation files
+     */
+    public Set<LocaleMapping> getTransLocales() {
+        return transLocales;
+    }
+
+    public boolean isEmpty() {
+        return sourceDocs.isEmpty() && transLocales.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("sourceDocs", sourceDocs)
+                .add("transLocales", transLocales)
+                .toString();
+    }
+}
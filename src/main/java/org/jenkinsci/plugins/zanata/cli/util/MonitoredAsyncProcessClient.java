@@ -0,0 +1,63 @@
+/*
+ * Copyright 2017, Red Hat, Inc. and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jenkinsci.plugins.zanata.cli.util;
+
+import org.jenkinsci.plugins.zanata.exception.SyncCancelledException;
+import org.zanata.rest.client.AsyncProcessClient;
+import org.zanata.rest.client.RestClientFactory;
+import org.zanata.rest.dto.ProcessStatus;
+
+/**
+ * Push command polls the async process status at a fixed interval. This
+ * client does the waiting itself through {@link AsyncProcessMonitor} and only
+ * returns once the process is finished, so the push command sees the final
+ * status on its first poll.
+ */
+class MonitoredAsyncProcessClient extends AsyncProcessClient {
+    private final AsyncProcessMonitor monitor;
+    private final String kind;
+
+    MonitoredAsyncProcessClient(RestClientFactory factory,
+            AsyncProcessMonitor monitor, String server) {
+        super(factory);
+        this.monitor = monitor;
+        this.kind = server + "|push";
+    }
+
+    @Override
+    public ProcessStatus getProcessStatus(String processId) {
+        ProcessStatus status = super.getProcessStatus(processId);
+        try {
+            return monitor.await(kind, status,
+                    previous -> super.getProcessStatus(processId),
+                    MonitoredAsyncProcessClient::isFinished);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SyncCancelledException();
+        }
+    }
+
+    static boolean isFinished(ProcessStatus status) {
+        ProcessStatus.ProcessStatusCode code = status.getStatusCode();
+        return code != ProcessStatus.ProcessStatusCode.Accepted &&
+                code != ProcessStatus.ProcessStatusCode.Running;
+    }
+}
@@ -0,0 +1,294 @@
+/*
+ * Copyright 2017, Red Hat, Inc. and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jenkinsci.plugins.zanata.cli.util;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+
+/**
+ * Merges a freshly downloaded PO file into an existing local PO file. The
+ * downloaded file decides which entries exist and in what order. For every
+ * entry whose translation and flags are unchanged, the local entry is copied
+ * byte for byte (keeping its line wrapping and comments), so only entries
+ * that really changed differ from the local file.
+ * <p>
+ * The local file is not held in memory: only the key, a digest and the
+ * position of each entry are indexed, and unchanged entries are copied from
+ * the file when written. Obsolete ({@code #~}) entries are keyed apart from
+ * active ones. Files are read as ISO-8859-1 so that bytes are copied
+ * unchanged whatever the real encoding is (and one character is one byte).
+ */
+public final class PoFileMerger {
+
+    private PoFileMerger() {
+    }
+
+    /**
+     * @param local
+     *         existing local file
+     * @param downloaded
+     *         file downloaded from server
+     * @param output
+     *         where to write the merged result
+     * @return number of entries taken from the downloaded file because they
+     * changed
+     */
+    public static int merge(Path local, Path downloaded, Path output)
+            throws IOException {
+        Map<String, Located> localEntries = new HashMap<>();
+        try (PositionReader reader = new PositionReader(Files
+                .newBufferedReader(local, StandardCharsets.ISO_8859_1))) {
+            Entry entry;
+            while ((entry = Entry.read(reader)) != null) {
+                localEntries.putIfAbsent(entry.key(), new Located(entry));
+            }
+        }
+        int changed = 0;
+        try (FileChannel localChannel = FileChannel.open(local,
+                StandardOpenOption.READ);
+                PositionReader reader = new PositionReader(Files
+                        .newBufferedReader(downloaded,
+                                StandardCharsets.ISO_8859_1));
+                BufferedWriter writer = Files.newBufferedWriter(output,
+                        StandardCharsets.ISO_8859_1)) {
+            Entry entry;
+            boolean first = true;
+            while ((entry = Entry.read(reader)) != null) {
+                Located localEntry = localEntries.get(entry.key());
+                String toWrite = entry.raw.toString();
+                if (entry.isHeader()) {
+                    // header is always taken from the server
+                } else if (localEntry != null &&
+                        localEntry.semantics.equals(entry.semanticsDigest())) {
+                    toWrite = localEntry.copy(localChannel);
+                } else {
+                    changed++;
+                }
+                if (!first) {
+                    writer.newLine();
+                }
+                writer.write(toWrite);
+                first = false;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Where an entry of the local file is, and what it means.
+     */
+    private static final class Located {
+        private final long start;
+        private final long end;
+        private final HashCode semantics;
+
+        private Located(Entry entry) {
+            this.start = entry.start;
+            this.end = entry.end;
+            this.semantics = entry.semanticsDigest();
+        }
+
+        /**
+         * @return the entry as it is in the file, ending with a new line
+         */
+        private String copy(FileChannel channel) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate((int) (end - start));
+            while (buffer.hasRemaining() &&
+                    channel.read(buffer, start + buffer.position()) >= 0) {
+                // keep reading
+            }
+            String raw = new String(buffer.array(), 0, buffer.position(),
+                    StandardCharsets.ISO_8859_1);
+            return raw.endsWith("\n") ? raw : raw + '\n';
+        }
+    }
+
+    /**
+     * Reads lines like {@link java.io.BufferedReader#readLine()} while
+     * counting characters, so entries can be found again in the file.
+     */
+    private static final class PositionReader implements Closeable {
+        private final Reader in;
+        private long position;
+        private long lineStart;
+        private int pushedBack = -1;
+
+        private PositionReader(Reader in) {
+            this.in = in;
+        }
+
+        String readLine() throws IOException {
+            lineStart = position;
+            StringBuilder line = new StringBuilder();
+            int c;
+            while ((c = read()) != -1) {
+                if (c == '\n') {
+                    return line.toString();
+                }
+                if (c == '\r') {
+                    int next = read();
+                    if (next != '\n' && next != -1) {
+                        pushedBack = next;
+                        position--;
+                    }
+                    return line.toString();
+                }
+                line.append((char) c);
+            }
+            return line.length() > 0 ? line.toString() : null;
+        }
+
+        private int read() throws IOException {
+            int c = pushedBack;
+            if (c >= 0) {
+                pushedBack = -1;
+            } else {
+                c = in.read();
+            }
+            if (c != -1) {
+                position++;
+            }
+            return c;
+        }
+
+        /**
+         * @return offset of the line last read
+         */
+        long lineStart() {
+            return lineStart;
+        }
+
+        /**
+         * @return offset after the line last read and its terminator
+         */
+        long position() {
+            return position;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    private static final class Entry {
+        private final StringBuilder raw = new StringBuilder();
+        private final StringBuilder flags = new StringBuilder();
+        private final Map<String, StringBuilder> fields = new TreeMap<>();
+        private boolean obsolete;
+        private long start = -1;
+        private long end;
+        private StringBuilder current;
+
+        /**
+         * Reads lines up to the next blank line.
+         *
+         * @return the entry or null if end of input is reached
+         */
+        static Entry read(PositionReader reader) throws IOException {
+            Entry entry = new Entry();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    if (entry.raw.length() > 0) {
+                        return entry;
+                    }
+                    continue;
+                }
+                if (entry.start < 0) {
+                    entry.start = reader.lineStart();
+                }
+                entry.end = reader.position();
+                entry.raw.append(line).append('\n');
+                if (line.startsWith("#,")) {
+                    entry.flags.append(line);
+                } else if (line.startsWith("#~|")) {
+                    // previous msgid of an obsolete entry
+                    entry.current = null;
+                } else if (line.startsWith("#~")) {
+                    entry.obsolete = true;
+                    entry.parse(line.substring(2).trim());
+                } else if (line.startsWith("#")) {
+                    // translator and extracted comments are not compared
+                    entry.current = null;
+                } else {
+                    entry.parse(line);
+                }
+            }
+            return entry.raw.length() > 0 ? entry : null;
+        }
+
+        private void parse(String line) {
+            if (line.startsWith("\"") && current != null) {
+                current.append(unquote(line));
+                return;
+            }
+            int space = line.indexOf(' ');
+            if (space > 0) {
+                current = new StringBuilder(unquote(line.substring(space + 1)));
+                fields.put(line.substring(0, space), current);
+            }
+        }
+
+        private static String unquote(String value) {
+            String trimmed = value.trim();
+            if (trimmed.length() >= 2 && trimmed.startsWith("\"") &&
+                    trimmed.endsWith("\"")) {
+                return trimmed.substring(1, trimmed.length() - 1);
+            }
+            return trimmed;
+        }
+
+        String key() {
+            return (obsolete ? "#~" : "") + value("msgctxt") + '\u0004' +
+                    value("msgid") + '\u0004' + value("msgid_plural");
+        }
+
+        boolean isHeader() {
+            return !obsolete && value("msgid").isEmpty() &&
+                    !fields.containsKey("msgctxt");
+        }
+
+        HashCode semanticsDigest() {
+            return Hashing.sha256().hashString(flags + "\n" + fields,
+                    StandardCharsets.ISO_8859_1);
+        }
+
+        private String value(String field) {
+            StringBuilder value = fields.get(field);
+            return value == null ? "" : value.toString();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2017, Red Hat, Inc. and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jenkinsci.plugins.zanata.cli.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Optional;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+
+import org.jenkinsci.plugins.zanata.exception.ZanataSyncException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.zanata.client.config.ZanataConfig;
+import com.google.common.hash.Hashing;
+
+/**
+ * Parses each zanata.xml once per JVM. Push and pull in the same build, and
+ * later builds on the same node, get the parsed config back as long as the
+ * file content is the same.
+ * <p>
+ * Entries are keyed by a hash of the content, so a file rewritten by a
+ * checkout is reparsed only if it really changed. One JAXB context is built
+ * for the lifetime of the JVM since building it is the expensive part.
+ * Callers must treat the returned config as read only.
+ */
+public final class ProjectConfigCache {
+    private static final Logger log =
+            LoggerFactory.getLogger(ProjectConfigCache.class);
+    private static final int MAX_ENTRIES = 256;
+    private static final ProjectConfigCache INSTANCE = new ProjectConfigCache();
+
+    private final LinkedHashMap<String, ZanataConfig> configs =
+            new LinkedHashMap<>(16, 0.75f, true);
+    private long hits;
+    private long parses;
+
+    private ProjectConfigCache() {
+    }
+
+    public static ProjectConfigCache get() {
+        return INSTANCE;
+    }
+
+    private static class ContextHolder {
+        private static final JAXBContext CONTEXT = createContext();
+
+        private static JAXBContext createContext() {
+            try {
+                return JAXBContext.newInstance(ZanataConfig.class);
+            } catch (JAXBException e) {
+                throw new ZanataSyncException(
+                        "can not create JAXB context for zanata.xml", e);
+            }
+        }
+    }
+
+    /**
+     * @return JAXB context for zanata.xml, built on first use
+     */
+    public static JAXBContext jaxbContext() {
+        return ContextHolder.CONTEXT;
+    }
+
+    /**
+     * @param projectConfig
+     *         zanata.xml
+     * @return parsed config, or empty if the file does not exist
+     */
+    public Optional<ZanataConfig> load(File projectConfig)
+            throws JAXBException {
+        if (!projectConfig.isFile()) {
+            log.warn("project config {} not found. Ignored", projectConfig);
+            return Optional.empty();
+        }
+        byte[] content;
+        try {
+            content = Files.readAllBytes(projectConfig.toPath());
+        } catch (IOException e) {
+            throw new ZanataSyncException(
+                    "can not read project config " + projectConfig, e);
+        }
+        String key = Hashing.sha256().hashBytes(content).toString();
+        synchronized (this) {
+            ZanataConfig cached = configs.get(key);
+            if (cached != null) {
+                hits++;
+                log.debug("{} unchanged. Using parsed config ({} hits, {} parses)",
+                        projectConfig, hits, parses);
+                return Optional.of(cached);
+            }
+        }
+        // unmarshaller is not thread safe but cheap to create
+        ZanataConfig config = (ZanataConfig) jaxbContext().createUnmarshaller()
+                .unmarshal(new ByteArrayInputStream(content));
+        synchronized (this) {
+            parses++;
+            configs.put(key, config);
+            Iterator<String> eldest = configs.keySet().iterator();
+            while (configs.size() > MAX_ENTRIES && eldest.hasNext()) {
+                eldest.next();
+                eldest.remove();
+            }
+        }
+        return Optional.of(config);
+    }
+
+    /**
+     * @return share of loads answered without parsing
+     */
+    public synchronized double getHitRatio() {
+        long loads = hits + parses;
+        return loads == 0 ? 0 : (double) hits / loads;
+    }
+}
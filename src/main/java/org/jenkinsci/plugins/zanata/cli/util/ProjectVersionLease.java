@@ -0,0 +1,395 @@
+/*
+ * Copyright 2017, Red Hat, Inc. and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jenkinsci.plugins.zanata.cli.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import org.jenkinsci.plugins.zanata.exception.ZanataSyncException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.zanata.client.commands.push.PushOptions;
+import org.zanata.client.config.LocaleMapping;
+import com.google.common.base.Strings;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * Makes syncs of different jobs take turns on the same project version of
+ * the same Zanata server, so they don't trigger server processing and
+ * copy-trans on top of each other.
+ * <p>
+ * Leases are handed out by a {@link Coordinator} on the Jenkins controller.
+ * A push whose input (files, locales and push type) is identical to the last
+ * successful push of the version is skipped. Time spent waiting is added up
+ * so the build can report it.
+ */
+public class ProjectVersionLease {
+    private static final Logger log =
+            LoggerFactory.getLogger(ProjectVersionLease.class);
+    // how long one request to the coordinator may block
+    private static final long POLL_MILLIS = 5000;
+    private static final InheritableThreadLocal<ProjectVersionLease> CURRENT =
+            new InheritableThreadLocal<>();
+
+    private final Coordinator coordinator;
+    private final String owner;
+    private final AtomicLong waitedMillis = new AtomicLong();
+    private final AtomicInteger skipped = new AtomicInteger();
+
+    /**
+     * Hands out leases. Implemented on the controller.
+     */
+    public interface Coordinator {
+        /**
+         * @param inputDigest
+         *         digest of the push input, or null for pull
+         * @return the lease, or null if it was not free within the timeout
+         */
+        Grant tryAcquire(String key, String owner, String inputDigest,
+                long timeoutMillis);
+
+        /**
+         * @param success
+         *         whether the push or pull under the lease succeeded
+         */
+        void release(String key, String owner, String inputDigest,
+                boolean success);
+    }
+
+    /**
+     * A lease that was granted.
+     */
+    public static final class Grant implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private final String identicalPushBy;
+
+        public Grant(String identicalPushBy) {
+            this.identicalPushBy = identicalPushBy;
+        }
+
+        /**
+         * @return the build that last pushed the same input, or null if the
+         * input is new
+         */
+        public String getIdenticalPushBy() {
+            return identicalPushBy;
+        }
+    }
+
+    public ProjectVersionLease(Coordinator coordinator, String owner) {
+        this.coordinator = coordinator;
+        this.owner = owner;
+    }
+
+    public static void bind(ProjectVersionLease lease) {
+        CURRENT.set(lease);
+    }
+
+    public static void unbind() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Blocks until the project version is free. Does nothing if no lease is
+     * bound to this sync.
+     *
+     * @param pushOptions
+     *         options of a push with zanata.xml applied, or null for pull
+     * @param pushType
+     *         push type of a push
+     */
+    public static Held acquire(String server, String project, String version,
+            PushOptions pushOptions, String pushType) {
+        ProjectVersionLease lease = CURRENT.get();
+        if (lease == null) {
+            return Held.NONE;
+        }
+        String digest = pushOptions == null ? null :
+                inputDigest(pushOptions, pushType);
+        return lease.acquire(server + "|" + project + "|" + version, digest);
+    }
+
+    private Held acquire(String key, String digest) {
+        long start = System.currentTimeMillis();
+        Grant grant;
+        try {
+            do {
+                CancellableSync.checkCancelled();
+                grant = coordinator.tryAcquire(key, owner, digest,
+                        POLL_MILLIS);
+            } while (grant == null);
+        } catch (RuntimeException e) {
+            if (e instanceof ZanataSyncException) {
+                throw e;
+            }
+            // the lease avoids duplicate work. It must not stop the sync
+            log.warn("can not take lease on {}. Carrying on without it", key,
+                    e);
+            return Held.NONE;
+        }
+        long waited = System.currentTimeMillis() - start;
+        if (waited > POLL_MILLIS) {
+            log.info("waited {} ms for {}", waited, key);
+        }
+        waitedMillis.addAndGet(waited);
+        Held held = new Held(this, key, digest, grant.getIdenticalPushBy());
+        if (held.isIdenticalToLastPush()) {
+            skipped.incrementAndGet();
+        }
+        return held;
+    }
+
+    /**
+     * Digest of everything a push sends: the source documents it picks up
+     * (include and exclude patterns of zanata.xml, or the project type's
+     * default), their translation files if translations are pushed, locales
+     * and push type. Paths are hashed relative to the source and translation
+     * directories, so the same input checked out into different workspaces
+     * gives the same digest.
+     */
+    static String inputDigest(PushOptions options, String pushType) {
+        Hasher hasher = Hashing.sha256().newHasher()
+                .putUnencodedChars(String.valueOf(options.getProj()))
+                .putUnencodedChars("|")
+                .putUnencodedChars(String.valueOf(options.getProjectVersion()))
+                .putUnencodedChars("|")
+                .putUnencodedChars(String.valueOf(pushType))
+                .putUnencodedChars("|");
+        List<LocaleMapping> locales = new ArrayList<>();
+        if (options.getLocaleMapList() != null) {
+            for (LocaleMapping locale : options.getLocaleMapList()) {
+                locales.add(locale);
+                hasher.putUnencodedChars(locale.getLocale() + "=" +
+                        locale.getLocalLocale() + ",");
+            }
+        }
+        boolean pushesTrans = !"source".equalsIgnoreCase(pushType);
+        Path srcDir = options.getSrcDir().toPath().toAbsolutePath().normalize();
+        try {
+            for (String doc : sourceDocs(options, srcDir)) {
+                hasher.putUnencodedChars("|src:" + doc + "|")
+                        .putBytes(Files.readAllBytes(srcDir.resolve(doc)));
+                if (!pushesTrans) {
+                    continue;
+                }
+                for (LocaleMapping locale : locales) {
+                    File transFile = PushPullOptionsUtil
+                            .resolveTransFile(options, doc, locale);
+                    if (transFile.isFile()) {
+                        hasher.putUnencodedChars("|trans:" +
+                                locale.getLocale() + ":" + doc + "|")
+                                .putBytes(Files.readAllBytes(
+                                        transFile.toPath()));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new ZanataSyncException("can not read push input", e);
+        }
+        return hasher.hash().toString();
+    }
+
+    /**
+     * @return source documents push would pick up, relative to the source
+     * dir and sorted. Hidden files and directories (e.g. .git) are left out.
+     */
+    static SortedSet<String> sourceDocs(PushOptions options, Path srcDir) {
+        List<Pattern> includes = new ArrayList<>();
+        List<String> includeGlobs = options.getIncludes() == null ||
+                options.getIncludes().isEmpty() ?
+                defaultIncludes(options.getProjectType()) :
+                options.getIncludes();
+        includeGlobs.forEach(glob -> includes.add(antPattern(glob)));
+        List<Pattern> excludes = new ArrayList<>();
+        if (options.getExcludes() != null) {
+            options.getExcludes().forEach(glob -> excludes.add(antPattern(glob)));
+        }
+        SortedSet<String> docs = new TreeSet<>();
+        if (!Files.isDirectory(srcDir)) {
+            return docs;
+        }
+        try {
+            Files.walkFileTree(srcDir, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir,
+                        BasicFileAttributes attrs) {
+                    return !dir.equals(srcDir) && isHidden(dir) ?
+                            FileVisitResult.SKIP_SUBTREE :
+                            FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file,
+                        BasicFileAttributes attrs) {
+                    String relative = srcDir.relativize(file).toString()
+                            .replace('\\', '/');
+                    if (attrs.isRegularFile() && !isHidden(file) &&
+                            matchesAny(includes, relative) &&
+                            !matchesAny(excludes, relative)) {
+                        docs.add(relative);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            throw new ZanataSyncException("can not list " + srcDir, e);
+        }
+        return docs;
+    }
+
+    private static List<String> defaultIncludes(String projectType) {
+        switch (Strings.nullToEmpty(projectType).toLowerCase()) {
+            case "gettext":
+            case "podir":
+                return Collections.singletonList("**/*.pot");
+            case "properties":
+            case "utf8properties":
+                return Collections.singletonList("**/*.properties");
+            case "xliff":
+            case "xml":
+                return Collections.singletonList("**/*.xml");
+            default:
+                return Collections.singletonList("**");
+        }
+    }
+
+    private static boolean isHidden(Path path) {
+        return path.getFileName() != null &&
+                path.getFileName().toString().startsWith(".");
+    }
+
+    private static boolean matchesAny(List<Pattern> patterns, String path) {
+        for (Pattern pattern : patterns) {
+            if (pattern.matcher(path).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return regex of an ant style path pattern as used in zanata.xml
+     * ({@code **} for any directories, {@code *} and {@code ?} within a name)
+     */
+    static Pattern antPattern(String glob) {
+        String path = glob.trim().replace('\\', '/');
+        StringBuilder regex = new StringBuilder();
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if (c == '*' && i + 1 < path.length() &&
+                    path.charAt(i + 1) == '*') {
+                boolean dirs = i + 2 < path.length() &&
+                        path.charAt(i + 2) == '/';
+                regex.append(dirs ? "(?:.*/)?" : ".*");
+                i += dirs ? 2 : 1;
+            } else if (c == '*') {
+                regex.append("[^/]*");
+            } else if (c == '?') {
+                regex.append("[^/]");
+            } else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return Pattern.compile(regex.toString());
+    }
+
+    /**
+     * @return milliseconds this sync waited for leases
+     */
+    public long getWaitedMillis() {
+        return waitedMillis.get();
+    }
+
+    /**
+     * @return pushes skipped because the same input was just pushed
+     */
+    public int getSkipped() {
+        return skipped.get();
+    }
+
+    /**
+     * A held lease. Released on close.
+     */
+    public static final class Held implements AutoCloseable {
+        static final Held NONE = new Held(null, null, null, null);
+
+        private final ProjectVersionLease lease;
+        private final String key;
+        private final String digest;
+        private final String identicalPushBy;
+        private boolean success;
+
+        private Held(ProjectVersionLease lease, String key, String digest,
+                String identicalPushBy) {
+            this.lease = lease;
+            this.key = key;
+            this.digest = digest;
+            this.identicalPushBy = identicalPushBy;
+        }
+
+        /**
+         * @return true if a push of the same input succeeded recently, so
+         * this one can be skipped
+         */
+        public boolean isIdenticalToLastPush() {
+            return identicalPushBy != null;
+        }
+
+        public String getIdenticalPushBy() {
+            return identicalPushBy;
+        }
+
+        /**
+         * Marks the work under the lease as done, so the next holder may
+         * rely on it.
+         */
+        public void succeeded() {
+            success = true;
+        }
+
+        @Override
+        public void close() {
+            if (lease == null) {
+                return;
+            }
+            try {
+                lease.coordinator.release(key, lease.owner, digest, success);
+            } catch (RuntimeException e) {
+                log.warn("can not release lease on {}", key, e);
+            }
+        }
+    }
+}
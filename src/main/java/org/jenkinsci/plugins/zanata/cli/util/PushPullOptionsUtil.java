@@ -28,15 +28,16 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.core.MediaType;
 import javax.xml.bind.JAXBException;
 
 import org.jboss.resteasy.client.jaxrs.ResteasyClientBuilder;
 import org.jboss.resteasy.plugins.interceptors.CacheControlFeature;
-import org.jboss.resteasy.plugins.interceptors.encoding.AcceptEncodingGZIPFilter;
-import org.jboss.resteasy.plugins.interceptors.encoding.AcceptEncodingGZIPInterceptor;
 import org.jboss.resteasy.plugins.interceptors.encoding.ClientContentEncodingAnnotationFeature;
 import org.jboss.resteasy.plugins.interceptors.encoding.GZIPDecodingInterceptor;
 import org.jboss.resteasy.plugins.interceptors.encoding.GZIPEncodingInterceptor;
@@ -73,8 +74,10 @@ import org.zanata.client.commands.pull.PullOptions;
 import org.zanata.client.commands.push.PushCommand;
 import org.zanata.client.commands.push.PushOptions;
 import org.zanata.client.config.LocaleList;
+import org.zanata.client.config.LocaleMapping;
 import org.zanata.client.config.ZanataConfig;
 import org.jenkinsci.plugins.zanata.exception.ZanataSyncException;
+import org.zanata.rest.client.CopyTransClient;
 import org.zanata.rest.client.RestClientFactory;
 import org.zanata.rest.dto.VersionInfo;
 
@@ -86,10 +89,14 @@ public final class PushPullOptionsUtil {
             LoggerFactory.getLogger(PushPullOptionsUtil.class);
     // TODO make this configurable?
     public static final int MAX_DEPTH = 10;
+    private static final int MAX_CONNECTIONS = 10;
 
     // FIXME this is a quick hack to work around http://stackoverflow.com/questions/41253028/how-to-make-jenkins-plugin-aware-of-spi
     private static final Consumer<ResteasyClientBuilder>
             resteasyClientBuilderConsumer = builder -> {
+        // clients are shared by the threads of a sync (see SyncWorker)
+        builder.connectionPoolSize(MAX_CONNECTIONS)
+                .maxPooledPerRoute(MAX_CONNECTIONS);
         builder.register(ResteasyJacksonProvider.class)
                 .register(JAXBXmlSeeAlsoProvider.class)
                 .register(JAXBXmlRootElementProvider.class)
@@ -114,12 +121,16 @@ public final class PushPullOptionsUtil {
                 .register(IIOImageProvider.class)
                 .register(SerializableProvider.class)
                 .register(CacheControlFeature.class)
-                .register(AcceptEncodingGZIPInterceptor.class)
-                .register(AcceptEncodingGZIPFilter.class)
+                .register(RequestTrace.Filter.class)
+                .register(TransferCompression.Filter.class)
+                .register(TransferCompression.Encoder.class)
+                .register(TransferCompression.UriRecorder.class)
                 .register(ClientContentEncodingAnnotationFeature.class)
                 .register(GZIPDecodingInterceptor.class)
                 .register(GZIPEncodingInterceptor.class)
-                .register(ServerContentEncodingAnnotationFeature.class);
+                .register(ServerContentEncodingAnnotationFeature.class)
+                .register(CancellableSync.Filter.class)
+                .register(ResponseCacheFilter.class);
     };
 
     /**
@@ -146,14 +157,17 @@ public final class PushPullOptionsUtil {
 
         try {
             // here we must take it step by step due to an issue http://stackoverflow.com/questions/41253028/how-to-make-jenkins-plugin-aware-of-spi
+            // the parsed zanata.xml is reused across push, pull and builds
             Optional<ZanataConfig> zanataConfig =
-                    OptionsUtil.applyProjectConfigToProjectOptions(options);
+                    ProjectConfigCache.get().load(projectConfig);
+            zanataConfig.ifPresent(
+                    config -> OptionsUtil.applyProjectConfig(options, config));
             if (OptionsUtil
                     .shouldFetchLocalesFromServer(zanataConfig, options)) {
                 log.debug("fetching locales from server");
-                LocaleList localeMappings = OptionsUtil
-                        .fetchLocalesFromServer(options,
-                                makeRestClientFactory(options));
+                LocaleList localeMappings = SyncWorker.get().locales(options,
+                        () -> OptionsUtil.fetchLocalesFromServer(options,
+                                makeRestClientFactory(options)));
                 options.setLocaleMapList(localeMappings);
             }
         } catch (JAXBException e) {
@@ -177,14 +191,18 @@ public final class PushPullOptionsUtil {
         return options;
     }
 
-    private static <O extends PushPullOptions> RestClientFactory makeRestClientFactory(
+    public static <O extends PushPullOptions> RestClientFactory makeRestClientFactory(
             O options) {
         // FIXME the version info is not resolved properly
-        return new RestClientFactory(getUri(options), options.getUsername(),
-                        options.getKey(),
+        return SyncWorker.get().restClientFactory(options,
+                handle -> new RestClientFactory(getUri(options),
+                        options.getUsername(), options.getKey(),
                         new VersionInfo("unknown", "unknown", "unknown"),
                         options.getLogHttp(), options.isDisableSSLCert(),
-                        resteasyClientBuilderConsumer);
+                        builder -> {
+                            resteasyClientBuilderConsumer.accept(builder);
+                            builder.register(handle);
+                        }));
     }
 
     private static <O extends PushPullOptions> URI getUri(O options) {
@@ -213,11 +231,124 @@ public final class PushPullOptionsUtil {
         }
     }
 
+    /**
+     * Creates a plain JAX-RS client for the endpoints that zanata client does
+     * not wrap (e.g. translation file download). It has the same providers registered
+     * as the clients created by {@link RestClientFactory}.
+     *
+     * @param options
+     *         push or pull options
+     * @return a new client. Caller is responsible for closing it.
+     */
+    public static <O extends PushPullOptions> Client makeResteasyClient(
+            O options) {
+        ResteasyClientBuilder builder = new ResteasyClientBuilder()
+                .establishConnectionTimeout(30, TimeUnit.SECONDS)
+                .socketTimeout(5, TimeUnit.MINUTES);
+        return build(builder, options);
+    }
+
+    /**
+     * Same as {@link #makeResteasyClient(PushPullOptions)} but gives up
+     * quickly. Used for health checks.
+     */
+    public static <O extends PushPullOptions> Client makeResteasyClient(
+            O options, int timeoutSeconds) {
+        ResteasyClientBuilder builder = new ResteasyClientBuilder()
+                .establishConnectionTimeout(timeoutSeconds, TimeUnit.SECONDS)
+                .socketTimeout(timeoutSeconds, TimeUnit.SECONDS);
+        return build(builder, options);
+    }
+
+    private static <O extends PushPullOptions> Client build(
+            ResteasyClientBuilder builder, O options) {
+        if (options.isDisableSSLCert()) {
+            builder.disableTrustManager();
+        }
+        resteasyClientBuilderConsumer.accept(builder);
+        return builder.build();
+    }
+
+    /**
+     * Initializes the REST stack (provider registration, JAXB and Jackson) so
+     * that the first sync in this JVM doesn't pay for it.
+     */
+    public static void warmUp() {
+        ResteasyClientBuilder builder = new ResteasyClientBuilder();
+        resteasyClientBuilderConsumer.accept(builder);
+        builder.build().close();
+        ProjectConfigCache.jaxbContext();
+        try {
+            new ResteasyJacksonProvider()
+                    .locateMapper(VersionInfo.class,
+                            MediaType.APPLICATION_JSON_TYPE)
+                    .writeValueAsString(
+                            new VersionInfo("unknown", "unknown", "unknown"));
+        } catch (IOException e) {
+            log.debug("failed warming up Jackson", e);
+        }
+    }
+
+    /**
+     * Works out where a translation file should live locally. This follows
+     * the same layout zanata client uses for each project type.
+     *
+     * @param options
+     *         pull options after {@link #applyProjectConfig} is applied
+     * @param docFileName
+     *         document file name relative to source dir (with extension)
+     * @param localeMapping
+     *         locale mapping of the translation
+     * @return the translation file under trans dir
+     */
+    public static File resolveTransFile(PushPullOptions options,
+            String docFileName, LocaleMapping localeMapping) {
+        String localLocale = localeMapping.getLocalLocale();
+        String underscoreLocale = localLocale.replace('-', '_');
+        int dot = docFileName.lastIndexOf('.');
+        String docId = dot > docFileName.lastIndexOf('/') && dot > 0 ?
+                docFileName.substring(0, dot) : docFileName;
+        String projectType = Optional.ofNullable(options.getProjectType())
+                .orElse("file").toLowerCase();
+        File transDir = options.getTransDir();
+        switch (projectType) {
+            case "gettext":
+                File docDir = new File(transDir, docId).getParentFile();
+                return new File(docDir, underscoreLocale + ".po");
+            case "podir":
+                return new File(new File(transDir, localLocale), docId + ".po");
+            case "properties":
+            case "utf8properties":
+                return new File(transDir,
+                        docId + "_" + underscoreLocale + ".properties");
+            case "xliff":
+            case "xml":
+                return new File(transDir,
+                        docId + "_" + underscoreLocale + ".xml");
+            default:
+                return new File(new File(transDir, localLocale), docFileName);
+        }
+    }
+
     public static PushCommand makePushCommand(PushOptions pushOptions) {
         RestClientFactory factory =
                 makeRestClientFactory(pushOptions);
-        return new PushCommand(pushOptions, factory.getCopyTransClient(),
-                factory.getAsyncProcessClient(), factory);
+        return makePushCommand(pushOptions, factory,
+                factory.getCopyTransClient());
+    }
+
+    /**
+     * @param copyTransClient
+     *         client push command uses for copy-trans, e.g. a
+     *         {@link DeferredCopyTransClient}
+     */
+    public static PushCommand makePushCommand(PushOptions pushOptions,
+            RestClientFactory factory, CopyTransClient copyTransClient) {
+        return new PushCommand(pushOptions, copyTransClient,
+                new MonitoredAsyncProcessClient(factory,
+                        AsyncProcessMonitor.get(),
+                        pushOptions.getUrl().toString()),
+                factory);
     }
 
     public static PullCommand makePullCommand(PullOptions pullOptions) {
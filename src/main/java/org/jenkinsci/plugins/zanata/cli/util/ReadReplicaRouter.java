@@ -0,0 +1,237 @@
+/*
+ * Copyright 2017, Red Hat, Inc. and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jenkinsci.plugins.zanata.cli.util;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.core.Response;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.zanata.client.commands.PushPullOptions;
+import com.google.common.collect.ImmutableList;
+
+import net.sf.json.JSONObject;
+
+/**
+ * Decides which server pulls read from. A read replica is a mirror of the
+ * primary Zanata server that is closer to the agent. Only reads are routed to
+ * it, pushes always go to the primary.
+ * <p>
+ * Replicas are probed once per sync and the healthy one that answers fastest
+ * is used. A replica may lag behind the primary, so before a project version
+ * is pulled from it its translation statistics are compared with the
+ * primary's. The statistics change whenever a translation changes, which
+ * makes them a cheap watermark. If they differ the version is pulled from the
+ * primary.
+ */
+public class ReadReplicaRouter {
+    private static final Logger log =
+            LoggerFactory.getLogger(ReadReplicaRouter.class);
+    private static final String VERSION_PATH = "rest/version";
+    private static final String STATS_PATH =
+            "rest/stats/proj/%s/iter/%s?detail=false&word=false";
+    private static final int PROBE_TIMEOUT_SECONDS = 5;
+    // the first request also pays for connection setup
+    private static final int PROBES = 2;
+
+    private final String primary;
+    private final List<String> replicas;
+    private Optional<String> nearest;
+    private final Map<String, String> routes = new HashMap<>();
+
+    /**
+     * @param primary
+     *         URL of the primary server
+     * @param replicas
+     *         URLs of read replicas
+     */
+    public ReadReplicaRouter(String primary, List<String> replicas) {
+        this.primary = primary;
+        this.replicas = ImmutableList.copyOf(replicas);
+    }
+
+    /**
+     * @param options
+     *         options carrying the credentials
+     * @return the nearest healthy replica, for reads that can tolerate some
+     * lag (e.g. locale list). Primary if no replica is healthy.
+     */
+    public synchronized String metadataUrl(PushPullOptions options) {
+        return nearestReplica(options).orElse(primary);
+    }
+
+    /**
+     * @param options
+     *         options carrying the credentials
+     * @param project
+     *         project slug
+     * @param version
+     *         version slug
+     * @return where the translations of the project version should be pulled
+     * from
+     */
+    public synchronized String pullUrl(PushPullOptions options,
+            String project, String version) {
+        Optional<String> replica = nearestReplica(options);
+        if (!replica.isPresent() || !ServerCapabilities.supports(primary,
+                ServerCapabilities.Feature.STATISTICS)) {
+            // lag of the replica can't be checked
+            return primary;
+        }
+        return routes.computeIfAbsent(SyncStateStore.key(project, version),
+                key -> {
+                    Client client = makeClient(options);
+                    try {
+                        Optional<String> primaryMark =
+                                watermark(client, options, primary, project,
+                                        version);
+                        Optional<String> replicaMark =
+                                watermark(client, options, replica.get(),
+                                        project, version);
+                        if (primaryMark.isPresent() &&
+                                primaryMark.equals(replicaMark)) {
+                            log.info("pulling {}:{} from replica {}", project,
+                                    version, replica.get());
+                            return replica.get();
+                        }
+                        log.info("replica {} is behind primary for {}:{}. Pulling from primary",
+                                replica.get(), project, version);
+                        return primary;
+                    } finally {
+                        client.close();
+                    }
+                });
+    }
+
+    private Optional<String> nearestReplica(PushPullOptions options) {
+        if (nearest != null) {
+            return nearest;
+        }
+        Client client = makeClient(options);
+        try {
+            String best = null;
+            long bestLatency = Long.MAX_VALUE;
+            for (String replica : replicas) {
+                CancellableSync.checkCancelled();
+                long latency = probe(client, replica);
+                if (latency < 0) {
+                    log.warn("read replica {} is not healthy. Skipped",
+                            replica);
+                    continue;
+                }
+                log.info("read replica {} answered in {} ms", replica,
+                        latency);
+                if (latency < bestLatency) {
+                    best = replica;
+                    bestLatency = latency;
+                }
+            }
+            nearest = Optional.ofNullable(best);
+            return nearest;
+        } finally {
+            client.close();
+        }
+    }
+
+    /**
+     * @return best latency in milliseconds, or -1 if the server is not healthy
+     */
+    private static long probe(Client client, String server) {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < PROBES; i++) {
+            long start = System.currentTimeMillis();
+            try {
+                Response response = client.target(url(server, VERSION_PATH))
+                        .request("application/json").get();
+                try {
+                    if (response.getStatus() != 200) {
+                        return -1;
+                    }
+                } finally {
+                    response.close();
+                }
+            } catch (RuntimeException e) {
+                log.debug("probing {} failed", server, e);
+                return -1;
+            }
+            best = Math.min(best, System.currentTimeMillis() - start);
+        }
+        return best;
+    }
+
+    /**
+     * Host specific links are dropped so that the statistics of the same
+     * version on two servers can be compared.
+     */
+    private Optional<String> watermark(Client client,
+            PushPullOptions options, String server, String project,
+            String version) {
+        CancellableSync.checkCancelled();
+        try {
+            Response response = client.target(url(server,
+                    String.format(STATS_PATH, project, version)))
+                    .request("application/json")
+                    .header("X-Auth-User", options.getUsername())
+                    .header("X-Auth-Token", options.getKey())
+                    .get();
+            try {
+                // a 404 may only mean this version is not there (yet), so
+                // only a method not allowed or not implemented counts as the
+                // server lacking the endpoint
+                if ((response.getStatus() == 405 ||
+                        response.getStatus() == 501) &&
+                        server.equals(primary)) {
+                    ServerCapabilities.markUnsupported(server,
+                            ServerCapabilities.Feature.STATISTICS);
+                }
+                if (response.getStatus() != 200) {
+                    log.warn("can not read statistics of {}:{} from {}: {}",
+                            project, version, server, response.getStatus());
+                    return Optional.empty();
+                }
+                JSONObject stats =
+                        JSONObject.fromObject(response.readEntity(String.class));
+                return Optional.of(Objects.toString(stats.opt("stats")));
+            } finally {
+                response.close();
+            }
+        } catch (RuntimeException e) {
+            log.warn("can not read statistics of {}:{} from {}", project,
+                    version, server, e);
+            return Optional.empty();
+        }
+    }
+
+    private static Client makeClient(PushPullOptions options) {
+        return PushPullOptionsUtil.makeResteasyClient(options,
+                PROBE_TIMEOUT_SECONDS);
+    }
+
+    private static String url(String server, String path) {
+        return server.endsWith("/") ? server + path : server + "/" + path;
+    }
+
+}
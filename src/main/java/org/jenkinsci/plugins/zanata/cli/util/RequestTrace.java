@@ -0,0 +1,369 @@
+/*
+ * Copyright 2017, Red Hat, Inc. and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jenkinsci.plugins.zanata.cli.util;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Priority;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.client.ClientRequestContext;
+import javax.ws.rs.client.ClientRequestFilter;
+import javax.ws.rs.client.ClientResponseContext;
+import javax.ws.rs.client.ClientResponseFilter;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+
+import com.google.common.collect.ImmutableSet;
+
+import net.sf.json.JSONObject;
+
+/**
+ * Records every REST request of a sync: latency, status, request and response
+ * size per endpoint template (e.g.
+ * {@code GET /rest/projects/p/{}/iterations/i/{}/r/{}}).
+ * <p>
+ * Requests are written as a trace in Chrome trace event format (the JSON
+ * array variant, which may be appended to), so the file can be opened offline
+ * in chrome://tracing or Perfetto. Latency includes reading the response
+ * body. A short per endpoint summary with a latency histogram is available
+ * from {@link #summary()}.
+ */
+public class RequestTrace {
+    public static final String TRACE_FILE = "trace.json";
+    private static final String PROP_START =
+            RequestTrace.class.getName() + ".start";
+    private static final String PROP_SENT =
+            RequestTrace.class.getName() + ".sent";
+    // segments following these are ids, slugs or locales
+    private static final ImmutableSet<String> VARIABLE_AFTER = ImmutableSet
+            .of("p", "i", "r", "translations", "project", "version", "proj",
+                    "iter", "doc", "key", "locale", "locales", "translation");
+    // upper bounds in ms of the histogram buckets. Last one is open ended
+    private static final long[] BUCKETS =
+            { 10, 50, 100, 250, 500, 1000, 2500, 5000, 10000 };
+    private static final InheritableThreadLocal<RequestTrace> CURRENT =
+            new InheritableThreadLocal<>();
+
+    private final String phase;
+    private final long originNanos = System.nanoTime();
+    private final long originMicros =
+            TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+    private final ConcurrentLinkedQueue<JSONObject> events =
+            new ConcurrentLinkedQueue<>();
+    private final Map<String, EndpointStats> endpoints = new TreeMap<>();
+    private final AtomicInteger documents = new AtomicInteger();
+    private final Set<String> locales = ConcurrentHashMap.newKeySet();
+
+    public RequestTrace(String phase) {
+        this.phase = phase;
+    }
+
+    public static void bind(RequestTrace trace) {
+        CURRENT.set(trace);
+    }
+
+    public static void unbind() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Turns a request path into its endpoint template.
+     */
+    static String template(String method, String path) {
+        int rest = path.indexOf("/rest/");
+        String[] segments = (rest < 0 ? path : path.substring(rest))
+                .split("/");
+        StringBuilder template = new StringBuilder(method).append(' ');
+        String previous = "";
+        for (String segment : segments) {
+            if (segment.isEmpty()) {
+                continue;
+            }
+            // an id that happens to look like a keyword is still an id
+            previous = VARIABLE_AFTER.contains(previous) ? "{}" : segment;
+            template.append('/').append(previous);
+        }
+        return template.toString();
+    }
+
+    private void record(String endpoint, String url, int status,
+            long startNanos, long requestBytes, long bytes) {
+        long endNanos = System.nanoTime();
+        long durationMillis =
+                TimeUnit.NANOSECONDS.toMillis(endNanos - startNanos);
+        JSONObject args = new JSONObject();
+        args.put("url", url);
+        args.put("status", status);
+        args.put("requestBytes", requestBytes);
+        args.put("bytes", bytes);
+        JSONObject event = new JSONObject();
+        event.put("name", endpoint);
+        event.put("cat", phase);
+        event.put("ph", "X");
+        event.put("ts", originMicros +
+                TimeUnit.NANOSECONDS.toMicros(startNanos - originNanos));
+        event.put("dur", TimeUnit.NANOSECONDS.toMicros(endNanos - startNanos));
+        event.put("pid", 1);
+        event.put("tid", Thread.currentThread().getId());
+        event.put("args", args);
+        events.add(event);
+        if (status < 400 && isDocumentTransfer(endpoint)) {
+            documents.incrementAndGet();
+            if (endpoint.endsWith("/translations/{}")) {
+                locales.add(lastSegment(url));
+            }
+        }
+        synchronized (endpoints) {
+            endpoints.computeIfAbsent(endpoint, e -> new EndpointStats())
+                    .add(durationMillis, status, requestBytes, bytes);
+        }
+    }
+
+    private static boolean isDocumentTransfer(String endpoint) {
+        return !endpoint.startsWith("DELETE ") &&
+                (endpoint.endsWith("/r/{}") ||
+                        endpoint.endsWith("/r/{}/translations/{}"));
+    }
+
+    private static String lastSegment(String url) {
+        int query = url.indexOf('?');
+        String path = query < 0 ? url : url.substring(0, query);
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * @return locales translations were pushed or pulled for
+     */
+    public Set<String> getLocales() {
+        return locales;
+    }
+
+    /**
+     * @return source or translation documents pushed or pulled one by one
+     */
+    public int getDocuments() {
+        return documents.get();
+    }
+
+    /**
+     * Writes the recorded requests.
+     *
+     * @param file
+     *         trace file
+     * @param append
+     *         true to add to a trace started by an earlier phase of the same
+     *         build
+     */
+    public void write(Path file, boolean append) throws IOException {
+        Files.createDirectories(file.getParent());
+        boolean start = !append || !Files.exists(file);
+        try (Writer writer = Files.newBufferedWriter(file,
+                StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                start ? StandardOpenOption.TRUNCATE_EXISTING :
+                        StandardOpenOption.APPEND)) {
+            if (start) {
+                writer.write("[\n");
+            }
+            for (JSONObject event : events) {
+                writer.write(event.toString());
+                writer.write(",\n");
+            }
+        }
+    }
+
+    /**
+     * @return one line per endpoint with count, statuses, bytes sent and
+     * received and latency histogram
+     */
+    public List<String> summary() {
+        List<String> lines = new ArrayList<>();
+        synchronized (endpoints) {
+            endpoints.forEach((endpoint, stats) -> lines
+                    .add(endpoint + ": " + stats));
+        }
+        return lines;
+    }
+
+    private static final class EndpointStats {
+        private final long[] histogram = new long[BUCKETS.length + 1];
+        private final Map<Integer, Integer> statuses = new TreeMap<>();
+        private long count;
+        private long sent;
+        private long received;
+        private long maxMillis;
+
+        private void add(long millis, int status, long requestBytes,
+                long responseBytes) {
+            count++;
+            sent += requestBytes;
+            received += responseBytes;
+            maxMillis = Math.max(maxMillis, millis);
+            statuses.merge(status, 1, Integer::sum);
+            int bucket = 0;
+            while (bucket < BUCKETS.length && millis > BUCKETS[bucket]) {
+                bucket++;
+            }
+            histogram[bucket]++;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder()
+                    .append(count).append(" requests, status ")
+                    .append(statuses).append(", ").append(sent)
+                    .append(" bytes sent, ").append(received)
+                    .append(" bytes received, max ").append(maxMillis)
+                    .append(" ms, latency");
+            for (int i = 0; i < histogram.length; i++) {
+                if (histogram[i] == 0) {
+                    continue;
+                }
+                text.append(i < BUCKETS.length ?
+                        " <=" + BUCKETS[i] + "ms:" :
+                        " >" + BUCKETS[BUCKETS.length - 1] + "ms:")
+                        .append(histogram[i]);
+            }
+            return text.toString();
+        }
+    }
+
+    /**
+     * Registered on every REST client. Does nothing unless a trace is bound.
+     * Runs first on the way out and last on the way in, so that it measures
+     * the whole exchange. Being the outermost writer interceptor, it counts
+     * the request body as it goes on the wire, after any compression.
+     */
+    @Priority(Priorities.AUTHENTICATION - 100)
+    public static class Filter implements ClientRequestFilter,
+            ClientResponseFilter, WriterInterceptor {
+        @Override
+        public void filter(ClientRequestContext requestContext)
+                throws IOException {
+            if (CURRENT.get() != null) {
+                requestContext.setProperty(PROP_START, System.nanoTime());
+                requestContext.setProperty(PROP_SENT, new AtomicLong());
+            }
+        }
+
+        @Override
+        public void aroundWriteTo(WriterInterceptorContext context)
+                throws IOException {
+            AtomicLong sent = (AtomicLong) context.getProperty(PROP_SENT);
+            if (sent != null) {
+                context.setOutputStream(new FilterOutputStream(
+                        context.getOutputStream()) {
+                    @Override
+                    public void write(int b) throws IOException {
+                        out.write(b);
+                        sent.incrementAndGet();
+                    }
+
+                    @Override
+                    public void write(byte[] b, int off, int len)
+                            throws IOException {
+                        out.write(b, off, len);
+                        sent.addAndGet(len);
+                    }
+                });
+            }
+            context.proceed();
+        }
+
+        @Override
+        public void filter(ClientRequestContext requestContext,
+                ClientResponseContext responseContext) throws IOException {
+            RequestTrace trace = CURRENT.get();
+            Long start = (Long) requestContext.getProperty(PROP_START);
+            if (trace == null || start == null) {
+                return;
+            }
+            String endpoint = template(requestContext.getMethod(),
+                    requestContext.getUri().getPath());
+            String url = requestContext.getUri().toString();
+            int status = responseContext.getStatus();
+            AtomicLong sent =
+                    (AtomicLong) requestContext.getProperty(PROP_SENT);
+            long requestBytes = sent == null ? 0 : sent.get();
+            if (!responseContext.hasEntity()) {
+                trace.record(endpoint, url, status, start, requestBytes, 0);
+                return;
+            }
+            responseContext.setEntityStream(new FilterInputStream(
+                    responseContext.getEntityStream()) {
+                private final AtomicBoolean done = new AtomicBoolean();
+                private long bytes;
+
+                @Override
+                public int read() throws IOException {
+                    int b = super.read();
+                    if (b == -1) {
+                        finish();
+                    } else {
+                        bytes++;
+                    }
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len)
+                        throws IOException {
+                    int read = super.read(b, off, len);
+                    if (read == -1) {
+                        finish();
+                    } else {
+                        bytes += read;
+                    }
+                    return read;
+                }
+
+                @Override
+                public void close() throws IOException {
+                    finish();
+                    super.close();
+                }
+
+                private void finish() {
+                    if (done.compareAndSet(false, true)) {
+                        trace.record(endpoint, url, status, start,
+                                requestBytes, bytes);
+                    }
+                }
+            });
+        }
+    }
+}
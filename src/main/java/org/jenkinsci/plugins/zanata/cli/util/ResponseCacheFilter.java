@@ -0,0 +1,284 @@
+/*
+ * Copyright 2017, Red Hat, Inc. and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jenkinsci.plugins.zanata.cli.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.Serializable;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import javax.ws.rs.client.ClientRequestContext;
+import javax.ws.rs.client.ClientRequestFilter;
+import javax.ws.rs.client.ClientResponseContext;
+import javax.ws.rs.client.ClientResponseFilter;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import com.google.common.base.Strings;
+
+/**
+ * Serves GET responses from a cache shared by all syncs (kept on the Jenkins
+ * controller) when the server confirms they are still current.
+ * <p>
+ * A cached response is never used without asking the server: only its ETag is
+ * given out and sent as If-None-Match, and the cached body is fetched only
+ * once the server answered 304. So the server still checks the credentials of
+ * every request and a changed resource is always downloaded again. What is
+ * saved is the transfer of unchanged bodies from Zanata.
+ * <p>
+ * Requests that are already conditional (e.g. incremental pull) are left
+ * alone, as are responses without ETag and archives.
+ */
+public class ResponseCacheFilter
+        implements ClientRequestFilter, ClientResponseFilter {
+    private static final Logger log =
+            LoggerFactory.getLogger(ResponseCacheFilter.class);
+    // bigger responses are not worth holding in memory and sending around
+    static final int MAX_ENTRY_BYTES = 8 * 1024 * 1024;
+    private static final String PROP_KEY =
+            ResponseCacheFilter.class.getName() + ".key";
+    private static final String PROP_ETAG =
+            ResponseCacheFilter.class.getName() + ".etag";
+    private static final String PROP_BYPASS =
+            ResponseCacheFilter.class.getName() + ".bypass";
+    private static final InheritableThreadLocal<Store> CURRENT =
+            new InheritableThreadLocal<>();
+
+    /**
+     * Where cached responses live.
+     */
+    public interface Store {
+        /**
+         * @return ETag of the cached response or null
+         */
+        String etagOf(String key);
+
+        /**
+         * Only to be called once the server confirmed the ETag is current.
+         *
+         * @return cached response if it still has the ETag, or null
+         */
+        Entry fetch(String key, String etag);
+
+        /**
+         * Tells the store that the response of key is worth caching. The
+         * store may download it again itself rather than trust the body.
+         */
+        void store(String key, Entry entry);
+    }
+
+    /**
+     * Uses the store for requests made by the current thread and threads it
+     * starts, until {@link #unbind()}.
+     */
+    public static void bind(Store store) {
+        CURRENT.set(store);
+    }
+
+    public static void unbind() {
+        CURRENT.remove();
+    }
+
+    @Override
+    public void filter(ClientRequestContext requestContext)
+            throws IOException {
+        Store store = CURRENT.get();
+        if (store == null || !"GET".equals(requestContext.getMethod()) ||
+                requestContext.getProperty(PROP_BYPASS) != null ||
+                requestContext.getHeaders()
+                        .containsKey(HttpHeaders.IF_NONE_MATCH) ||
+                !isCacheable(requestContext.getUri())) {
+            return;
+        }
+        String key = requestContext.getUri() + "|" + Strings.nullToEmpty(
+                requestContext.getHeaderString(HttpHeaders.ACCEPT));
+        requestContext.setProperty(PROP_KEY, key);
+        String etag = store.etagOf(key);
+        if (etag != null) {
+            requestContext.setProperty(PROP_ETAG, etag);
+            requestContext.getHeaders()
+                    .putSingle(HttpHeaders.IF_NONE_MATCH, etag);
+        }
+    }
+
+    @Override
+    public void filter(ClientRequestContext requestContext,
+            ClientResponseContext responseContext) throws IOException {
+        String key = (String) requestContext.getProperty(PROP_KEY);
+        Store store = CURRENT.get();
+        if (key == null || store == null) {
+            return;
+        }
+        String offered = (String) requestContext.getProperty(PROP_ETAG);
+        if (offered != null && responseContext.getStatus() == 304) {
+            Entry cached = store.fetch(key, offered);
+            if (cached != null) {
+                log.debug("cache hit {}", key);
+                responseContext.setStatus(200);
+                putHeader(responseContext, HttpHeaders.CONTENT_TYPE,
+                        cached.getContentType());
+                putHeader(responseContext, HttpHeaders.CONTENT_ENCODING,
+                        cached.getContentEncoding());
+                responseContext.getHeaders().putSingle(
+                        HttpHeaders.CONTENT_LENGTH,
+                        String.valueOf(cached.getBody().length));
+                responseContext.setEntityStream(
+                        new ByteArrayInputStream(cached.getBody()));
+                return;
+            }
+            // dropped from the cache since the lookup
+            log.debug("cache entry of {} is gone, downloading again", key);
+            refetch(requestContext, responseContext);
+        }
+        String etag = responseContext.getHeaderString(HttpHeaders.ETAG);
+        if (responseContext.getStatus() != 200 || etag == null ||
+                !responseContext.hasEntity() ||
+                responseContext.getLength() > MAX_ENTRY_BYTES ||
+                isArchive(responseContext)) {
+            return;
+        }
+        InputStream in = responseContext.getEntityStream();
+        byte[] body = readAtMost(in, MAX_ENTRY_BYTES + 1);
+        if (body.length > MAX_ENTRY_BYTES) {
+            responseContext.setEntityStream(new SequenceInputStream(
+                    new ByteArrayInputStream(body), in));
+            return;
+        }
+        in.close();
+        responseContext.setEntityStream(new ByteArrayInputStream(body));
+        store.store(key, new Entry(etag, body,
+                responseContext.getHeaderString(HttpHeaders.CONTENT_TYPE),
+                responseContext.getHeaderString(
+                        HttpHeaders.CONTENT_ENCODING)));
+    }
+
+    /**
+     * Repeats the request without If-None-Match and makes its answer the
+     * response. The body is read decoded, so the content encoding header is
+     * dropped.
+     */
+    private static void refetch(ClientRequestContext requestContext,
+            ClientResponseContext responseContext) throws IOException {
+        MultivaluedMap<String, Object> headers =
+                new MultivaluedHashMap<>(requestContext.getHeaders());
+        headers.remove(HttpHeaders.IF_NONE_MATCH);
+        Response response = requestContext.getClient()
+                .target(requestContext.getUri()).request().headers(headers)
+                .property(PROP_BYPASS, Boolean.TRUE).get();
+        try {
+            byte[] body = response.hasEntity() ?
+                    response.readEntity(byte[].class) : new byte[0];
+            responseContext.setStatus(response.getStatus());
+            responseContext.getHeaders().clear();
+            for (Map.Entry<String, List<String>> header : response
+                    .getStringHeaders().entrySet()) {
+                responseContext.getHeaders()
+                        .put(header.getKey(), header.getValue());
+            }
+            responseContext.getHeaders().remove(HttpHeaders.CONTENT_ENCODING);
+            responseContext.getHeaders().putSingle(HttpHeaders.CONTENT_LENGTH,
+                    String.valueOf(body.length));
+            responseContext.setEntityStream(new ByteArrayInputStream(body));
+        } finally {
+            response.close();
+        }
+    }
+
+    /**
+     * Async process and copy-trans status must be live and the version
+     * endpoint is used to measure latency.
+     */
+    private static boolean isCacheable(URI uri) {
+        String path = Strings.nullToEmpty(uri.getPath());
+        return path.contains("/rest/") && !path.contains("/async/") &&
+                !path.contains("/copytrans/") && !path.endsWith("/rest/version");
+    }
+
+    private static boolean isArchive(ClientResponseContext responseContext) {
+        return responseContext.getMediaType() != null &&
+                responseContext.getMediaType().getSubtype().contains("zip");
+    }
+
+    private static void putHeader(ClientResponseContext responseContext,
+            String name, String value) {
+        if (value != null) {
+            responseContext.getHeaders().putSingle(name, value);
+        }
+    }
+
+    private static byte[] readAtMost(InputStream in, int limit)
+            throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while (out.size() < limit &&
+                (read = in.read(buffer, 0,
+                        Math.min(buffer.length, limit - out.size()))) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * A cached response. Content encoding is kept since the body is stored
+     * as received (e.g. still gzipped).
+     */
+    public static class Entry implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final String etag;
+        private final byte[] body;
+        private final String contentType;
+        private final String contentEncoding;
+
+        public Entry(String etag, byte[] body, String contentType,
+                String contentEncoding) {
+            this.etag = etag;
+            this.body = body;
+            this.contentType = contentType;
+            this.contentEncoding = contentEncoding;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getContentEncoding() {
+            return contentEncoding;
+        }
+    }
+}
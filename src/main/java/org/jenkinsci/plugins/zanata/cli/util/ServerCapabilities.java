@@ -0,0 +1,98 @@
+/*
+ * Copyright 2017, Red Hat, Inc. and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jenkinsci.plugins.zanata.cli.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Optional features some Zanata servers lack, so that faster paths are only
+ * tried where they work.
+ * <p>
+ * Nothing is probed up front. Features are assumed to be there until a
+ * request shows otherwise (e.g. the statistics endpoint answering 405), after
+ * which later syncs skip straight to the fallback. What is learnt is kept per
+ * server for all builds in this JVM and forgotten after {@link #TTL_MILLIS},
+ * so a server upgrade is picked up.
+ */
+public final class ServerCapabilities {
+    private static final Logger log =
+            LoggerFactory.getLogger(ServerCapabilities.class);
+    static final long TTL_MILLIS = TimeUnit.MINUTES.toMillis(30);
+    // server and feature to when it was found missing
+    private static final ConcurrentMap<String, Long> UNSUPPORTED =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Optional server features.
+     */
+    public enum Feature {
+        /** translation statistics */
+        STATISTICS
+    }
+
+    private ServerCapabilities() {
+    }
+
+    /**
+     * @param server
+     *         server URL
+     * @return false only if the server was recently found to lack the
+     * feature
+     */
+    public static boolean supports(String server, Feature feature) {
+        return supports(server, feature, System.currentTimeMillis());
+    }
+
+    static boolean supports(String server, Feature feature, long now) {
+        String key = key(server, feature);
+        Long since = UNSUPPORTED.get(key);
+        if (since == null) {
+            return true;
+        }
+        if (now - since >= TTL_MILLIS) {
+            UNSUPPORTED.remove(key, since);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Records that the server lacks a feature, e.g. after it answered 405.
+     */
+    public static void markUnsupported(String server, Feature feature) {
+        markUnsupported(server, feature, System.currentTimeMillis());
+    }
+
+    static void markUnsupported(String server, Feature feature, long now) {
+        if (UNSUPPORTED.put(key(server, feature), now) == null) {
+            log.info("{} does not support {}", server, feature);
+        }
+    }
+
+    private static String key(String server, Feature feature) {
+        return (server.endsWith("/") ? server : server + "/") + "|" + feature;
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright 2017, Red Hat, Inc. and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jenkinsci.plugins.zanata.cli.util;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Objects;
+import java.util.TreeMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import com.google.common.base.Splitter;
+
+/**
+ * Progress journal of a sync run kept in the workspace. Every completed unit
+ * of work (a pushed project version, a pulled locale) is recorded straight
+ * away so that if the build dies (e.g. agent disconnected) the next build can
+ * skip what was already done.
+ * <p>
+ * A pulled locale only exists in the workspace until it is committed, and
+ * the next build may start from a clean checkout. So a pull unit records the
+ * files it pulled with their hashes, and it is only skipped if all of them
+ * are still there unchanged.
+ * <p>
+ * The journal is only trusted if it was written for the same inputs
+ * (zanata.xml content and job settings) and from the same git revision. The
+ * revision is the HEAD the sync started from. The commit made by the sync is
+ * recorded too, so a build that starts from that commit still resumes.
+ * Otherwise the journal is discarded. It is safe to use from the threads
+ * pushing project versions in parallel.
+ */
+public class SyncJournal {
+    private static final Logger log =
+            LoggerFactory.getLogger(SyncJournal.class);
+    public static final String STORE_NAME = "sync-journal";
+    public static final String PHASE_PUSH = "push";
+    public static final String PHASE_PULL = "pull";
+    private static final String FINGERPRINT_KEY = "fingerprint";
+    private static final String BASE_KEY = "base";
+    private static final String COMMIT_KEY = "commit";
+    private static final Splitter OUTPUT_SPLITTER =
+            Splitter.on('\n').omitEmptyStrings();
+
+    /**
+     * Journal that records nothing and never skips anything.
+     */
+    public static final SyncJournal DISABLED =
+            new SyncJournal(null, null, null, "");
+
+    private final SyncStateStore store;
+    private final Path repoBase;
+    // scoped journals share the store and lock of the journal they came from
+    private final Object lock;
+    private final String scope;
+
+    private SyncJournal(SyncStateStore store, Path repoBase, Object lock,
+            String scope) {
+        this.store = store;
+        this.repoBase = repoBase;
+        this.lock = lock == null ? this : lock;
+        this.scope = scope;
+    }
+
+    /**
+     * @param repoBase
+     *         workspace base
+     * @param fingerprint
+     *         fingerprint of the inputs of this run other than the git
+     *         revision
+     * @param head
+     *         current HEAD, or null if there is no git repo
+     * @return journal of the previous run if it has the same fingerprint and
+     * HEAD is where that run started from or the commit it made, otherwise a
+     * new empty journal
+     */
+    public static SyncJournal open(Path repoBase, String fingerprint,
+            String head) {
+        SyncStateStore store = SyncStateStore.load(repoBase, STORE_NAME);
+        String previous = store.get(FINGERPRINT_KEY);
+        boolean sameRevision = Objects.equals(head, store.get(BASE_KEY)) ||
+                head != null && head.equals(store.get(COMMIT_KEY));
+        if (!Objects.equals(previous, fingerprint) || !sameRevision) {
+            if (previous != null) {
+                log.info("inputs changed since last interrupted sync. Start over");
+            }
+            store.clear();
+            store.put(FINGERPRINT_KEY, fingerprint);
+            if (head != null) {
+                store.put(BASE_KEY, head);
+            }
+            store.save();
+        } else {
+            log.info("resuming previous sync");
+        }
+        return new SyncJournal(store, repoBase, null, "");
+    }
+
+    /**
+     * @param target
+     *         e.g. an additional Zanata server
+     * @return a journal whose units are recorded separately from the units
+     * of this journal
+     */
+    public SyncJournal scoped(String target) {
+        return new SyncJournal(store, repoBase, lock, scope + target + "|");
+    }
+
+    public boolean isEnabled() {
+        return store != null;
+    }
+
+    /**
+     * @return true if the unit was completed by the previous run and the
+     * files it recorded are unchanged
+     */
+    public boolean isDone(String phase, String unit) {
+        synchronized (lock) {
+            if (store == null) {
+                return false;
+            }
+            String outputs = store.get(SyncStateStore.key(phase, scope + unit));
+            if (outputs == null) {
+                return false;
+            }
+            for (String output : OUTPUT_SPLITTER.split(outputs)) {
+                // sha256 hex, a space, then the path
+                Path file = repoBase.resolve(output.substring(65));
+                if (!Objects.equals(hashOrNull(file),
+                        output.substring(0, 64))) {
+                    log.info("{} {}{} was completed in previous run but {} has changed since. Redo",
+                            phase, scope, unit, file);
+                    return false;
+                }
+            }
+            log.info("{} {}{} was completed in previous run. Skip", phase,
+                    scope, unit);
+            return true;
+        }
+    }
+
+    public void markDone(String phase, String unit) {
+        markDone(phase, unit, Collections.emptySet());
+    }
+
+    /**
+     * @param outputs
+     *         files the unit wrote, which have to stay unchanged for the unit
+     *         to count as done
+     */
+    public void markDone(String phase, String unit, Collection<Path> outputs) {
+        synchronized (lock) {
+            if (store == null) {
+                return;
+            }
+            // sorted so the same outputs are always recorded the same way
+            TreeMap<String, String> hashes = new TreeMap<>();
+            for (Path output : outputs) {
+                String hash = hashOrNull(output);
+                if (hash == null) {
+                    log.warn("can not read {}. {} {}{} is not recorded",
+                            output, phase, scope, unit);
+                    return;
+                }
+                hashes.put(repoBase.toAbsolutePath()
+                        .relativize(output.toAbsolutePath()).toString(), hash);
+            }
+            StringBuilder recorded = new StringBuilder();
+            hashes.forEach((path, hash) -> recorded.append(hash).append(' ')
+                    .append(path).append('\n'));
+            store.put(SyncStateStore.key(phase, scope + unit),
+                    recorded.toString());
+            store.save();
+        }
+    }
+
+    /**
+     * Records the commit made by this run, so a run that starts from it can
+     * still resume.
+     */
+    public void markCommitted(String commitId) {
+        synchronized (lock) {
+            if (store != null && commitId != null) {
+                store.put(COMMIT_KEY, commitId);
+                store.save();
+            }
+        }
+    }
+
+    /**
+     * Called when the whole run is successful. Nothing to resume any more.
+     */
+    public void complete() {
+        synchronized (lock) {
+            if (store != null) {
+                store.clear();
+                store.save();
+            }
+        }
+    }
+
+    private static String hashOrNull(Path file) {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            return ChangedFileWriter.sha256Hex(file);
+        } catch (IOException e) {
+            log.debug("failed reading {}", file, e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2017, Red Hat, Inc. and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jenkinsci.plugins.zanata.cli.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.jenkinsci.plugins.zanata.exception.ZanataSyncException;
+
+/**
+ * Small key value store kept in the workspace under the zanata cache folder
+ * (which is never committed). It remembers things between builds such as the
+ * last commit that was pushed to Zanata. Losing it (e.g. a wiped workspace)
+ * only means the next sync is a full sync.
+ */
+public class SyncStateStore {
+    private static final Logger log =
+            LoggerFactory.getLogger(SyncStateStore.class);
+    public static final String CACHE_DIR = ".zanata-cache";
+
+    private final Path file;
+    private final Properties properties = new Properties();
+
+    private SyncStateStore(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * @param repoBase
+     *         workspace base
+     * @param name
+     *         name of the store (file name without extension)
+     * @return store loaded from disk, or an empty store if it doesn't exist or
+     * can not be read
+     */
+    public static SyncStateStore load(Path repoBase, String name) {
+        SyncStateStore store = new SyncStateStore(
+                repoBase.resolve(CACHE_DIR).resolve(name + ".properties"));
+        if (Files.isRegularFile(store.file)) {
+            try (InputStream in = Files.newInputStream(store.file)) {
+                store.properties.load(in);
+            } catch (IOException | IllegalArgumentException e) {
+                log.warn("ignoring unreadable sync state {}", store.file, e);
+                store.properties.clear();
+            }
+        }
+        return store;
+    }
+
+    public String get(String key) {
+        return properties.getProperty(key);
+    }
+
+    public void put(String key, String value) {
+        properties.setProperty(key, value);
+    }
+
+    public void remove(String key) {
+        properties.remove(key);
+    }
+
+    public void clear() {
+        properties.clear();
+    }
+
+    public void save() {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            properties.store(out, null);
+            ChangedFileWriter.write(
+                    new ByteArrayInputStream(out.toByteArray()), file);
+        } catch (IOException e) {
+            throw new ZanataSyncException("failed saving sync state " + file,
+                    e);
+        }
+    }
+
+    /**
+     * Joins parts into a key. Parts are not expected to contain '|'.
+     */
+    public static String key(String... parts) {
+        return String.join("|", parts);
+    }
+}
@@ -0,0 +1,312 @@
+/*
+ * Copyright 2017, Red Hat, Inc. and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jenkinsci.plugins.zanata.cli.util;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientRequestContext;
+import javax.ws.rs.client.ClientRequestFilter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.zanata.client.commands.PushPullOptions;
+import org.zanata.client.config.LocaleList;
+import org.zanata.rest.client.RestClientFactory;
+import com.google.common.hash.Hashing;
+
+/**
+ * Keeps what a sync builds up on an agent warm for the next sync on the same
+ * agent: REST clients (with their connection pools and TLS sessions) and
+ * locale lists fetched from the server. Classes loaded over remoting already
+ * stay loaded for as long as the agent is connected, so this is what is left
+ * to reuse.
+ * <p>
+ * A REST client is leased by one sync at a time and shared by the threads of
+ * that sync. It goes back to the pool when the sync finishes, unless the sync
+ * was aborted (its clients are closed then, see {@link CancellableSync}).
+ * Memory is bounded by the number of pooled clients and cached locale lists.
+ * After being idle for the configured time everything is dropped. A client
+ * that is dropped, or not pooled at all, is closed so its connections are
+ * released.
+ */
+public final class SyncWorker {
+    private static final Logger log = LoggerFactory.getLogger(SyncWorker.class);
+    private static final int MAX_SERVERS = 8;
+    private static final int MAX_IDLE_CLIENTS_PER_SERVER = 2;
+    private static final int MAX_LOCALE_LISTS = 200;
+    // locales rarely change but a new one should show up reasonably soon
+    private static final long LOCALES_TTL_MILLIS = TimeUnit.MINUTES.toMillis(2);
+
+    private static final SyncWorker INSTANCE = new SyncWorker();
+
+    private final LinkedHashMap<String, Deque<Pooled>> idleClients =
+            new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, CachedLocales> locales =
+            new LinkedHashMap<>(16, 0.75f, true);
+    private long idleMillis;
+    private long lastUsed;
+    private int activeSyncs;
+    private ScheduledExecutorService reaper;
+
+    private SyncWorker() {
+    }
+
+    public static SyncWorker get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Called at the start of each sync on the agent.
+     *
+     * @param idleMinutes
+     *         how long to keep things after the last sync. 0 turns the worker
+     *         off.
+     */
+    public synchronized void configure(int idleMinutes) {
+        idleMillis = TimeUnit.MINUTES.toMillis(Math.max(0, idleMinutes));
+        if (idleMillis == 0) {
+            shutdown();
+        } else if (reaper == null) {
+            reaper = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "zanata-sync-worker-reaper");
+                thread.setDaemon(true);
+                return thread;
+            });
+            reaper.scheduleWithFixedDelay(this::shutdownIfIdle, 1, 1,
+                    TimeUnit.MINUTES);
+            log.info("sync worker started. Idle timeout {} minutes",
+                    idleMinutes);
+        }
+        lastUsed = System.currentTimeMillis();
+    }
+
+    private synchronized boolean isEnabled() {
+        return idleMillis > 0;
+    }
+
+    /**
+     * @param options
+     *         options the client is for
+     * @param create
+     *         makes a new client if none is pooled. The given handle must be
+     *         registered on the client so that it can be closed.
+     * @return a client for the server and user of the options
+     */
+    public RestClientFactory restClientFactory(PushPullOptions options,
+            Function<ClientHandle, RestClientFactory> create) {
+        if (!isEnabled() || !CancellableSync.inSync()) {
+            ClientHandle handle = new ClientHandle();
+            RestClientFactory factory = create.apply(handle);
+            CancellableSync.whenDone(cancelled -> handle.close());
+            return factory;
+        }
+        String key = clientKey(options);
+        return CancellableSync.scoped("rest-client|" + key, () -> {
+            Pooled pooled = lease(key);
+            if (pooled == null) {
+                ClientHandle handle = new ClientHandle();
+                pooled = new Pooled(create.apply(handle), handle);
+            } else {
+                log.debug("reusing REST client for {}", options.getUrl());
+            }
+            Pooled leased = pooled;
+            CancellableSync.whenDone(cancelled -> giveBack(key, leased,
+                    cancelled));
+            return pooled.factory;
+        });
+    }
+
+    /**
+     * @param options
+     *         options after zanata.xml is applied
+     * @param fetch
+     *         fetches the locales from the server
+     * @return locales of the project version
+     */
+    public LocaleList locales(PushPullOptions options,
+            Supplier<LocaleList> fetch) {
+        if (!isEnabled()) {
+            return fetch.get();
+        }
+        String key = options.getUrl() + "|" + options.getProj() + "|" +
+                options.getProjectVersion();
+        synchronized (this) {
+            CachedLocales cached = locales.get(key);
+            if (cached != null && System.currentTimeMillis() -
+                    cached.fetchedAt < LOCALES_TTL_MILLIS) {
+                return copyOf(cached.locales);
+            }
+        }
+        LocaleList fetched = fetch.get();
+        synchronized (this) {
+            locales.put(key, new CachedLocales(copyOf(fetched)));
+            trim(locales, MAX_LOCALE_LISTS, evicted -> { });
+        }
+        return fetched;
+    }
+
+    /**
+     * @return REST clients currently leased to running syncs
+     */
+    public synchronized int getLeasedClients() {
+        return activeSyncs;
+    }
+
+    /**
+     * @return REST clients kept for the next sync
+     */
+    public synchronized int getIdleClients() {
+        return idleClients.values().stream().mapToInt(Deque::size).sum();
+    }
+
+    private synchronized Pooled lease(String key) {
+        activeSyncs++;
+        lastUsed = System.currentTimeMillis();
+        Deque<Pooled> pooled = idleClients.get(key);
+        return pooled == null ? null : pooled.pollFirst();
+    }
+
+    private synchronized void giveBack(String key, Pooled client,
+            boolean cancelled) {
+        activeSyncs--;
+        lastUsed = System.currentTimeMillis();
+        Deque<Pooled> pooled = cancelled || !isEnabled() ? null :
+                idleClients.computeIfAbsent(key, k -> new ArrayDeque<>());
+        if (pooled == null || pooled.size() >= MAX_IDLE_CLIENTS_PER_SERVER) {
+            client.handle.close();
+            return;
+        }
+        pooled.addFirst(client);
+        trim(idleClients, MAX_SERVERS, SyncWorker::closeAll);
+    }
+
+    private synchronized void shutdownIfIdle() {
+        if (activeSyncs == 0 &&
+                System.currentTimeMillis() - lastUsed > idleMillis) {
+            log.info("sync worker idle for {} minutes. Shutting down",
+                    TimeUnit.MILLISECONDS.toMinutes(idleMillis));
+            shutdown();
+        }
+    }
+
+    private synchronized void shutdown() {
+        idleClients.values().forEach(SyncWorker::closeAll);
+        idleClients.clear();
+        locales.clear();
+        if (reaper != null) {
+            reaper.shutdownNow();
+            reaper = null;
+        }
+    }
+
+    private static String clientKey(PushPullOptions options) {
+        // the API key itself is not kept around in the key
+        String secret = Hashing.sha256()
+                .hashBytes(String.valueOf(options.getKey()).getBytes(
+                        StandardCharsets.UTF_8)).toString();
+        return options.getUrl() + "|" + options.getUsername() + "|" + secret +
+                "|" + options.isDisableSSLCert() + "|" + options.getLogHttp();
+    }
+
+    private static LocaleList copyOf(LocaleList list) {
+        LocaleList copy = new LocaleList();
+        copy.addAll(list);
+        return copy;
+    }
+
+    private static <V> void trim(LinkedHashMap<String, V> map, int max,
+            Consumer<V> evicted) {
+        Iterator<Map.Entry<String, V>> eldest = map.entrySet().iterator();
+        while (map.size() > max && eldest.hasNext()) {
+            evicted.accept(eldest.next().getValue());
+            eldest.remove();
+        }
+    }
+
+    private static void closeAll(Deque<Pooled> clients) {
+        clients.forEach(client -> client.handle.close());
+    }
+
+    private static final class Pooled {
+        private final RestClientFactory factory;
+        private final ClientHandle handle;
+
+        private Pooled(RestClientFactory factory, ClientHandle handle) {
+            this.factory = factory;
+            this.handle = handle;
+        }
+    }
+
+    /**
+     * Registered on the JAX-RS client of a {@link RestClientFactory}, which
+     * does not expose it, to get hold of the client so it can be closed.
+     */
+    public static final class ClientHandle implements ClientRequestFilter {
+        private volatile Client client;
+
+        ClientHandle() {
+        }
+
+        @Override
+        public void filter(ClientRequestContext requestContext)
+                throws IOException {
+            if (client == null) {
+                client = requestContext.getClient();
+            }
+        }
+
+        /**
+         * Closes the client. A client that never sent a request has no
+         * connections to release.
+         */
+        void close() {
+            Client toClose = client;
+            if (toClose != null) {
+                try {
+                    toClose.close();
+                } catch (RuntimeException e) {
+                    log.debug("error closing REST client", e);
+                }
+            }
+        }
+    }
+
+    private static final class CachedLocales {
+        private final LocaleList locales;
+        private final long fetchedAt = System.currentTimeMillis();
+
+        private CachedLocales(LocaleList locales) {
+            this.locales = locales;
+        }
+    }
+}
@@ -0,0 +1,359 @@
+/*
+ * Copyright 2017, Red Hat, Inc. and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jenkinsci.plugins.zanata.cli.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+import javax.annotation.Priority;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.client.ClientRequestContext;
+import javax.ws.rs.client.ClientRequestFilter;
+import javax.ws.rs.client.ClientResponseContext;
+import javax.ws.rs.client.ClientResponseFilter;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.ReaderInterceptor;
+import javax.ws.rs.ext.ReaderInterceptorContext;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+
+import com.google.common.io.CountingInputStream;
+import com.google.common.io.CountingOutputStream;
+
+/**
+ * Controls gzip compression of REST traffic for a sync and counts bytes
+ * before and after compression.
+ * <p>
+ * Responses are compressed by asking for them with Accept-Encoding. Request
+ * bodies are compressed as they are written: the first
+ * {@code minBytes} are held back and, if the body turns out to be bigger,
+ * the rest is streamed through gzip. Small bodies are sent as they are since
+ * compressing them doesn't pay. Request compression is dropped for a while
+ * for a server that rejects it with 415. Whether the server compresses its
+ * own responses says nothing about what it accepts, so that is not used.
+ */
+public class TransferCompression {
+    public static final String MODE_OFF = "off";
+    public static final String MODE_RESPONSES = "responses";
+    public static final String MODE_BOTH = "both";
+    private static final String URI_PROPERTY =
+            TransferCompression.class.getName() + ".uri";
+    private static final InheritableThreadLocal<TransferCompression> CURRENT =
+            new InheritableThreadLocal<>();
+    // a server upgrade may start accepting compressed bodies
+    private static final long REJECTED_TTL_MILLIS =
+            TimeUnit.MINUTES.toMillis(30);
+    // server to when it last rejected a compressed request body
+    private static final ConcurrentMap<String, Long> REJECTED_AT =
+            new ConcurrentHashMap<>();
+
+    private final String mode;
+    private final int minBytes;
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong sentOnWire = new AtomicLong();
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong receivedOnWire = new AtomicLong();
+
+    /**
+     * @param mode
+     *         {@link #MODE_OFF}, {@link #MODE_RESPONSES} or
+     *         {@link #MODE_BOTH}. Null means responses.
+     * @param minBytes
+     *         request bodies smaller than this are not compressed
+     */
+    public TransferCompression(String mode, int minBytes) {
+        this.mode = mode == null ? MODE_RESPONSES : mode;
+        this.minBytes = Math.max(0, minBytes);
+    }
+
+    /**
+     * Applies to requests made by the current thread and threads it starts,
+     * until {@link #unbind()}.
+     */
+    public static void bind(TransferCompression compression) {
+        CURRENT.set(compression);
+    }
+
+    public static void unbind() {
+        CURRENT.remove();
+    }
+
+    public long getSent() {
+        return sent.get();
+    }
+
+    public long getSentOnWire() {
+        return sentOnWire.get();
+    }
+
+    public long getReceived() {
+        return received.get();
+    }
+
+    public long getReceivedOnWire() {
+        return receivedOnWire.get();
+    }
+
+    private boolean compressResponses() {
+        return !MODE_OFF.equals(mode);
+    }
+
+    private boolean compressRequests(URI uri) {
+        if (!MODE_BOTH.equals(mode)) {
+            return false;
+        }
+        Long rejectedAt = REJECTED_AT.get(serverOf(uri));
+        return rejectedAt == null ||
+                System.currentTimeMillis() - rejectedAt > REJECTED_TTL_MILLIS;
+    }
+
+    private static String serverOf(URI uri) {
+        String url = uri.toString();
+        int rest = url.indexOf("/rest/");
+        return rest < 0 ? url : url.substring(0, rest + 1);
+    }
+
+    /**
+     * Asks for compressed responses and counts response bytes as received.
+     * Without a bound sync, responses are requested compressed as before.
+     */
+    @Priority(Priorities.ENTITY_CODER + 100)
+    public static class Filter implements ClientRequestFilter,
+            ClientResponseFilter, ReaderInterceptor {
+        @Override
+        public void filter(ClientRequestContext requestContext)
+                throws IOException {
+            TransferCompression current = CURRENT.get();
+            if (current == null || current.compressResponses()) {
+                requestContext.getHeaders()
+                        .putSingle(HttpHeaders.ACCEPT_ENCODING, "gzip");
+            }
+        }
+
+        @Override
+        public void filter(ClientRequestContext requestContext,
+                ClientResponseContext responseContext) throws IOException {
+            TransferCompression current = CURRENT.get();
+            if (current == null) {
+                return;
+            }
+            if (responseContext.getStatus() == 415 && "gzip".equals(
+                    requestContext.getHeaderString(
+                            HttpHeaders.CONTENT_ENCODING))) {
+                REJECTED_AT.put(serverOf(requestContext.getUri()),
+                        System.currentTimeMillis());
+            }
+            if (responseContext.hasEntity()) {
+                responseContext.setEntityStream(new WireCountingInputStream(
+                        responseContext.getEntityStream(),
+                        current.receivedOnWire));
+            }
+        }
+
+        /**
+         * Runs after gzip decoding, so it sees the uncompressed body.
+         */
+        @Override
+        public Object aroundReadFrom(ReaderInterceptorContext context)
+                throws IOException, WebApplicationException {
+            TransferCompression current = CURRENT.get();
+            if (current == null) {
+                return context.proceed();
+            }
+            CountingInputStream counting =
+                    new CountingInputStream(context.getInputStream());
+            context.setInputStream(counting);
+            try {
+                return context.proceed();
+            } finally {
+                current.received.addAndGet(counting.getCount());
+            }
+        }
+    }
+
+    /**
+     * Compresses request bodies bigger than the threshold while they are
+     * written. Runs before RESTEasy's own gzip encoder so the two never stack.
+     */
+    @Priority(Priorities.ENTITY_CODER - 100)
+    public static class Encoder implements WriterInterceptor {
+        @Override
+        public void aroundWriteTo(WriterInterceptorContext context)
+                throws IOException, WebApplicationException {
+            TransferCompression current = CURRENT.get();
+            if (current == null ||
+                    context.getHeaders()
+                            .containsKey(HttpHeaders.CONTENT_ENCODING)) {
+                context.proceed();
+                return;
+            }
+            CountingOutputStream wire =
+                    new CountingOutputStream(context.getOutputStream());
+            boolean compress = current.compressRequests(
+                    (URI) context.getProperty(URI_PROPERTY));
+            ThresholdGzipOutputStream body = new ThresholdGzipOutputStream(
+                    wire, compress ? current.minBytes : -1,
+                    context.getHeaders());
+            context.setOutputStream(body);
+            try {
+                context.proceed();
+                body.finish();
+            } finally {
+                current.sent.addAndGet(body.getCount());
+                current.sentOnWire.addAndGet(wire.getCount());
+            }
+        }
+    }
+
+    /**
+     * Passes the request URI on to {@link Encoder}, which doesn't otherwise
+     * see it.
+     */
+    @Priority(Priorities.HEADER_DECORATOR)
+    public static class UriRecorder implements ClientRequestFilter {
+        @Override
+        public void filter(ClientRequestContext requestContext)
+                throws IOException {
+            requestContext.setProperty(URI_PROPERTY, requestContext.getUri());
+        }
+    }
+
+    /**
+     * Counts bytes as they arrive, before any decoding.
+     */
+    private static final class WireCountingInputStream
+            extends FilterInputStream {
+        private final AtomicLong counter;
+
+        private WireCountingInputStream(InputStream in, AtomicLong counter) {
+            super(in);
+            this.counter = counter;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                counter.incrementAndGet();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                counter.addAndGet(read);
+            }
+            return read;
+        }
+    }
+
+    /**
+     * Holds back up to a threshold, then either writes the held bytes as is
+     * (small body) or switches to gzip for everything.
+     */
+    static final class ThresholdGzipOutputStream
+            extends FilterOutputStream {
+        private final int threshold;
+        private final MultivaluedMap<String, Object> headers;
+        private final ByteArrayOutputStream held = new ByteArrayOutputStream();
+        private OutputStream target;
+        private long count;
+
+        /**
+         * @param threshold
+         *         body size from which to compress, or negative to never
+         *         compress
+         */
+        ThresholdGzipOutputStream(OutputStream out, int threshold,
+                MultivaluedMap<String, Object> headers) {
+            super(out);
+            this.threshold = threshold;
+            this.headers = headers;
+            this.target = threshold < 0 ? out : null;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            count += len;
+            if (target != null) {
+                target.write(b, off, len);
+                return;
+            }
+            held.write(b, off, len);
+            if (held.size() >= threshold) {
+                headers.putSingle(HttpHeaders.CONTENT_ENCODING, "gzip");
+                headers.remove(HttpHeaders.CONTENT_LENGTH);
+                target = new GZIPOutputStream(out, 8192);
+                held.writeTo(target);
+                held.reset();
+            }
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        /**
+         * Completes the body. The underlying stream is left open for the
+         * caller.
+         */
+        void finish() throws IOException {
+            if (target == null) {
+                held.writeTo(out);
+                target = out;
+            } else if (target instanceof GZIPOutputStream) {
+                ((GZIPOutputStream) target).finish();
+            }
+            out.flush();
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (target != null) {
+                target.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            finish();
+            super.close();
+        }
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2017, Red Hat, Inc. and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jenkinsci.plugins.zanata.cli.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+import org.jenkinsci.plugins.zanata.exception.ZanataSyncException;
+
+/**
+ * Computes a digest of a translation file that ignores volatile content, so
+ * that a pulled file which only differs in e.g. PO-Revision-Date is treated
+ * as unchanged and never ends up in a commit.
+ * <ul>
+ * <li>PO/POT: PO-Revision-Date, POT-Creation-Date and X-Generator header
+ * fields and the comments of the header entry are ignored.</li>
+ * <li>properties: the timestamp comment written by
+ * {@link java.util.Properties#store} is ignored and entries are compared
+ * regardless of order.</li>
+ * <li>XLIFF (.xlf and .xliff): date attributes are ignored. Other XML
+ * files are not normalized.</li>
+ * </ul>
+ */
+public final class TranslationFileNormalizer {
+    private static final Pattern PO_VOLATILE_HEADER = Pattern.compile(
+            "^\"(PO-Revision-Date|POT-Creation-Date|X-Generator):.*\"$");
+    private static final Pattern PROPERTIES_TIMESTAMP = Pattern.compile(
+            "^#\\w{3} \\w{3} \\d{2} \\d{2}:\\d{2}:\\d{2} .* \\d{4}$");
+    private static final Pattern XLIFF_DATE =
+            Pattern.compile("\\s(date|tool-version)=\"[^\"]*\"");
+
+    private TranslationFileNormalizer() {
+    }
+
+    /**
+     * @param file
+     *         translation file
+     * @return true if we know how to normalize this file
+     */
+    public static boolean isSupported(Path file) {
+        return typeOf(file).isPresent();
+    }
+
+    /**
+     * @param file
+     *         a supported translation file
+     * @return digest of the normalized content
+     * @throws IOException
+     *         if file can't be read
+     */
+    public static byte[] normalizedDigest(Path file) throws IOException {
+        return normalizedDigest(file, file);
+    }
+
+    /**
+     * @param file
+     *         file to digest
+     * @param typeHint
+     *         file whose name decides the file type (e.g. the target of a
+     *         temp file)
+     * @return digest of the normalized content
+     * @throws IOException
+     *         if file can't be read
+     */
+    public static byte[] normalizedDigest(Path file, Path typeHint)
+            throws IOException {
+        FileType type = typeOf(typeHint).orElseThrow(
+                () -> new IllegalArgumentException(typeHint + " is not supported"));
+        MessageDigest digest = newDigest();
+        // ISO-8859-1 maps every byte to a char so it never fails on any file
+        try (BufferedReader reader = Files
+                .newBufferedReader(file, StandardCharsets.ISO_8859_1)) {
+            switch (type) {
+                case PO:
+                    digestPo(reader, digest);
+                    break;
+                case PROPERTIES:
+                    digestProperties(reader, digest);
+                    break;
+                case XLIFF:
+                    digestXliff(reader, digest);
+                    break;
+            }
+        }
+        return digest.digest();
+    }
+
+    private static void digestPo(BufferedReader reader, MessageDigest digest)
+            throws IOException {
+        // lines before the first msgid, which belong to the header entry if
+        // it is the first entry, and to the first real entry otherwise
+        List<String> leading = new ArrayList<>();
+        boolean beforeFirstEntry = true;
+        boolean inHeader = false;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (beforeFirstEntry) {
+                if (line.equals("msgid \"\"")) {
+                    // header comments are ignored but its flags (e.g. fuzzy)
+                    // are not
+                    leading.stream().filter(l -> l.startsWith("#,"))
+                            .forEach(l -> update(digest, l));
+                    beforeFirstEntry = false;
+                    inHeader = true;
+                } else if (line.startsWith("msgid") ||
+                        line.startsWith("msgctxt")) {
+                    leading.forEach(l -> update(digest, l));
+                    beforeFirstEntry = false;
+                } else {
+                    leading.add(line);
+                    continue;
+                }
+            } else if (inHeader && line.trim().isEmpty()) {
+                inHeader = false;
+            }
+            if (inHeader && PO_VOLATILE_HEADER.matcher(line).matches()) {
+                continue;
+            }
+            update(digest, line);
+        }
+        if (beforeFirstEntry) {
+            leading.forEach(l -> update(digest, l));
+        }
+    }
+
+    private static void digestProperties(BufferedReader reader,
+            MessageDigest digest) throws IOException {
+        List<String> entries = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (current.length() == 0 &&
+                    PROPERTIES_TIMESTAMP.matcher(line).matches()) {
+                continue;
+            }
+            current.append(line).append('\n');
+            if (!endsWithContinuation(line)) {
+                entries.add(current.toString());
+                current.setLength(0);
+            }
+        }
+        if (current.length() > 0) {
+            entries.add(current.toString());
+        }
+        Collections.sort(entries);
+        for (String entry : entries) {
+            update(digest, entry);
+        }
+    }
+
+    private static boolean endsWithContinuation(String line) {
+        int backslashes = 0;
+        for (int i = line.length() - 1; i >= 0 && line.charAt(i) == '\\'; i--) {
+            backslashes++;
+        }
+        return backslashes % 2 == 1;
+    }
+
+    private static void digestXliff(BufferedReader reader,
+            MessageDigest digest) throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            update(digest, XLIFF_DATE.matcher(line).replaceAll(""));
+        }
+    }
+
+    private static void update(MessageDigest digest, String line) {
+        digest.update(line.getBytes(StandardCharsets.ISO_8859_1));
+        digest.update((byte) '\n');
+    }
+
+    private static Optional<FileType> typeOf(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ENGLISH);
+        if (name.endsWith(".po") || name.endsWith(".pot")) {
+            return Optional.of(FileType.PO);
+        }
+        if (name.endsWith(".properties")) {
+            return Optional.of(FileType.PROPERTIES);
+        }
+        if (name.endsWith(".xlf") || name.endsWith(".xliff")) {
+            return Optional.of(FileType.XLIFF);
+        }
+        return Optional.empty();
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new ZanataSyncException("SHA-256 not available", e);
+        }
+    }
+
+    private enum FileType {
+        PO, PROPERTIES, XLIFF
+    }
+}
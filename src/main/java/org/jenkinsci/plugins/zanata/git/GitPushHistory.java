@@ -0,0 +1,113 @@
+/*
+ * Copyright 2017, Red Hat, Inc. and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jenkinsci.plugins.zanata.git;
+
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.Set;
+
+import org.jenkinsci.plugins.zanata.cli.service.PushHistory;
+import org.jenkinsci.plugins.zanata.cli.util.SyncStateStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import com.google.common.base.Strings;
+
+/**
+ * {@link PushHistory} backed by git. The last pushed commit of each branch and
+ * project version is kept in a {@link SyncStateStore} in the workspace.
+ * History for additional Zanata servers is kept separately in the same store
+ * (see {@link #forServer(String)}).
+ */
+public class GitPushHistory implements PushHistory {
+    private static final Logger log =
+            LoggerFactory.getLogger(GitPushHistory.class);
+    static final String STORE_NAME = "push-history";
+
+    private final GitSyncService gitSyncService;
+    private final Path workingDir;
+    private final String branch;
+    private final SyncStateStore store;
+    private final Optional<String> headCommit;
+    private final String server;
+
+    public GitPushHistory(GitSyncService gitSyncService, Path workingDir,
+            String branch) {
+        this.gitSyncService = gitSyncService;
+        this.workingDir = workingDir;
+        this.branch = Strings.isNullOrEmpty(branch) ? "HEAD" : branch;
+        this.store = SyncStateStore.load(workingDir, STORE_NAME);
+        this.headCommit = gitSyncService.headCommit(workingDir);
+        this.server = null;
+    }
+
+    private GitPushHistory(GitPushHistory main, String server) {
+        this.gitSyncService = main.gitSyncService;
+        this.workingDir = main.workingDir;
+        this.branch = main.branch;
+        this.store = main.store;
+        this.headCommit = main.headCommit;
+        this.server = server;
+    }
+
+    /**
+     * @param server
+     *         URL of an additional Zanata server
+     * @return history of pushes to that server. It is saved together with
+     * this history.
+     */
+    public GitPushHistory forServer(String server) {
+        return new GitPushHistory(this, server);
+    }
+
+    private String key(String project, String version) {
+        return server == null ? SyncStateStore.key(branch, project, version) :
+                SyncStateStore.key(server, branch, project, version);
+    }
+
+    @Override
+    public Optional<Set<String>> changedPaths(String project, String version) {
+        String lastCommit = store.get(key(project, version));
+        if (lastCommit == null || !headCommit.isPresent()) {
+            log.info("no push history for {}:{} on {}. Full push",
+                    project, version, branch);
+            return Optional.empty();
+        }
+        Optional<Set<String>> changed =
+                gitSyncService.changedPathsSince(workingDir, lastCommit);
+        if (changed.isPresent()) {
+            log.info("{} files changed since {} was pushed for {}:{}",
+                    changed.get().size(), lastCommit, project, version);
+        }
+        return changed;
+    }
+
+    @Override
+    public void pushed(String project, String version) {
+        headCommit.ifPresent(commit -> store.put(key(project, version), commit));
+    }
+
+    /**
+     * Writes the recorded history to disk.
+     */
+    public void save() {
+        store.save();
+    }
+}
@@ -23,14 +23,27 @@ package org.jenkinsci.plugins.zanata.git;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
 import java.util.Set;
+import java.util.TreeSet;
 
 import org.eclipse.jgit.api.Status;
 import org.eclipse.jgit.api.StatusCommand;
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.treewalk.CanonicalTreeParser;
 import org.jenkinsci.plugins.gitclient.Git;
 import org.jenkinsci.plugins.gitclient.GitClient;
 import org.jenkinsci.plugins.gitclient.RepositoryCallback;
+import org.jenkinsci.plugins.zanata.cli.util.ChangedFileWriter;
+import org.jenkinsci.plugins.zanata.cli.util.SyncStateStore;
 import org.jenkinsci.plugins.zanata.exception.RepoSyncException;
 import org.jenkinsci.remoting.RoleChecker;
 import org.slf4j.Logger;
@@ -60,14 +73,14 @@ public class GitSyncService implements RepoSyncService {
     }
 
     @Override
-    public void syncTranslationToRepo(Path workingDir) {
+    public Set<String> syncTranslationToRepo(Path workingDir) {
 
         try {
             GitClient gitClient =
                     git.in(workingDir.toFile()).using("jgit").getClient();
             if (!gitClient.hasGitRepo()) {
                 log.warn("no git repository found. Skip git commit step");
-                return;
+                return Collections.emptySet();
             }
             if (log.isDebugEnabled()) {
                 gitClient.withRepository(
@@ -78,10 +91,11 @@ public class GitSyncService implements RepoSyncService {
 
             }
 
-            gitClient.getWorkTree().act(new FilePath.FileCallable<Void>() {
+            return gitClient.getWorkTree().act(new FilePath.FileCallable<Set<String>>() {
                 @Override
-                public Void invoke(File f, VirtualChannel channel)
+                public Set<String> invoke(File f, VirtualChannel channel)
                         throws IOException, InterruptedException {
+                    Set<String> committed = new TreeSet<>();
                     try (org.eclipse.jgit.api.Git jgit = org.eclipse.jgit.api.Git.open(f)) {
                         StatusCommand statusCommand = jgit.status();
                         Status status = statusCommand.call();
@@ -90,9 +104,11 @@ public class GitSyncService implements RepoSyncService {
                         if (!uncommittedChanges.isEmpty()) {
                             log.info("uncommitted files in git repo: {}",
                                     uncommittedChanges);
-                            // ignore zanata cache folder
+                            // ignore zanata cache folders and leftovers of an aborted sync
                             uncommittedChanges.stream()
-                                    .filter(file -> !file.startsWith(".zanata-cache/"))
+                                    .filter(file -> !isZanataCache(file) &&
+                                            !ChangedFileWriter.isTempPath(file))
+                                    .peek(committed::add)
                                     .forEach(file -> {
                                         try {
                                             gitClient.add(file);
@@ -100,6 +116,10 @@ public class GitSyncService implements RepoSyncService {
                                             throw new RepoSyncException("interrupted", e);
                                         }
                                     });
+                            if (committed.isEmpty()) {
+                                log.info("only zanata cache changed so nothing to commit");
+                                return committed;
+                            }
 
                             log.info("commit changed files");
                             gitClient.setAuthor(commitAuthorName(),
@@ -116,7 +136,7 @@ public class GitSyncService implements RepoSyncService {
                         throw new RepoSyncException("error committing", gitException);
                     }
 
-                    return null;
+                    return committed;
                 }
 
                 @Override
@@ -133,4 +153,96 @@ public class GitSyncService implements RepoSyncService {
 
     }
 
+    private static boolean isZanataCache(String file) {
+        return file.startsWith(SyncStateStore.CACHE_DIR + "/") ||
+                file.contains("/" + SyncStateStore.CACHE_DIR + "/");
+    }
+
+    /**
+     * @param workingDir
+     *         git working tree
+     * @return commit id of HEAD, or empty if there is no git repo or no commit
+     */
+    public Optional<String> headCommit(Path workingDir) {
+        try {
+            GitClient gitClient =
+                    git.in(workingDir.toFile()).using("jgit").getClient();
+            if (!gitClient.hasGitRepo()) {
+                return Optional.empty();
+            }
+            return gitClient.withRepository(
+                    (RepositoryCallback<Optional<String>>) (repo, channel) -> {
+                        ObjectId head = repo.resolve(Constants.HEAD);
+                        return Optional.ofNullable(head).map(ObjectId::name);
+                    });
+        } catch (IOException | InterruptedException e) {
+            throw new RepoSyncException("error resolving HEAD", e);
+        }
+    }
+
+    /**
+     * Same as {@code git diff --name-only <sinceCommit> HEAD}.
+     *
+     * @param workingDir
+     *         git working tree
+     * @param sinceCommit
+     *         commit id to compare with
+     * @return changed paths relative to working tree, or empty if the commit
+     * is not available (e.g. after a force push or in a shallow clone)
+     */
+    public Optional<Set<String>> changedPathsSince(Path workingDir,
+            String sinceCommit) {
+        try {
+            GitClient gitClient =
+                    git.in(workingDir.toFile()).using("jgit").getClient();
+            if (!gitClient.hasGitRepo()) {
+                return Optional.empty();
+            }
+            return gitClient.withRepository(
+                    (RepositoryCallback<Optional<Set<String>>>) (repo, channel) ->
+                            diffNames(repo, sinceCommit));
+        } catch (IOException | InterruptedException e) {
+            throw new RepoSyncException("error comparing with " + sinceCommit,
+                    e);
+        }
+    }
+
+    private static Optional<Set<String>> diffNames(Repository repo,
+            String sinceCommit) throws IOException {
+        try (ObjectReader reader = repo.newObjectReader()) {
+            ObjectId oldTree = repo.resolve(sinceCommit + "^{tree}");
+            ObjectId newTree = repo.resolve(Constants.HEAD + "^{tree}");
+            if (oldTree == null || newTree == null) {
+                log.info("{} is not available. Can not compute delta",
+                        sinceCommit);
+                return Optional.empty();
+            }
+            CanonicalTreeParser oldTreeParser = new CanonicalTreeParser();
+            oldTreeParser.reset(reader, oldTree);
+            CanonicalTreeParser newTreeParser = new CanonicalTreeParser();
+            newTreeParser.reset(reader, newTree);
+            List<DiffEntry> entries = org.eclipse.jgit.api.Git.wrap(repo).diff()
+                    .setOldTree(oldTreeParser)
+                    .setNewTree(newTreeParser)
+                    .setShowNameAndStatusOnly(true)
+                    .call();
+            Set<String> changed = new TreeSet<>();
+            for (DiffEntry entry : entries) {
+                if (!DiffEntry.DEV_NULL.equals(entry.getOldPath())) {
+                    changed.add(entry.getOldPath());
+                }
+                if (!DiffEntry.DEV_NULL.equals(entry.getNewPath())) {
+                    changed.add(entry.getNewPath());
+                }
+            }
+            return Optional.of(changed);
+        } catch (MissingObjectException e) {
+            log.info("{} is missing from the repo. Can not compute delta",
+                    sinceCommit);
+            return Optional.empty();
+        } catch (GitAPIException e) {
+            throw new RepoSyncException("error computing git diff", e);
+        }
+    }
+
 }
@@ -22,12 +22,17 @@ package org.jenkinsci.plugins.zanata.git;
 
 import java.io.Serializable;
 import java.nio.file.Path;
+import java.util.Set;
 
 import org.jenkinsci.plugins.zanata.exception.RepoSyncException;
 
 public interface RepoSyncService extends Serializable {
 
-    void syncTranslationToRepo(Path path)
+    /**
+     * @return paths (relative to the repo) included in the commit, empty if
+     * nothing was committed
+     */
+    Set<String> syncTranslationToRepo(Path path)
             throws RepoSyncException;
 
     default String commitAuthorName() {
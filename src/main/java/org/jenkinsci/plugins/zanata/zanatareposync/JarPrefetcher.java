@@ -0,0 +1,163 @@
+/*
+ * Copyright 2017, Red Hat, Inc. and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jenkinsci.plugins.zanata.zanatareposync;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import javax.ws.rs.client.Client;
+
+import org.jboss.resteasy.client.jaxrs.ResteasyClientBuilder;
+import org.jboss.resteasy.plugins.providers.ByteArrayProvider;
+import org.jboss.resteasy.plugins.providers.jackson.ResteasyJacksonProvider;
+import org.jboss.resteasy.plugins.providers.jaxb.JAXBXmlRootElementProvider;
+import org.jenkinsci.plugins.zanata.cli.service.impl.ZanataSyncServiceImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.zanata.client.commands.push.PushCommand;
+import org.zanata.rest.client.RestClientFactory;
+import org.zanata.rest.dto.VersionInfo;
+import com.google.common.base.Strings;
+
+import hudson.remoting.Channel;
+import hudson.remoting.VirtualChannel;
+import jenkins.security.MasterToSlaveCallable;
+
+/**
+ * Sends the jars a sync needs to an agent in bulk before the sync runs.
+ * <p>
+ * Otherwise the agent loads zanata client, RESTEasy and friends one class at
+ * a time over the channel, one round trip each. Preloaded jars go into the
+ * agent's jar cache (kept by checksum, so they survive reconnects) and classes
+ * are then loaded from there locally. This is done once per agent connection.
+ */
+final class JarPrefetcher {
+    private static final Logger log =
+            LoggerFactory.getLogger(JarPrefetcher.class);
+    private static final String PROPERTY = JarPrefetcher.class.getName();
+
+    // one class from each jar a sync needs
+    private static final Class<?>[] CLASSES_IN_JARS = {
+            ZanataSyncServiceImpl.class,
+            PushCommand.class,
+            RestClientFactory.class,
+            VersionInfo.class,
+            ResteasyClientBuilder.class,
+            ByteArrayProvider.class,
+            ResteasyJacksonProvider.class,
+            JAXBXmlRootElementProvider.class,
+            Client.class,
+            Strings.class
+    };
+
+    private JarPrefetcher() {
+    }
+
+    /**
+     * @param virtualChannel
+     *         channel to the agent the workspace is on
+     * @param logger
+     *         build log
+     */
+    static void prefetch(VirtualChannel virtualChannel, PrintStream logger)
+            throws InterruptedException {
+        prefetch(virtualChannel, (Consumer<String>) logger::println);
+    }
+
+    /**
+     * @param virtualChannel
+     *         channel to the agent
+     * @param report
+     *         where to say how long it took
+     */
+    static void prefetch(VirtualChannel virtualChannel,
+            Consumer<String> report) throws InterruptedException {
+        if (!(virtualChannel instanceof Channel)) {
+            // workspace is on the controller
+            return;
+        }
+        Channel channel = (Channel) virtualChannel;
+        synchronized (channel) {
+            if (channel.getProperty(PROPERTY) != null) {
+                return;
+            }
+            channel.setProperty(PROPERTY, Boolean.TRUE);
+        }
+        long start = System.currentTimeMillis();
+        try {
+            boolean sent = channel.preloadJar(
+                    JarPrefetcher.class.getClassLoader(), CLASSES_IN_JARS);
+            report.accept("Prefetched " + CLASSES_IN_JARS.length +
+                    " jars to the agent in " +
+                    (System.currentTimeMillis() - start) + " ms" +
+                    (sent ? "" : " (already cached there)"));
+        } catch (IOException e) {
+            log.warn("failed prefetching jars. Classes will be loaded on demand",
+                    e);
+        }
+    }
+
+    /**
+     * Prints how much remote class loading the jar cache saved on the agent
+     * so far.
+     */
+    static void report(VirtualChannel virtualChannel, PrintStream logger)
+            throws InterruptedException {
+        if (!(virtualChannel instanceof Channel)) {
+            return;
+        }
+        try {
+            long[] stats = virtualChannel.call(new ClassLoadingStats());
+            long remoteLoads = stats[0];
+            long remoteNanos = stats[1];
+            long cachedLoads = stats[2];
+            if (remoteLoads == 0 || cachedLoads == 0) {
+                return;
+            }
+            // each class loaded from the jar cache would otherwise have
+            // taken as long as an average remote load
+            long savedMillis = TimeUnit.NANOSECONDS.toMillis(
+                    remoteNanos / remoteLoads * cachedLoads);
+            logger.println(cachedLoads +
+                    " classes were loaded from the agent jar cache instead of over the channel, saving about " +
+                    savedMillis + " ms");
+        } catch (IOException e) {
+            log.debug("can not read class loading statistics", e);
+        }
+    }
+
+    private static final class ClassLoadingStats
+            extends MasterToSlaveCallable<long[], RuntimeException> {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public long[] call() {
+            Channel channel = Channel.current();
+            if (channel == null) {
+                return new long[3];
+            }
+            return new long[] { channel.classLoadingCount.get(),
+                    channel.classLoadingTime.get(),
+                    channel.classLoadingPrefetchCacheCount.get() };
+        }
+    }
+}
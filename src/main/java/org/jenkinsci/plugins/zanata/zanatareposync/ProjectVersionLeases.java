@@ -0,0 +1,197 @@
+/*
+ * Copyright 2017, Red Hat, Inc. and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jenkinsci.plugins.zanata.zanatareposync;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.jenkinsci.plugins.zanata.cli.util.ProjectVersionLease;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Controller-wide leases on Zanata project versions (keyed by server, project
+ * and version), and the input of the last successful push of each.
+ * <p>
+ * Agents reach it through a coordinator the controller exports to them for
+ * one build (see {@link #forOwner(String)}). Leases of a build are dropped
+ * when the build ends, whatever happened on the agent. A lease not released
+ * after {@link #MAX_HOLD_MILLIS} is taken over, in case its build hangs.
+ */
+public final class ProjectVersionLeases
+        implements ProjectVersionLease.Coordinator {
+    private static final Logger log =
+            LoggerFactory.getLogger(ProjectVersionLeases.class);
+    static final long MAX_HOLD_MILLIS = TimeUnit.HOURS.toMillis(6);
+    // a push this old may have been undone on the server in the meantime
+    private static final long IDENTICAL_PUSH_WINDOW_MILLIS =
+            TimeUnit.MINUTES.toMillis(30);
+    private static final int MAX_LAST_PUSHES = 1000;
+
+    private static final ProjectVersionLeases INSTANCE =
+            new ProjectVersionLeases();
+
+    private final Map<String, Holder> held = new HashMap<>();
+    private final Map<String, LastPush> lastPushes = new HashMap<>();
+
+    private ProjectVersionLeases() {
+    }
+
+    public static ProjectVersionLeases get() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param owner
+     *         the build the coordinator is for
+     * @return coordinator that takes and releases leases for the owner only,
+     * whatever owner its caller names. Meant to be exported to the agent
+     * running the build.
+     */
+    public ProjectVersionLease.Coordinator forOwner(String owner) {
+        return new OwnerCoordinator(this, owner);
+    }
+
+    @Override
+    public synchronized ProjectVersionLease.Grant tryAcquire(String key,
+            String owner, String inputDigest, long timeoutMillis) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (true) {
+            Holder holder = held.get(key);
+            long now = System.currentTimeMillis();
+            if (holder != null && now - holder.since > MAX_HOLD_MILLIS) {
+                log.warn("{} held by {} for too long. Taking it over", key,
+                        holder.owner);
+                holder = null;
+            }
+            if (holder == null || holder.owner.equals(owner)) {
+                held.put(key, new Holder(owner));
+                LastPush last = lastPushes.get(key);
+                boolean identical = inputDigest != null && last != null &&
+                        last.digest.equals(inputDigest) &&
+                        now - last.at < IDENTICAL_PUSH_WINDOW_MILLIS;
+                return new ProjectVersionLease.Grant(
+                        identical ? last.owner : null);
+            }
+            long remaining = deadline - now;
+            if (remaining <= 0) {
+                return null;
+            }
+            try {
+                wait(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+    }
+
+    @Override
+    public synchronized void release(String key, String owner,
+            String inputDigest, boolean success) {
+        Holder holder = held.get(key);
+        if (holder == null || !holder.owner.equals(owner)) {
+            return;
+        }
+        held.remove(key);
+        if (inputDigest != null) {
+            if (success) {
+                lastPushes.put(key, new LastPush(owner, inputDigest));
+                trimLastPushes();
+            } else {
+                // a failed push may have left the version half done
+                lastPushes.remove(key);
+            }
+        }
+        notifyAll();
+    }
+
+    /**
+     * Drops all leases of a finished build.
+     */
+    public synchronized void releaseAll(String owner) {
+        if (held.values().removeIf(holder -> holder.owner.equals(owner))) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * @return leases currently held
+     */
+    public synchronized int getHeld() {
+        return held.size();
+    }
+
+    private void trimLastPushes() {
+        Iterator<LastPush> pushes = lastPushes.values().iterator();
+        long now = System.currentTimeMillis();
+        while (lastPushes.size() > MAX_LAST_PUSHES && pushes.hasNext()) {
+            if (now - pushes.next().at > IDENTICAL_PUSH_WINDOW_MILLIS) {
+                pushes.remove();
+            }
+        }
+    }
+
+    private static final class Holder {
+        private final String owner;
+        private final long since = System.currentTimeMillis();
+
+        private Holder(String owner) {
+            this.owner = owner;
+        }
+    }
+
+    private static final class LastPush {
+        private final String owner;
+        private final String digest;
+        private final long at = System.currentTimeMillis();
+
+        private LastPush(String owner, String digest) {
+            this.owner = owner;
+            this.digest = digest;
+        }
+    }
+
+    private static final class OwnerCoordinator
+            implements ProjectVersionLease.Coordinator {
+        private final ProjectVersionLeases leases;
+        private final String owner;
+
+        private OwnerCoordinator(ProjectVersionLeases leases, String owner) {
+            this.leases = leases;
+            this.owner = owner;
+        }
+
+        @Override
+        public ProjectVersionLease.Grant tryAcquire(String key,
+                String ignoredOwner, String inputDigest, long timeoutMillis) {
+            return leases.tryAcquire(key, owner, inputDigest, timeoutMillis);
+        }
+
+        @Override
+        public void release(String key, String ignoredOwner,
+                String inputDigest, boolean success) {
+            leases.release(key, owner, inputDigest, success);
+        }
+    }
+}
@@ -0,0 +1,465 @@
+/*
+ * Copyright 2017, Red Hat, Inc. and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jenkinsci.plugins.zanata.zanatareposync;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.jenkinsci.plugins.zanata.cli.SyncJobDetail;
+import org.jenkinsci.plugins.zanata.cli.util.ResponseCacheFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Splitter;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.Hashing;
+
+import hudson.Util;
+import jenkins.model.Jenkins;
+
+/**
+ * Cache of Zanata GET responses shared by jobs, kept on the controller
+ * under {@code $JENKINS_HOME/zanata-response-cache}. Agents use it through
+ * a store the controller exports to them for one sync (see
+ * {@link #storeFor(SyncJobDetail, long)} and {@link ResponseCacheFilter}).
+ * <p>
+ * Entries are kept per scope: a key handed out by the controller for one
+ * Zanata server and credential (see {@link #scopeOf(String, String, String)}).
+ * An agent can only read the entries of the credentials it was given, and it
+ * gets a cached body only after telling which ETag Zanata confirmed. An agent
+ * never supplies a body: when it reports a response worth caching, the
+ * controller downloads it from Zanata itself with the sync's credentials, so
+ * one agent can not make others read content Zanata did not send.
+ * <p>
+ * Bodies are stored by their SHA-256 so the same content cached under several
+ * URLs (e.g. the same document pulled for several release branches) is kept
+ * once. When the total size exceeds the configured cap the least recently
+ * used entries are dropped. The index is only kept in memory, so the cache
+ * starts empty after a restart.
+ */
+public final class SharedResponseCache {
+    private static final Logger log =
+            LoggerFactory.getLogger(SharedResponseCache.class);
+    static final String DIR_NAME = "zanata-response-cache";
+    private static final int MAX_PENDING_FILLS = 100;
+    private static final int TIMEOUT_MILLIS = 60000;
+
+    private final Path dir;
+    // scopes can't be guessed or derived without it
+    private final String secret = UUID.randomUUID().toString();
+    private final LinkedHashMap<String, Item> index =
+            new LinkedHashMap<>(16, 0.75f, true);
+    // body hash -> number of index entries using it
+    private final Map<String, Integer> blobRefs = new HashMap<>();
+    private long totalBytes;
+    private long lookups;
+    private long hits;
+    private long evictions;
+    // scoped keys being downloaded by the controller
+    private final Set<String> pendingFills = ConcurrentHashMap.newKeySet();
+    private final Executor filler = new ThreadPoolExecutor(1, 1, 0,
+            TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(MAX_PENDING_FILLS), r -> {
+                Thread thread = new Thread(r, "zanata-response-cache-fill");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    SharedResponseCache(Path dir) {
+        this.dir = dir;
+        try {
+            Util.deleteRecursive(dir.toFile());
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            log.warn("can not prepare {}", dir, e);
+        }
+    }
+
+    private static class Holder {
+        // created on first use so that agents never touch it
+        private static final SharedResponseCache INSTANCE =
+                new SharedResponseCache(new File(
+                        Jenkins.getActiveInstance().getRootDir(), DIR_NAME)
+                        .toPath());
+    }
+
+    public static SharedResponseCache get() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Called on the controller, the API key never leaves it as part of the
+     * scope.
+     *
+     * @return scope of the cache entries of a Zanata server and credential
+     */
+    public String scopeOf(String server, String username, String apiKey) {
+        return Hashing.sha256().hashBytes((secret + "|" + server + "|" +
+                username + "|" + apiKey).getBytes(StandardCharsets.UTF_8))
+                .toString();
+    }
+
+    /**
+     * Called on the controller. The store is meant to be exported to the
+     * agent running the sync, so that the agent calls back into it rather
+     * than sending callables to the controller.
+     *
+     * @param syncJobDetail
+     *         sync with a {@link SyncJobDetail#getResponseCacheScope()}
+     * @param maxBytes
+     *         disk cap of the cache
+     * @return store that reads and fills the entries of the sync's scope.
+     * Only responses of the sync's server and its read replicas are cached.
+     */
+    public ResponseCacheFilter.Store storeFor(SyncJobDetail syncJobDetail,
+            long maxBytes) {
+        return storeFor(syncJobDetail, maxBytes, filler);
+    }
+
+    ResponseCacheFilter.Store storeFor(SyncJobDetail syncJobDetail,
+            long maxBytes, Executor executor) {
+        ImmutableList.Builder<String> servers = ImmutableList.builder();
+        servers.add(withSlash(syncJobDetail.getZanataUrl()));
+        for (String replica : Splitter.on(',').trimResults().omitEmptyStrings()
+                .split(Strings.nullToEmpty(syncJobDetail.getReadReplicas()))) {
+            servers.add(withSlash(replica));
+        }
+        return new ScopedStore(this, syncJobDetail.getResponseCacheScope(),
+                servers.build(), syncJobDetail.getZanataUsername(),
+                syncJobDetail.getZanataSecret(), maxBytes, executor);
+    }
+
+    private static String withSlash(String url) {
+        return url.endsWith("/") ? url : url + "/";
+    }
+
+    synchronized String etagOf(String scope, String key) {
+        lookups++;
+        Item item = index.get(scope + "|" + key);
+        return item == null ? null : item.etag;
+    }
+
+    synchronized ResponseCacheFilter.Entry fetch(String scope, String key,
+            String etag) {
+        String scopedKey = scope + "|" + key;
+        Item item = index.get(scopedKey);
+        if (item == null || !item.etag.equals(etag)) {
+            return null;
+        }
+        try {
+            byte[] body = Files.readAllBytes(dir.resolve(item.hash));
+            hits++;
+            return new ResponseCacheFilter.Entry(item.etag, body,
+                    item.contentType, item.contentEncoding);
+        } catch (IOException e) {
+            log.warn("cached body of {} is unreadable", key, e);
+            remove(scopedKey);
+            return null;
+        }
+    }
+
+    synchronized void store(String scope, String key,
+            ResponseCacheFilter.Entry entry, long maxBytes) {
+        String scopedKey = scope + "|" + key;
+        // a 200 for a key we have means the cached copy was stale
+        remove(scopedKey);
+        if (entry.getBody().length > maxBytes) {
+            return;
+        }
+        String hash = Hashing.sha256().hashBytes(entry.getBody()).toString();
+        if (!blobRefs.containsKey(hash)) {
+            try {
+                Files.write(dir.resolve(hash), entry.getBody());
+            } catch (IOException e) {
+                log.warn("can not cache {}", key, e);
+                return;
+            }
+            blobRefs.put(hash, 0);
+            totalBytes += entry.getBody().length;
+        }
+        blobRefs.merge(hash, 1, Integer::sum);
+        index.put(scopedKey, new Item(entry, hash));
+        evict(maxBytes);
+    }
+
+    private void evict(long maxBytes) {
+        Iterator<String> eldest = index.keySet().iterator();
+        while (totalBytes > maxBytes && eldest.hasNext()) {
+            String key = eldest.next();
+            Item item = index.get(key);
+            eldest.remove();
+            release(item);
+            evictions++;
+        }
+    }
+
+    private void remove(String key) {
+        Item item = index.remove(key);
+        if (item != null) {
+            release(item);
+        }
+    }
+
+    private void release(Item item) {
+        int refs = blobRefs.merge(item.hash, -1, Integer::sum);
+        if (refs <= 0) {
+            blobRefs.remove(item.hash);
+            totalBytes -= item.size;
+            try {
+                Files.deleteIfExists(dir.resolve(item.hash));
+            } catch (IOException e) {
+                log.warn("can not delete cached body {}", item.hash, e);
+            }
+        }
+    }
+
+    public synchronized Statistics getStatistics() {
+        return new Statistics(lookups, hits, index.size(),
+                totalBytes, evictions);
+    }
+
+    private static final class Item {
+        private final String etag;
+        private final String hash;
+        private final long size;
+        private final String contentType;
+        private final String contentEncoding;
+
+        private Item(ResponseCacheFilter.Entry entry, String hash) {
+            this.etag = entry.getEtag();
+            this.hash = hash;
+            this.size = entry.getBody().length;
+            this.contentType = entry.getContentType();
+            this.contentEncoding = entry.getContentEncoding();
+        }
+    }
+
+    /**
+     * Snapshot of the cache usage.
+     */
+    public static final class Statistics {
+        private final long lookups;
+        private final long hits;
+        private final int entries;
+        private final long bytes;
+        private final long evictions;
+
+        Statistics(long lookups, long hits, int entries, long bytes,
+                long evictions) {
+            this.lookups = lookups;
+            this.hits = hits;
+            this.entries = entries;
+            this.bytes = bytes;
+            this.evictions = evictions;
+        }
+
+        public long getLookups() {
+            return lookups;
+        }
+
+        /**
+         * @return lookups answered from the cache after the server confirmed
+         * the cached copy is current
+         */
+        public long getHits() {
+            return hits;
+        }
+
+        public double getHitRatio() {
+            return lookups == 0 ? 0 : (double) hits / lookups;
+        }
+
+        public int getEntries() {
+            return entries;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getEvictions() {
+            return evictions;
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("lookups", lookups)
+                    .add("hits", hits)
+                    .add("hitRatio", String.format("%.1f%%", getHitRatio() * 100))
+                    .add("entries", entries)
+                    .add("bytes", bytes)
+                    .add("evictions", evictions)
+                    .toString();
+        }
+    }
+
+    /**
+     * Downloads a response from Zanata on the controller and caches it if it
+     * has an ETag.
+     *
+     * @param key
+     *         URL and Accept header joined by '|', see
+     *         {@link ResponseCacheFilter}
+     */
+    void fill(String scope, String key, String username, String apiKey,
+            long maxBytes) {
+        int separator = key.lastIndexOf('|');
+        String url = key.substring(0, separator);
+        String accept = key.substring(separator + 1);
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) new URL(url).openConnection();
+            connection.setConnectTimeout(TIMEOUT_MILLIS);
+            connection.setReadTimeout(TIMEOUT_MILLIS);
+            connection.setRequestProperty("X-Auth-User", username);
+            connection.setRequestProperty("X-Auth-Token", apiKey);
+            if (!accept.isEmpty()) {
+                connection.setRequestProperty("Accept", accept);
+            }
+            int status = connection.getResponseCode();
+            String etag = connection.getHeaderField("ETag");
+            if (status != 200 || etag == null ||
+                    connection.getContentLengthLong() > maxBytes) {
+                return;
+            }
+            byte[] body;
+            try (InputStream in = connection.getInputStream()) {
+                body = readAtMost(in, maxBytes + 1);
+            }
+            if (body.length > maxBytes) {
+                return;
+            }
+            store(scope, key, new ResponseCacheFilter.Entry(etag, body,
+                    connection.getContentType(),
+                    connection.getContentEncoding()), maxBytes);
+        } catch (IOException e) {
+            log.warn("failed to fill shared response cache with {}", url, e);
+        } finally {
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+    }
+
+    private static byte[] readAtMost(InputStream in, long limit)
+            throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while (out.size() < limit && (read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Entries of one sync's scope. Lives on the controller.
+     */
+    private static final class ScopedStore
+            implements ResponseCacheFilter.Store {
+        private final SharedResponseCache cache;
+        private final String scope;
+        private final List<String> servers;
+        private final String username;
+        private final String apiKey;
+        private final long maxBytes;
+        private final Executor executor;
+
+        private ScopedStore(SharedResponseCache cache, String scope,
+                List<String> servers, String username, String apiKey,
+                long maxBytes, Executor executor) {
+            this.cache = cache;
+            this.scope = scope;
+            this.servers = servers;
+            this.username = username;
+            this.apiKey = apiKey;
+            this.maxBytes = maxBytes;
+            this.executor = executor;
+        }
+
+        // the controller sends the API key only to the sync's own servers
+        private boolean isOwnServer(String key) {
+            for (String server : servers) {
+                if (key.startsWith(server)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public String etagOf(String key) {
+            return isOwnServer(key) ? cache.etagOf(scope, key) : null;
+        }
+
+        @Override
+        public ResponseCacheFilter.Entry fetch(String key, String etag) {
+            return isOwnServer(key) ? cache.fetch(scope, key, etag) : null;
+        }
+
+        /**
+         * The body of the entry is not used, it is downloaded again by the
+         * controller.
+         */
+        @Override
+        public void store(String key, ResponseCacheFilter.Entry entry) {
+            String scopedKey = scope + "|" + key;
+            if (!isOwnServer(key) || entry.getBody().length > maxBytes ||
+                    !cache.pendingFills.add(scopedKey)) {
+                return;
+            }
+            try {
+                executor.execute(() -> {
+                    try {
+                        cache.fill(scope, key, username, apiKey, maxBytes);
+                    } finally {
+                        cache.pendingFills.remove(scopedKey);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                log.debug("too many pending fills. Skip {}", key);
+                cache.pendingFills.remove(scopedKey);
+            }
+        }
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2017, Red Hat, Inc. and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jenkinsci.plugins.zanata.zanatareposync;
+
+import java.io.File;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import hudson.Extension;
+import hudson.model.Computer;
+import hudson.model.Job;
+import hudson.model.Label;
+import hudson.model.Node;
+import hudson.model.Queue;
+import hudson.model.queue.CauseOfBlockage;
+import hudson.model.queue.QueueTaskDispatcher;
+import jenkins.model.Jenkins;
+
+/**
+ * Remembers which node last ran a successful sync of each job and
+ * repository, and holds sync builds in the queue for a while so they can run
+ * there again with a warm workspace (clone, sync state and caches).
+ * <p>
+ * Which node a job last synced on is lost on restart. The node of the last
+ * successful build is deliberately not looked up instead: this runs under the
+ * queue lock and could load builds from disk. Which agents ever ran a sync is
+ * kept on disk, see {@link SyncedNodes}.
+ */
+public final class SyncAffinity {
+    private static final SyncAffinity INSTANCE = new SyncAffinity();
+
+    // job full name to the repo it syncs and the node it last synced on
+    private final ConcurrentMap<String, LastSync> byJob =
+            new ConcurrentHashMap<>();
+    // repo URL to the node it was last synced on by any job
+    private final ConcurrentMap<String, String> byRepo =
+            new ConcurrentHashMap<>();
+    private SyncedNodes syncedNodes;
+
+    private SyncAffinity() {
+    }
+
+    public static SyncAffinity get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Records a successful sync.
+     *
+     * @param repoUrl
+     *         URL of the synced repo, or null if not known
+     * @param node
+     *         name of the node, empty for the controller
+     */
+    public void record(Job<?, ?> job, String repoUrl, String node) {
+        byJob.put(job.getFullName(), new LastSync(repoUrl, node));
+        if (repoUrl != null) {
+            byRepo.put(repoUrl, node);
+        }
+        syncedNodes().add(node);
+    }
+
+    /**
+     * @return name of the node the job last synced on. If that node is gone,
+     * the node another job last synced the same repo on. null if not known.
+     */
+    public String preferredNode(Job<?, ?> job) {
+        LastSync last = byJob.get(job.getFullName());
+        if (last == null) {
+            return null;
+        }
+        if (exists(last.node) || last.repoUrl == null) {
+            return last.node;
+        }
+        String repoNode = byRepo.get(last.repoUrl);
+        return repoNode != null ? repoNode : last.node;
+    }
+
+    /**
+     * @param node
+     *         name of the node, empty for the controller
+     * @return whether a sync ever ran on the node, also before Jenkins
+     * restarted
+     */
+    public boolean hasSynced(String node) {
+        return node.isEmpty() || syncedNodes().contains(node);
+    }
+
+    private synchronized SyncedNodes syncedNodes() {
+        if (syncedNodes == null) {
+            syncedNodes = new SyncedNodes(new File(
+                    Jenkins.getActiveInstance().getRootDir(),
+                    SyncedNodes.FILE).toPath());
+        }
+        return syncedNodes;
+    }
+
+    private static boolean exists(String node) {
+        return node.isEmpty() || Jenkins.getActiveInstance().getNode(node) != null;
+    }
+
+    private static final class LastSync {
+        private final String repoUrl;
+        private final String node;
+
+        private LastSync(String repoUrl, String node) {
+            this.repoUrl = repoUrl;
+            this.node = node;
+        }
+    }
+
+    /**
+     * Keeps a sync build off other nodes while its preferred node could take
+     * it, for at most the configured wait.
+     */
+    @Extension
+    public static class Dispatcher extends QueueTaskDispatcher {
+        @Override
+        public CauseOfBlockage canTake(Node node,
+                Queue.BuildableItem item) {
+            ZanataBuilder.DescriptorImpl descriptor = Jenkins.getActiveInstance()
+                    .getDescriptorByType(ZanataBuilder.DescriptorImpl.class);
+            if (descriptor == null || descriptor.getAffinityWaitSeconds() <= 0 ||
+                    !ZanataBuilder.runsSync(item.task)) {
+                return null;
+            }
+            long waited = System.currentTimeMillis() - item.getInQueueSince();
+            if (waited >= TimeUnit.SECONDS
+                    .toMillis(descriptor.getAffinityWaitSeconds())) {
+                return null;
+            }
+            String preferred = INSTANCE.preferredNode((Job<?, ?>) item.task);
+            if (preferred == null || preferred.equals(node.getNodeName())) {
+                return null;
+            }
+            Node preferredNode = preferred.isEmpty() ?
+                    Jenkins.getActiveInstance() :
+                    Jenkins.getActiveInstance().getNode(preferred);
+            if (!canRunOn(preferredNode, item.getAssignedLabel())) {
+                return null;
+            }
+            return new WaitingForWarmNode(preferredNode.getDisplayName());
+        }
+
+        private static boolean canRunOn(Node node, Label label) {
+            if (node == null || node.getNumExecutors() == 0) {
+                return false;
+            }
+            Computer computer = node.toComputer();
+            if (computer == null || computer.isOffline() ||
+                    !computer.isAcceptingTasks()) {
+                return false;
+            }
+            return label == null ? node.getMode() == Node.Mode.NORMAL :
+                    label.contains(node);
+        }
+    }
+
+    private static final class WaitingForWarmNode extends CauseOfBlockage {
+        private final String node;
+
+        private WaitingForWarmNode(String node) {
+            this.node = node;
+        }
+
+        @Override
+        public String getShortDescription() {
+            return "Waiting for " + node +
+                    ", which has the workspace of the last Zanata sync";
+        }
+    }
+}
@@ -0,0 +1,319 @@
+/*
+ * Copyright 2017, Red Hat, Inc. and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jenkinsci.plugins.zanata.zanatareposync;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.eclipse.jgit.transport.RefSpec;
+import org.eclipse.jgit.transport.URIish;
+import org.jenkinsci.plugins.gitclient.Git;
+import org.jenkinsci.plugins.gitclient.GitClient;
+import org.jenkinsci.plugins.zanata.cli.SyncJobDetail;
+import org.jenkinsci.plugins.zanata.cli.SyncResult;
+import org.jenkinsci.plugins.zanata.cli.service.impl.ZanataSyncServiceImpl;
+import org.jenkinsci.plugins.zanata.cli.util.SyncStateStore;
+import org.jenkinsci.plugins.zanata.git.GitSyncService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import com.cloudbees.plugins.credentials.CredentialsProvider;
+import com.cloudbees.plugins.credentials.common.StandardCredentials;
+
+import hudson.AbortException;
+import hudson.EnvVars;
+import hudson.FilePath;
+import hudson.model.Result;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.plugins.git.GitException;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+/**
+ * Syncs many repositories in one build: each is cloned (or fetched) into its
+ * own directory under {@value #FARM_DIR} in the workspace and pushed, pulled
+ * and committed like a single repository job, a few at a time. A commit of
+ * translations is then pushed back to the repository with its credential,
+ * since the next build starts again from the remote branch.
+ * <p>
+ * All repositories share the agent's REST clients (the sync worker is kept
+ * warm for the build), the shared response cache and the parsed zanata.xml
+ * cache. A failed repository is reported and the others carry on. The
+ * build is unstable if some fail and failed if all do.
+ */
+class SyncFarm {
+    private static final Logger log = LoggerFactory.getLogger(SyncFarm.class);
+    static final String FARM_DIR = "zanata-farm";
+    static final String REPORT_FILE = "farm-report.json";
+    // REST clients must outlive one repository for the next one to reuse
+    private static final int MIN_WORKER_IDLE_MINUTES = 5;
+
+    private final ZanataBuilder builder;
+    private final Run<?, ?> build;
+    private final FilePath workspace;
+    private final EnvVars env;
+    private final TaskListener listener;
+    private final String buildName;
+
+    SyncFarm(ZanataBuilder builder, Run<?, ?> build, FilePath workspace,
+            EnvVars env, TaskListener listener, String buildName) {
+        this.builder = builder;
+        this.build = build;
+        this.workspace = workspace;
+        this.env = env;
+        this.listener = listener;
+        this.buildName = buildName;
+    }
+
+    private PrintStream logger() {
+        return listener.getLogger();
+    }
+
+    /**
+     * @return result of all repositories together
+     */
+    SyncResult run() throws IOException, InterruptedException {
+        List<ZanataSyncRepository> repositories = builder.getRepositories();
+        int workers = Math.min(repositories.size(),
+                builder.getFarmConcurrency());
+        logger().println(String.format("Syncing %d repositories, %d at a time",
+                repositories.size(), workers));
+        ExecutorService executor = Executors.newFixedThreadPool(workers, r -> {
+            Thread thread = new Thread(r, "zanata-sync-farm");
+            thread.setDaemon(true);
+            return thread;
+        });
+        LinkedHashMap<ZanataSyncRepository, Future<RepositoryOutcome>> futures =
+                new LinkedHashMap<>();
+        List<RepositoryOutcome> outcomes = new ArrayList<>();
+        try {
+            for (ZanataSyncRepository repository : repositories) {
+                futures.put(repository,
+                        executor.submit(() -> syncRepository(repository)));
+            }
+            for (ZanataSyncRepository repository : repositories) {
+                try {
+                    outcomes.add(futures.get(repository).get());
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof InterruptedException) {
+                        throw (InterruptedException) e.getCause();
+                    }
+                    log.warn("sync of {} failed", repository, e.getCause());
+                    outcomes.add(new RepositoryOutcome(repository, null,
+                            String.valueOf(e.getCause().getMessage()), null));
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return report(outcomes);
+    }
+
+    private RepositoryOutcome syncRepository(ZanataSyncRepository repository)
+            throws IOException, InterruptedException {
+        String name = repository.getName();
+        String owner = buildName + " " + name;
+        FilePath dir = workspace.child(FARM_DIR).child(name);
+        try {
+            GitClient git = checkout(repository, dir);
+            SyncJobDetail syncJobDetail = builder.makeSyncJobDetail(build, env,
+                    builder.getZanataURL(), builder.getZanataCredentialsId(),
+                    repository.getBranch(), MIN_WORKER_IDLE_MINUTES);
+            ZanataSyncServiceImpl service =
+                    new ZanataSyncServiceImpl(syncJobDetail);
+            GitSyncService gitSyncService = new GitSyncService(syncJobDetail,
+                    Git.with(listener, new EnvVars(EnvVars.masterEnvVars)));
+            SyncResult result = new SyncResult();
+            if (builder.isPushToZanata()) {
+                long phase = SyncMetrics.get().begin(owner,
+                        Collections.singletonList(syncJobDetail.getZanataUrl()),
+                        SyncResult.PHASE_PUSH);
+                try {
+                    result = ZanataBuilder.pushToZanata(dir, service,
+                            new LinkedHashMap<>(), gitSyncService,
+                            syncJobDetail, !builder.isPullFromZanata(),
+                            owner, result);
+                } finally {
+                    SyncMetrics.get().end(phase);
+                }
+            }
+            if (builder.isPullFromZanata()) {
+                long phase = SyncMetrics.get().begin(owner,
+                        Collections.singletonList(syncJobDetail.getZanataUrl()),
+                        SyncResult.PHASE_PULL);
+                try {
+                    result = ZanataBuilder.pullFromZanata(dir, service,
+                            gitSyncService, syncJobDetail,
+                            builder.isPushToZanata(), owner, result);
+                } finally {
+                    SyncMetrics.get().end(phase);
+                }
+            }
+            logger().println(name + ": " + result);
+            if (result.getChangedFiles().isEmpty()) {
+                return new RepositoryOutcome(repository, result, null,
+                        "nothing to push");
+            }
+            try {
+                push(git, repository);
+            } catch (GitException e) {
+                log.warn("push of {} failed", repository, e);
+                return new RepositoryOutcome(repository, result,
+                        "git push failed: " + e.getMessage(), "failed");
+            }
+            return new RepositoryOutcome(repository, result, null, "pushed");
+        } finally {
+            ProjectVersionLeases.get().releaseAll(owner);
+        }
+    }
+
+    /**
+     * Clones the repository, or fetches it if an earlier build did, and
+     * resets the branch to the remote one.
+     *
+     * @return client of the repository, with its credential
+     */
+    private GitClient checkout(ZanataSyncRepository repository, FilePath dir)
+            throws IOException, InterruptedException {
+        dir.mkdirs();
+        GitClient git = Git.with(listener, env).in(dir).getClient();
+        if (repository.getCredentialsId() != null) {
+            StandardCredentials credentials = CredentialsProvider
+                    .findCredentialById(repository.getCredentialsId(),
+                            StandardCredentials.class, build);
+            if (credentials == null) {
+                throw new AbortException("Git credential with ID [" +
+                        repository.getCredentialsId() +
+                        "] can not be found.");
+            }
+            CredentialsProvider.track(build, credentials);
+            git.addDefaultCredentials(credentials);
+        }
+        if (git.hasGitRepo()) {
+            try {
+                git.fetch_().from(new URIish(repository.getUrl()),
+                        Collections.singletonList(new RefSpec(
+                                "+refs/heads/*:refs/remotes/origin/*")))
+                        .prune().execute();
+            } catch (URISyntaxException e) {
+                throw new AbortException(
+                        "Invalid repository URL " + repository.getUrl());
+            }
+        } else {
+            git.clone_().url(repository.getUrl()).repositoryName("origin")
+                    .execute();
+        }
+        git.checkout().ref("origin/" + repository.getBranch())
+                .branch(repository.getBranch()).deleteBranchIfExist(true)
+                .execute();
+        return git;
+    }
+
+    /**
+     * Pushes the commit of translations to the branch it was made on.
+     */
+    private void push(GitClient git, ZanataSyncRepository repository)
+            throws InterruptedException {
+        try {
+            git.push().to(new URIish(repository.getUrl()))
+                    .ref(repository.getBranch()).execute();
+        } catch (URISyntaxException e) {
+            throw new GitException(
+                    "Invalid repository URL " + repository.getUrl(), e);
+        }
+    }
+
+    private SyncResult report(List<RepositoryOutcome> outcomes)
+            throws IOException, InterruptedException {
+        SyncResult total = new SyncResult();
+        JSONArray repositoriesJson = new JSONArray();
+        int failed = 0;
+        for (RepositoryOutcome outcome : outcomes) {
+            JSONObject json = new JSONObject();
+            json.put("name", outcome.repository.getName());
+            json.put("url", outcome.repository.getUrl());
+            json.put("branch", outcome.repository.getBranch());
+            json.put("success", outcome.error == null);
+            if (outcome.result != null) {
+                total.merge(outcome.repository.getName(), outcome.result);
+                json.put("result", JSONObject.fromObject(outcome.result.toJson()));
+            }
+            if (outcome.gitPush != null) {
+                json.put("gitPush", outcome.gitPush);
+            }
+            if (outcome.error != null) {
+                failed++;
+                json.put("error", outcome.error);
+            }
+            repositoriesJson.add(json);
+        }
+        JSONObject report = new JSONObject();
+        report.put("succeeded", outcomes.size() - failed);
+        report.put("failed", failed);
+        report.put("repositories", repositoriesJson);
+        workspace.child(SyncStateStore.CACHE_DIR).child(REPORT_FILE)
+                .write(report.toString(2), "UTF-8");
+
+        logger().println(String.format("Synced %d repositories, %d failed",
+                outcomes.size() - failed, failed));
+        for (RepositoryOutcome outcome : outcomes) {
+            logger().println(String.format("  %-40s %s", outcome.repository
+                    .getName(), outcome.error == null ?
+                    String.format(
+                            "ok, pushed %d, pulled %d, committed %d, git push: %s",
+                            outcome.result.getPushedVersions(),
+                            outcome.result.getPulledFiles(),
+                            outcome.result.getChangedFiles().size(),
+                            outcome.gitPush) :
+                    "FAILED: " + outcome.error));
+        }
+        if (failed > 0) {
+            build.setResult(failed == outcomes.size() ? Result.FAILURE :
+                    Result.UNSTABLE);
+        }
+        return total;
+    }
+
+    private static final class RepositoryOutcome {
+        private final ZanataSyncRepository repository;
+        private final SyncResult result;
+        private final String error;
+        // pushed, nothing to push or failed. null if the sync failed first
+        private final String gitPush;
+
+        private RepositoryOutcome(ZanataSyncRepository repository,
+                SyncResult result, String error, String gitPush) {
+            this.repository = repository;
+            this.result = result;
+            this.error = error;
+            this.gitPush = gitPush;
+        }
+    }
+}
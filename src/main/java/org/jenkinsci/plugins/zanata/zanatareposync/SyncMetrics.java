@@ -0,0 +1,342 @@
+/*
+ * Copyright 2017, Red Hat, Inc. and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jenkinsci.plugins.zanata.zanatareposync;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.jenkinsci.plugins.zanata.cli.util.ProjectConfigCache;
+import org.jenkinsci.plugins.zanata.cli.util.SyncWorker;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import hudson.Extension;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.model.Computer;
+import hudson.model.Queue;
+import hudson.model.RootAction;
+import jenkins.model.Jenkins;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+/**
+ * Live view of the Zanata syncs on this controller: running syncs per server
+ * and phase, queued sync jobs, REST client leases, cache hit ratios and
+ * throughput over the last few minutes.
+ * <p>
+ * Syncs only register when a phase starts and ends, and agents report their
+ * REST clients when a phase ends, so keeping the metrics costs next to
+ * nothing. Everything else is gathered when someone reads them,
+ * through JMX ({@value #OBJECT_NAME}) or as JSON from
+ * {@code $JENKINS_URL/zanata-sync-metrics/}.
+ */
+public final class SyncMetrics implements SyncMetricsMBean {
+    private static final Logger log =
+            LoggerFactory.getLogger(SyncMetrics.class);
+    public static final String OBJECT_NAME =
+            "org.jenkinsci.plugins.zanata:type=SyncMetrics";
+    private static final long WINDOW_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private static final SyncMetrics INSTANCE = new SyncMetrics();
+
+    private final AtomicLong ids = new AtomicLong();
+    private final ConcurrentMap<Long, ActivePhase> active =
+            new ConcurrentHashMap<>();
+    // time, documents and bytes of finished syncs within the window
+    private final Deque<long[]> completed = new ArrayDeque<>();
+    private final ConcurrentMap<String, int[]> agentClients =
+            new ConcurrentHashMap<>();
+
+    private SyncMetrics() {
+    }
+
+    public static SyncMetrics get() {
+        return INSTANCE;
+    }
+
+    @Initializer(after = InitMilestone.EXTENSIONS_AUGMENTED)
+    public static void registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer()
+                    .registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            log.warn("can not register Zanata sync metrics in JMX", e);
+        }
+    }
+
+    /**
+     * Registers a running phase. Must be paired with {@link #end(long)}.
+     *
+     * @param job
+     *         full name and number of the build
+     * @param servers
+     *         Zanata servers the phase talks to
+     * @param phase
+     *         push or pull
+     * @return id to end the phase with
+     */
+    public long begin(String job, Collection<String> servers, String phase) {
+        long id = ids.incrementAndGet();
+        active.put(id, new ActivePhase(job, servers, phase));
+        return id;
+    }
+
+    public void end(long id) {
+        active.remove(id);
+    }
+
+    /**
+     * Records a finished sync for throughput.
+     */
+    public void recordTransfer(int documents, long bytes) {
+        long now = System.currentTimeMillis();
+        synchronized (completed) {
+            completed.addLast(new long[] { now, documents, bytes });
+            prune(now);
+        }
+    }
+
+    private void prune(long now) {
+        while (!completed.isEmpty() &&
+                now - completed.peekFirst()[0] > WINDOW_MILLIS) {
+            completed.removeFirst();
+        }
+    }
+
+    private double perSecond(int field) {
+        long total = 0;
+        synchronized (completed) {
+            prune(System.currentTimeMillis());
+            for (long[] sample : completed) {
+                total += sample[field];
+            }
+        }
+        return total * 1000.0 / WINDOW_MILLIS;
+    }
+
+    @Override
+    public int getActiveSyncs() {
+        return active.size();
+    }
+
+    /**
+     * @return number of running phases keyed by server and phase
+     */
+    public Map<String, Integer> getActiveSyncsByServerAndPhase() {
+        Map<String, Integer> counts = new TreeMap<>();
+        for (ActivePhase phase : active.values()) {
+            for (String server : phase.servers) {
+                counts.merge(server + "|" + phase.phase, 1, Integer::sum);
+            }
+        }
+        return counts;
+    }
+
+    @Override
+    public String[] getActiveSyncDetails() {
+        long now = System.currentTimeMillis();
+        return active.values().stream()
+                .map(phase -> String.format("%s %s %s running %d s",
+                        phase.job, phase.servers, phase.phase,
+                        TimeUnit.MILLISECONDS.toSeconds(now - phase.started)))
+                .sorted().toArray(String[]::new);
+    }
+
+    @Override
+    public long getLongestRunningMillis() {
+        long now = System.currentTimeMillis();
+        return active.values().stream()
+                .mapToLong(phase -> now - phase.started).max().orElse(0);
+    }
+
+    /**
+     * @return queued builds of freestyle jobs with a Zanata sync step
+     */
+    @Override
+    public int getQueueDepth() {
+        Jenkins jenkins = Jenkins.getInstance();
+        if (jenkins == null) {
+            return 0;
+        }
+        int depth = 0;
+        for (Queue.Item item : jenkins.getQueue().getItems()) {
+            if (ZanataBuilder.runsSync(item.task)) {
+                depth++;
+            }
+        }
+        return depth;
+    }
+
+    @Override
+    public int getLeasedClients() {
+        return clients()[0];
+    }
+
+    @Override
+    public int getIdleClients() {
+        return clients()[1];
+    }
+
+    /**
+     * Remembers the {@link SyncWorker} clients an agent had once a sync phase
+     * on it finished, so reading the metrics never has to ask the agents.
+     *
+     * @param node
+     *         name of the agent, empty for the controller
+     */
+    public void recordClients(String node, int leased, int idle) {
+        if (!node.isEmpty()) {
+            agentClients.put(node, new int[] { leased, idle });
+        }
+    }
+
+    /**
+     * Adds up clients of the controller and what online agents reported at
+     * the end of their last sync phase.
+     */
+    private int[] clients() {
+        SyncWorker worker = SyncWorker.get();
+        int[] total = { worker.getLeasedClients(), worker.getIdleClients() };
+        Jenkins jenkins = Jenkins.getInstance();
+        for (Map.Entry<String, int[]> entry : agentClients.entrySet()) {
+            Computer computer = jenkins == null ? null :
+                    jenkins.getComputer(entry.getKey());
+            if (computer == null || computer.isOffline()) {
+                // a reconnected agent starts with an empty pool
+                agentClients.remove(entry.getKey(), entry.getValue());
+                continue;
+            }
+            total[0] += entry.getValue()[0];
+            total[1] += entry.getValue()[1];
+        }
+        return total;
+    }
+
+    @Override
+    public double getResponseCacheHitRatio() {
+        return SharedResponseCache.get().getStatistics().getHitRatio();
+    }
+
+    /**
+     * @return hit ratio of the zanata.xml cache of the controller JVM
+     */
+    @Override
+    public double getProjectConfigCacheHitRatio() {
+        return ProjectConfigCache.get().getHitRatio();
+    }
+
+    @Override
+    public double getDocumentsPerSecond() {
+        return perSecond(1);
+    }
+
+    @Override
+    public double getBytesPerSecond() {
+        return perSecond(2);
+    }
+
+    public JSONObject toJson() {
+        JSONObject json = new JSONObject();
+        json.put("activeSyncs", getActiveSyncs());
+        json.put("activeSyncsByServerAndPhase",
+                getActiveSyncsByServerAndPhase());
+        json.put("activeSyncDetails",
+                JSONArray.fromObject(getActiveSyncDetails()));
+        json.put("longestRunningMillis", getLongestRunningMillis());
+        json.put("queueDepth", getQueueDepth());
+        json.put("heldProjectVersionLeases",
+                ProjectVersionLeases.get().getHeld());
+        JSONObject clients = new JSONObject();
+        clients.put("leased", getLeasedClients());
+        clients.put("idle", getIdleClients());
+        json.put("restClients", clients);
+        JSONObject caches = new JSONObject();
+        caches.put("responseCacheHitRatio", getResponseCacheHitRatio());
+        caches.put("projectConfigCacheHitRatio",
+                getProjectConfigCacheHitRatio());
+        json.put("caches", caches);
+        JSONObject throughput = new JSONObject();
+        throughput.put("windowSeconds",
+                TimeUnit.MILLISECONDS.toSeconds(WINDOW_MILLIS));
+        throughput.put("documentsPerSecond", getDocumentsPerSecond());
+        throughput.put("bytesPerSecond", getBytesPerSecond());
+        json.put("throughput", throughput);
+        return json;
+    }
+
+    private static final class ActivePhase {
+        private final String job;
+        private final List<String> servers;
+        private final String phase;
+        private final long started = System.currentTimeMillis();
+
+        private ActivePhase(String job, Collection<String> servers,
+                String phase) {
+            this.job = job;
+            this.servers = new ArrayList<>(servers);
+            this.phase = phase;
+        }
+    }
+
+    /**
+     * Read-only JSON view of the metrics for administrators.
+     */
+    @Extension
+    public static class MetricsAction implements RootAction {
+        @Override
+        public String getIconFileName() {
+            return null;
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "Zanata Sync Metrics";
+        }
+
+        @Override
+        public String getUrlName() {
+            return "zanata-sync-metrics";
+        }
+
+        public void doIndex(StaplerRequest req, StaplerResponse rsp)
+                throws IOException {
+            Jenkins.getActiveInstance().checkPermission(Jenkins.ADMINISTER);
+            rsp.setContentType("application/json;charset=UTF-8");
+            rsp.getWriter().write(INSTANCE.toJson().toString(2));
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2017, Red Hat, Inc. and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jenkinsci.plugins.zanata.zanatareposync;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import hudson.model.Job;
+
+/**
+ * Performance records of all sync builds of a job, one tab separated line per
+ * build appended to {@value #FILE} in the job directory. Unlike build records
+ * it is read in one go, so the trend of thousands of builds loads without
+ * loading the builds.
+ */
+public final class SyncPerformanceHistory {
+    static final String FILE = "zanata-sync-performance.tsv";
+
+    private SyncPerformanceHistory() {
+    }
+
+    private static File file(Job<?, ?> job) {
+        return new File(job.getRootDir(), FILE);
+    }
+
+    static boolean exists(Job<?, ?> job) {
+        return file(job).isFile();
+    }
+
+    public static void append(Job<?, ?> job, SyncPerformanceRecord record)
+            throws IOException {
+        File file = file(job);
+        // builds of the same job may finish at the same time
+        synchronized (SyncPerformanceHistory.class) {
+            boolean created = !file.exists();
+            try (Writer writer = Files.newBufferedWriter(file.toPath(),
+                    StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                    StandardOpenOption.APPEND)) {
+                if (created) {
+                    writer.write(SyncPerformanceRecord.HEADER);
+                    writer.write('\n');
+                }
+                writer.write(record.toLine());
+                writer.write('\n');
+            }
+        }
+    }
+
+    /**
+     * @return the latest records, oldest first
+     */
+    public static List<SyncPerformanceRecord> load(Job<?, ?> job, int limit)
+            throws IOException {
+        File file = file(job);
+        if (!file.isFile()) {
+            return new ArrayList<>();
+        }
+        Deque<SyncPerformanceRecord> latest = new ArrayDeque<>(limit);
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(),
+                StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                SyncPerformanceRecord record =
+                        SyncPerformanceRecord.parse(line);
+                if (record == null) {
+                    continue;
+                }
+                if (latest.size() == limit) {
+                    latest.removeFirst();
+                }
+                latest.addLast(record);
+            }
+        }
+        return new ArrayList<>(latest);
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2017, Red Hat, Inc. and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jenkinsci.plugins.zanata.zanatareposync;
+
+import java.util.List;
+
+import org.jenkinsci.plugins.zanata.cli.SyncResult;
+import com.google.common.base.Splitter;
+
+/**
+ * Performance numbers of one sync build, stored as one line of
+ * {@link SyncPerformanceHistory}.
+ */
+public class SyncPerformanceRecord {
+    static final String HEADER =
+            "#build\ttimestamp\tpushMs\tpullMs\tcommitMs\tdocuments\tlocales\tbytesSent\tbytesReceived";
+    private static final int FIELDS = 9;
+    private static final long NOT_RUN = -1;
+
+    private final int build;
+    private final long timestamp;
+    private final long pushMillis;
+    private final long pullMillis;
+    private final long commitMillis;
+    private final int documents;
+    private final int locales;
+    private final long bytesSent;
+    private final long bytesReceived;
+
+    SyncPerformanceRecord(int build, long timestamp, long pushMillis,
+            long pullMillis, long commitMillis, int documents, int locales,
+            long bytesSent, long bytesReceived) {
+        this.build = build;
+        this.timestamp = timestamp;
+        this.pushMillis = pushMillis;
+        this.pullMillis = pullMillis;
+        this.commitMillis = commitMillis;
+        this.documents = documents;
+        this.locales = locales;
+        this.bytesSent = bytesSent;
+        this.bytesReceived = bytesReceived;
+    }
+
+    public static SyncPerformanceRecord of(int build, long timestamp,
+            SyncResult result) {
+        return new SyncPerformanceRecord(build, timestamp,
+                result.getDurations().getOrDefault(SyncResult.PHASE_PUSH,
+                        NOT_RUN),
+                result.getDurations().getOrDefault(SyncResult.PHASE_PULL,
+                        NOT_RUN),
+                result.getDurations().getOrDefault(SyncResult.PHASE_COMMIT,
+                        NOT_RUN),
+                result.getDocuments(), result.getLocales().size(),
+                result.getBytesSentOnWire(), result.getBytesReceivedOnWire());
+    }
+
+    /**
+     * @return the record, or null if the line is not a record (e.g. header
+     * or a line cut short by a crash)
+     */
+    static SyncPerformanceRecord parse(String line) {
+        if (line.startsWith("#")) {
+            return null;
+        }
+        List<String> fields = Splitter.on('\t').splitToList(line);
+        if (fields.size() < FIELDS) {
+            return null;
+        }
+        try {
+            return new SyncPerformanceRecord(Integer.parseInt(fields.get(0)),
+                    Long.parseLong(fields.get(1)),
+                    Long.parseLong(fields.get(2)),
+                    Long.parseLong(fields.get(3)),
+                    Long.parseLong(fields.get(4)),
+                    Integer.parseInt(fields.get(5)),
+                    Integer.parseInt(fields.get(6)),
+                    Long.parseLong(fields.get(7)),
+                    Long.parseLong(fields.get(8)));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    String toLine() {
+        return build + "\t" + timestamp + "\t" + pushMillis + "\t" +
+                pullMillis + "\t" + commitMillis + "\t" + documents + "\t" +
+                locales + "\t" + bytesSent + "\t" + bytesReceived;
+    }
+
+    public int getBuild() {
+        return build;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return push duration in milliseconds, or -1 if the build did not push
+     */
+    public long getPushMillis() {
+        return pushMillis;
+    }
+
+    /**
+     * @return pull duration in milliseconds, or -1 if the build did not pull
+     */
+    public long getPullMillis() {
+        return pullMillis;
+    }
+
+    public long getCommitMillis() {
+        return commitMillis;
+    }
+
+    /**
+     * @return time spent in all phases that ran
+     */
+    public long getTotalMillis() {
+        return Math.max(0, pushMillis) + Math.max(0, pullMillis) +
+                Math.max(0, commitMillis);
+    }
+
+    public int getDocuments() {
+        return documents;
+    }
+
+    public int getLocales() {
+        return locales;
+    }
+
+    public long getBytesSent() {
+        return bytesSent;
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+}
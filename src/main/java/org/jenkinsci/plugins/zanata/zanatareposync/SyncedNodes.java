@@ -0,0 +1,95 @@
+/*
+ * Copyright 2017, Red Hat, Inc. and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jenkinsci.plugins.zanata.zanatareposync;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Names of the agents that ran a sync, one per line in {@value #FILE} under
+ * the Jenkins root directory, so agents can be warmed up again after a
+ * restart (see {@link WarmUp}). Names are only ever added: an agent that
+ * stops running syncs is warmed up for nothing, which is cheap.
+ */
+final class SyncedNodes {
+    private static final Logger log =
+            LoggerFactory.getLogger(SyncedNodes.class);
+    static final String FILE = "zanata-synced-nodes.txt";
+
+    private final Path file;
+    // loaded on first use, this is not needed before agents connect
+    private Set<String> names;
+
+    SyncedNodes(Path file) {
+        this.file = file;
+    }
+
+    synchronized boolean contains(String node) {
+        return names().contains(node);
+    }
+
+    /**
+     * @param node
+     *         name of the agent. The controller is not recorded, it is
+     *         always warmed up.
+     */
+    synchronized void add(String node) {
+        if (node.isEmpty() || !names().add(node)) {
+            return;
+        }
+        try (Writer writer = Files.newBufferedWriter(file,
+                StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND)) {
+            writer.write(node);
+            writer.write('\n');
+        } catch (IOException e) {
+            log.warn("failed to record {} in {}", node, file, e);
+        }
+    }
+
+    private Set<String> names() {
+        if (names == null) {
+            names = new HashSet<>();
+            if (Files.isRegularFile(file)) {
+                try {
+                    for (String line : Files.readAllLines(file,
+                            StandardCharsets.UTF_8)) {
+                        if (!line.isEmpty()) {
+                            names.add(line);
+                        }
+                    }
+                } catch (IOException e) {
+                    log.warn("failed to read {}", file, e);
+                }
+            }
+        }
+        return names;
+    }
+}
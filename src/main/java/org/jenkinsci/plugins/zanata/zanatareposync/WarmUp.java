@@ -0,0 +1,132 @@
+/*
+ * Copyright 2017, Red Hat, Inc. and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jenkinsci.plugins.zanata.zanatareposync;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.jenkinsci.plugins.zanata.cli.util.PushPullOptionsUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import hudson.Extension;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.model.Computer;
+import hudson.model.TaskListener;
+import hudson.remoting.Channel;
+import hudson.remoting.VirtualChannel;
+import hudson.slaves.ComputerListener;
+import jenkins.model.Jenkins;
+import jenkins.security.MasterToSlaveCallable;
+
+/**
+ * Warms up the REST, JAXB and Jackson stack in the background on the
+ * controller at startup, and on an agent when it reconnects if it ran a sync
+ * before (see {@link SyncAffinity#hasSynced(String)}), so the first sync
+ * after a restart doesn't pay for it. Agents that never run syncs are left
+ * alone. Can be turned off in the global Zanata Sync settings.
+ */
+public final class WarmUp {
+    private static final Logger log = LoggerFactory.getLogger(WarmUp.class);
+
+    private WarmUp() {
+    }
+
+    private static boolean isEnabled() {
+        ZanataBuilder.DescriptorImpl descriptor = Jenkins.getActiveInstance()
+                .getDescriptorByType(ZanataBuilder.DescriptorImpl.class);
+        return descriptor == null || !descriptor.isDisableWarmUp();
+    }
+
+    @Initializer(after = InitMilestone.EXTENSIONS_AUGMENTED)
+    public static void warmUpController() {
+        if (!isEnabled()) {
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            long start = System.currentTimeMillis();
+            try {
+                PushPullOptionsUtil.warmUp();
+                log.info("Zanata sync warm-up on controller took {} ms",
+                        System.currentTimeMillis() - start);
+            } catch (RuntimeException | LinkageError e) {
+                log.warn("Zanata sync warm-up on controller failed", e);
+            }
+        }, "zanata-sync-warm-up");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    /**
+     * Warms up agents that ran a sync before as they connect. Jars are
+     * prefetched first so the warm-up doesn't load classes one by one. It
+     * runs after onOnline returns, so it logs to the Jenkins log rather than
+     * the connection log.
+     */
+    @Extension
+    public static class AgentWarmUp extends ComputerListener {
+        @Override
+        public void onOnline(Computer computer, TaskListener listener) {
+            VirtualChannel channel = computer.getChannel();
+            if (!(channel instanceof Channel) || !isEnabled() ||
+                    !SyncAffinity.get().hasSynced(computer.getName())) {
+                return;
+            }
+            String name = computer.getDisplayName();
+            Computer.threadPoolForRemoting.submit(() -> {
+                try {
+                    JarPrefetcher.prefetch(channel, message -> log
+                            .info("Zanata sync warm-up on {}: {}", name,
+                                    message));
+                    Future<Long> took = channel.callAsync(new AgentTask());
+                    log.info("Zanata sync warm-up on {} took {} ms", name,
+                            took.get());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (IOException | ExecutionException e) {
+                    log.warn("Zanata sync warm-up on {} failed", name, e);
+                }
+            });
+        }
+    }
+
+    private static final class AgentTask
+            extends MasterToSlaveCallable<Long, RuntimeException> {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public Long call() {
+            Thread current = Thread.currentThread();
+            int priority = current.getPriority();
+            current.setPriority(Thread.MIN_PRIORITY);
+            long start = System.currentTimeMillis();
+            try {
+                PushPullOptionsUtil.warmUp();
+            } finally {
+                current.setPriority(priority);
+            }
+            return System.currentTimeMillis() - start;
+        }
+    }
+}
@@ -5,6 +5,18 @@ import java.io.IOException;
 import java.io.PrintStream;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Handler;
 import javax.servlet.ServletException;
 
@@ -19,7 +31,22 @@ import org.kohsuke.stapler.StaplerRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.jenkinsci.plugins.zanata.cli.SyncJobDetail;
+import org.jenkinsci.plugins.zanata.cli.SyncResult;
+import org.jenkinsci.plugins.zanata.cli.service.PushHistory;
+import org.jenkinsci.plugins.zanata.cli.service.ZanataSyncService;
 import org.jenkinsci.plugins.zanata.cli.service.impl.ZanataSyncServiceImpl;
+import org.jenkinsci.plugins.zanata.cli.util.CancellableSync;
+import org.jenkinsci.plugins.zanata.cli.util.ChangedFileWriter;
+import org.jenkinsci.plugins.zanata.cli.util.ProjectVersionLease;
+import org.jenkinsci.plugins.zanata.cli.util.PushPullOptionsUtil;
+import org.jenkinsci.plugins.zanata.cli.util.RequestTrace;
+import org.jenkinsci.plugins.zanata.cli.util.ResponseCacheFilter;
+import org.jenkinsci.plugins.zanata.cli.util.SyncJournal;
+import org.jenkinsci.plugins.zanata.cli.util.SyncStateStore;
+import org.jenkinsci.plugins.zanata.cli.util.SyncWorker;
+import org.jenkinsci.plugins.zanata.cli.util.TransferCompression;
+import org.jenkinsci.plugins.zanata.exception.ZanataSyncException;
+import org.jenkinsci.plugins.zanata.git.GitPushHistory;
 import org.jenkinsci.plugins.zanata.git.GitSyncService;
 import com.cloudbees.plugins.credentials.CredentialsMatchers;
 import com.cloudbees.plugins.credentials.CredentialsProvider;
@@ -29,6 +56,7 @@ import com.cloudbees.plugins.credentials.common.StandardUsernameCredentials;
 import com.cloudbees.plugins.credentials.common.StandardUsernameListBoxModel;
 import com.cloudbees.plugins.credentials.common.StandardUsernamePasswordCredentials;
 import com.cloudbees.plugins.credentials.domains.URIRequirementBuilder;
+import com.google.common.base.Splitter;
 import com.google.common.base.Strings;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import hudson.AbortException;
@@ -38,9 +66,12 @@ import hudson.FilePath;
 import hudson.Launcher;
 import hudson.Util;
 import hudson.model.AbstractProject;
+import hudson.model.Computer;
 import hudson.model.Item;
 import hudson.model.Job;
+import hudson.model.Project;
 import hudson.model.Queue;
+import hudson.model.Result;
 import hudson.model.Run;
 import hudson.model.TaskListener;
 import hudson.model.queue.Tasks;
@@ -72,6 +103,10 @@ import net.sf.json.JSONObject;
 public class ZanataBuilder extends Builder implements SimpleBuildStep {
     private static final Logger log =
             LoggerFactory.getLogger(ZanataBuilder.class);
+    private static final int DEFAULT_COMPRESSION_MIN_BYTES = 1024;
+    private static final int DEFAULT_AFFINITY_WAIT_SECONDS = 60;
+    private static final int DEFAULT_FARM_CONCURRENCY = 4;
+    private static final int MAX_FARM_CONCURRENCY = 16;
 
     private String zanataURL;
     private String syncOption;
@@ -80,6 +115,17 @@ public class ZanataBuilder extends Builder implements SimpleBuildStep {
     private boolean pushToZanata;
     private boolean pullFromZanata;
     private String zanataCredentialsId;
+    private String pullMode;
+    private boolean normalizeTranslations;
+    private boolean deltaSync;
+    private boolean resumeSync;
+    private boolean batchCopyTrans;
+    private List<ZanataServerTarget> additionalServers;
+    private String readReplicas;
+    private String transferCompression = TransferCompression.MODE_RESPONSES;
+    private int compressionMinBytes = DEFAULT_COMPRESSION_MIN_BYTES;
+    private List<ZanataSyncRepository> repositories;
+    private int farmConcurrency = DEFAULT_FARM_CONCURRENCY;
 
     // Fields in config.jelly must match the parameter names in the "DataBoundConstructor"
     @DataBoundConstructor
@@ -91,6 +137,7 @@ public class ZanataBuilder extends Builder implements SimpleBuildStep {
         this.zanataLocaleIds = null;
         this.pushToZanata = true;
         this.pullFromZanata = true;
+        this.pullMode = ZanataSyncService.PULL_MODE_DOCUMENT;
     }
 
     /**
@@ -124,6 +171,58 @@ public class ZanataBuilder extends Builder implements SimpleBuildStep {
         return zanataCredentialsId;
     }
 
+    public String getPullMode() {
+        return pullMode;
+    }
+
+    public boolean isNormalizeTranslations() {
+        return normalizeTranslations;
+    }
+
+    public boolean isDeltaSync() {
+        return deltaSync;
+    }
+
+    public boolean isResumeSync() {
+        return resumeSync;
+    }
+
+    public boolean isBatchCopyTrans() {
+        return batchCopyTrans;
+    }
+
+    public String getReadReplicas() {
+        return readReplicas;
+    }
+
+    public String getTransferCompression() {
+        return transferCompression;
+    }
+
+    public int getCompressionMinBytes() {
+        return compressionMinBytes;
+    }
+
+    public List<ZanataServerTarget> getAdditionalServers() {
+        return additionalServers == null ? Collections.emptyList() :
+                additionalServers;
+    }
+
+    /**
+     * @return repositories to sync instead of the workspace, if any
+     */
+    public List<ZanataSyncRepository> getRepositories() {
+        return repositories == null ? Collections.emptyList() : repositories;
+    }
+
+    /**
+     * @return how many of the {@link #getRepositories()} are synced at a
+     * time
+     */
+    public int getFarmConcurrency() {
+        return farmConcurrency;
+    }
+
     @DataBoundSetter
     public void setZanataURL(String zanataURL) {
         this.zanataURL = zanataURL;
@@ -154,58 +253,293 @@ public class ZanataBuilder extends Builder implements SimpleBuildStep {
         this.pullFromZanata = pullFromZanata;
     }
 
+    @DataBoundSetter
+    public void setPullMode(String pullMode) {
+        this.pullMode = pullMode;
+    }
+
+    @DataBoundSetter
+    public void setNormalizeTranslations(boolean normalizeTranslations) {
+        this.normalizeTranslations = normalizeTranslations;
+    }
+
+    @DataBoundSetter
+    public void setDeltaSync(boolean deltaSync) {
+        this.deltaSync = deltaSync;
+    }
+
+    @DataBoundSetter
+    public void setResumeSync(boolean resumeSync) {
+        this.resumeSync = resumeSync;
+    }
+
+    @DataBoundSetter
+    public void setBatchCopyTrans(boolean batchCopyTrans) {
+        this.batchCopyTrans = batchCopyTrans;
+    }
+
+    @DataBoundSetter
+    public void setReadReplicas(String readReplicas) {
+        this.readReplicas = readReplicas;
+    }
+
+    @DataBoundSetter
+    public void setTransferCompression(String transferCompression) {
+        this.transferCompression = transferCompression;
+    }
+
+    @DataBoundSetter
+    public void setCompressionMinBytes(int compressionMinBytes) {
+        this.compressionMinBytes = Math.max(0, compressionMinBytes);
+    }
+
+    @DataBoundSetter
+    public void setRepositories(List<ZanataSyncRepository> repositories) {
+        if (repositories != null) {
+            ZanataSyncRepository.checkUnique(repositories);
+        }
+        this.repositories = repositories;
+    }
+
+    @DataBoundSetter
+    public void setFarmConcurrency(int farmConcurrency) {
+        this.farmConcurrency = Math.max(1,
+                Math.min(MAX_FARM_CONCURRENCY, farmConcurrency));
+    }
+
+    @DataBoundSetter
+    public void setAdditionalServers(
+            List<ZanataServerTarget> additionalServers) {
+        this.additionalServers = additionalServers;
+    }
+
     @Override
     public void perform(Run<?, ?> build, FilePath workspace, Launcher launcher, TaskListener listener)
-            throws IOException {
+            throws IOException, InterruptedException {
         // This is where you 'build' the project.
         Handler logHandler = configLogger(listener.getLogger());
 
         // TODO pahuang check credential plugin
 //        Plugin credentialsPlugin = Jenkins.getInstance().getPlugin("credentials-uploader");
 
-        IdCredentials cred = CredentialsProvider.findCredentialById(zanataCredentialsId, IdCredentials.class, build);
-        if (cred == null) {
-            throw new AbortException("Zanata credential with ID [" + zanataCredentialsId + "] can not be found.");
-        }
-        CredentialsProvider.track(build, cred);
-        StandardUsernameCredentials usernameCredentials = (StandardUsernameCredentials) cred;
-        String apiKey =
-                ((PasswordCredentials) usernameCredentials).getPassword()
-                        .getPlainText();
         logger(listener).println("Running Zanata sync for "+ zanataURL +"!");
-        SyncJobDetail syncJobDetail = SyncJobDetail.Builder.builder()
-                .setZanataUrl(zanataURL)
-                .setZanataUsername(usernameCredentials.getUsername())
-                .setZanataSecret(apiKey)
-                .setSyncToZanataOption(syncOption)
-                .setProjectConfigs(zanataProjectConfigs)
-                .setLocaleId(zanataLocaleIds)
-                .build();
+        EnvVars env = build.getEnvironment(listener);
+        if (!getRepositories().isEmpty()) {
+            try {
+                syncRepositories(build, workspace, env, listener);
+            } finally {
+                removeLogger(logHandler);
+            }
+            return;
+        }
+        SyncJobDetail syncJobDetail = makeSyncJobDetail(build, env, zanataURL,
+                zanataCredentialsId);
 
         logger(listener).println("Job config: " + syncJobDetail.toString());
 
         ZanataSyncServiceImpl service =
                 new ZanataSyncServiceImpl(syncJobDetail);
+        // keyed by server URL
+        LinkedHashMap<String, ZanataSyncServiceImpl> additionalServices =
+                new LinkedHashMap<>();
+        for (ZanataServerTarget target : getAdditionalServers()) {
+            logger(listener).println(
+                    "Also pushing to " + target.getZanataURL());
+            additionalServices.put(target.getZanataURL(),
+                    new ZanataSyncServiceImpl(makeSyncJobDetail(build, env,
+                            target.getZanataURL(),
+                            target.getZanataCredentialsId())));
+        }
+
+        Computer computer = workspace.toComputer();
+        String node = computer == null ? null : computer.getName();
+        logStart(build, workspace, node, listener);
+        JarPrefetcher.prefetch(workspace.getChannel(), logger(listener));
 
+        Git git = Git.with(listener, new EnvVars(EnvVars.masterEnvVars));
+        GitSyncService gitSyncService = new GitSyncService(syncJobDetail, git);
 
+        SyncResult result = new SyncResult();
+        boolean sharedCache =
+                ((DescriptorImpl) getDescriptor()).getResponseCacheSizeMB() > 0;
+        String buildName = build.getParent().getFullName() + " #" +
+                build.getNumber();
         try {
             if (pushToZanata) {
-                pushToZanata(workspace, service);
+                List<String> servers = new ArrayList<>();
+                servers.add(syncJobDetail.getZanataUrl());
+                servers.addAll(additionalServices.keySet());
+                long phase = SyncMetrics.get()
+                        .begin(buildName, servers, SyncResult.PHASE_PUSH);
+                try {
+                    result = pushToZanata(workspace, service,
+                            additionalServices, gitSyncService, syncJobDetail,
+                            !pullFromZanata, buildName, result);
+                } finally {
+                    SyncMetrics.get().end(phase);
+                }
+                if (result.hasFailedTarget()) {
+                    logger(listener).println(
+                            "Push to some Zanata servers failed: " +
+                                    result.getTargets());
+                    build.setResult(Result.UNSTABLE);
+                }
             }
             if (pullFromZanata) {
-                Git git =
-                        Git.with(listener, new EnvVars(EnvVars.masterEnvVars));
-                GitSyncService gitSyncService = new GitSyncService(syncJobDetail, git);
-                pullFromZanata(workspace, service, gitSyncService);
+                long phase = SyncMetrics.get().begin(buildName,
+                        Collections.singletonList(syncJobDetail.getZanataUrl()),
+                        SyncResult.PHASE_PULL);
+                try {
+                    result = pullFromZanata(workspace, service,
+                            gitSyncService, syncJobDetail, pushToZanata,
+                            buildName, result);
+                } finally {
+                    SyncMetrics.get().end(phase);
+                }
+            }
+            SyncMetrics.get().recordTransfer(result.getDocuments(),
+                    result.getBytesSentOnWire() +
+                            result.getBytesReceivedOnWire());
+            publishResult(build, workspace, result);
+            archiveTrace(build, workspace);
+            recordPerformance(build, result);
+            if (node != null) {
+                SyncAffinity.get().record(build.getParent(),
+                        env.get("GIT_URL"), node);
+            }
+            logger(listener).println("Zanata sync result: " + result);
+            logger(listener).println(String.format(
+                    "Transferred: sent %d bytes (%d on the wire), received %d bytes (%d on the wire)",
+                    result.getBytesSent(), result.getBytesSentOnWire(),
+                    result.getBytesReceived(), result.getBytesReceivedOnWire()));
+            if (result.getLeaseWaitMillis() > 0 ||
+                    result.getSkippedPushes() > 0) {
+                logger(listener).println(String.format(
+                        "Waited %d ms for other jobs syncing the same project versions. Skipped %d pushes they had just done",
+                        result.getLeaseWaitMillis(),
+                        result.getSkippedPushes()));
+            }
+            if (!result.getEndpointStats().isEmpty()) {
+                logger(listener).println("Zanata REST requests:");
+            }
+            for (String endpoint : result.getEndpointStats()) {
+                logger(listener).println("  " + endpoint);
+            }
+            JarPrefetcher.report(workspace.getChannel(), logger(listener));
+            if (sharedCache) {
+                logger(listener).println("Shared response cache: " +
+                        SharedResponseCache.get().getStatistics());
             }
-        } catch (IOException | InterruptedException e) {
+        } catch (InterruptedException e) {
+            // let Jenkins see the abort so the executor is released straight away
+            logger(listener).println("Zanata Sync aborted");
+            throw e;
+        } catch (IOException e) {
             logger(listener).println("Zanata Sync failed:" + e.getMessage());
-            throw new RuntimeException(e);
+            throw e;
         } finally {
+            ProjectVersionLeases.get().releaseAll(buildName);
             removeLogger(logHandler);
         }
     }
 
+    /**
+     * Syncs {@link #getRepositories()} instead of the workspace.
+     */
+    private void syncRepositories(Run<?, ?> build, FilePath workspace,
+            EnvVars env, TaskListener listener)
+            throws IOException, InterruptedException {
+        try {
+            // a job saved before the check was added may still have duplicates
+            ZanataSyncRepository.checkUnique(getRepositories());
+        } catch (IllegalArgumentException e) {
+            throw new AbortException(e.getMessage());
+        }
+        JarPrefetcher.prefetch(workspace.getChannel(), logger(listener));
+        boolean sharedCache =
+                ((DescriptorImpl) getDescriptor()).getResponseCacheSizeMB() > 0;
+        String buildName = build.getParent().getFullName() + " #" +
+                build.getNumber();
+        try {
+            SyncResult result = new SyncFarm(this, build, workspace, env,
+                    listener, buildName).run();
+            SyncMetrics.get().recordTransfer(result.getDocuments(),
+                    result.getBytesSentOnWire() +
+                            result.getBytesReceivedOnWire());
+            publishResult(build, workspace, result);
+            recordPerformance(build, result);
+            logger(listener).println("Zanata sync result: " + result);
+            if (sharedCache) {
+                logger(listener).println("Shared response cache: " +
+                        SharedResponseCache.get().getStatistics());
+            }
+        } catch (InterruptedException e) {
+            logger(listener).println("Zanata Sync aborted");
+            throw e;
+        }
+    }
+
+    private SyncJobDetail makeSyncJobDetail(Run<?, ?> build, EnvVars env,
+            String url, String credentialsId) throws AbortException {
+        return makeSyncJobDetail(build, env, url, credentialsId,
+                env.get("GIT_BRANCH"), 0);
+    }
+
+    /**
+     * @param minWorkerIdleMinutes
+     *         keep the sync worker at least this long, whatever the global
+     *         setting
+     */
+    SyncJobDetail makeSyncJobDetail(Run<?, ?> build, EnvVars env,
+            String url, String credentialsId, String branch,
+            int minWorkerIdleMinutes) throws AbortException {
+        IdCredentials cred = CredentialsProvider.findCredentialById(credentialsId, IdCredentials.class, build);
+        if (cred == null) {
+            throw new AbortException("Zanata credential with ID [" + credentialsId + "] can not be found.");
+        }
+        CredentialsProvider.track(build, cred);
+        StandardUsernameCredentials usernameCredentials = (StandardUsernameCredentials) cred;
+        String apiKey =
+                ((PasswordCredentials) usernameCredentials).getPassword()
+                        .getPlainText();
+        boolean sharedCache =
+                ((DescriptorImpl) getDescriptor()).getResponseCacheSizeMB() > 0;
+        return SyncJobDetail.Builder.builder()
+                .setSrcRepoBranch(branch)
+                .setZanataUrl(url)
+                .setZanataUsername(usernameCredentials.getUsername())
+                .setZanataSecret(apiKey)
+                .setSyncToZanataOption(syncOption)
+                .setProjectConfigs(zanataProjectConfigs)
+                .setLocaleId(zanataLocaleIds)
+                .setPullMode(pullMode)
+                .setNormalizeTranslations(normalizeTranslations)
+                .setDeltaSync(deltaSync)
+                .setResumeSync(resumeSync)
+                .setBatchCopyTrans(batchCopyTrans)
+                .setReadReplicas(effectiveReadReplicas())
+                .setTransferCompression(transferCompression)
+                .setCompressionMinBytes(compressionMinBytes)
+                .setWorkerIdleMinutes(Math.max(minWorkerIdleMinutes,
+                        ((DescriptorImpl) getDescriptor())
+                                .getWorkerIdleMinutes()))
+                .setResponseCacheScope(sharedCache ? SharedResponseCache.get()
+                        .scopeOf(url, usernameCredentials.getUsername(),
+                                apiKey) : null)
+                .build();
+    }
+
+    /**
+     * @return read replicas of this job, or the global ones if the job has
+     * none
+     */
+    private String effectiveReadReplicas() {
+        if (Util.fixEmptyAndTrim(readReplicas) != null) {
+            return readReplicas;
+        }
+        return ((DescriptorImpl) getDescriptor()).getReadReplicas();
+    }
+
     @SuppressFBWarnings("LG_LOST_LOGGER_DUE_TO_WEAK_REFERENCE")
     private static Handler configLogger(PrintStream printStream) {
         ZanataCLILoggerHandler loggerHandler =
@@ -219,17 +553,131 @@ public class ZanataBuilder extends Builder implements SimpleBuildStep {
         java.util.logging.Logger.getLogger("org.zanata").removeHandler(appender);
     }
 
-    private static void pullFromZanata(FilePath workspace,
-            final ZanataSyncServiceImpl service, GitSyncService gitSyncService)
+    /**
+     * Makes the result available to later steps: as a build action (remote
+     * API and environment variables) and as a JSON file in the workspace.
+     */
+    static void publishResult(Run<?, ?> build, FilePath workspace,
+            SyncResult result) throws IOException, InterruptedException {
+        build.addAction(new ZanataSyncAction(result));
+        workspace.child(SyncStateStore.CACHE_DIR)
+                .child(ZanataSyncAction.RESULT_FILE)
+                .write(result.toJson(), "UTF-8");
+    }
+
+    /**
+     * Tells whether the sync starts with the workspace of an earlier sync.
+     */
+    private static void logStart(Run<?, ?> build, FilePath workspace,
+            String node, TaskListener listener)
             throws IOException, InterruptedException {
-        workspace.act(new FilePath.FileCallable<Void>() {
+        String nodeName = Strings.isNullOrEmpty(node) ? "controller" : node;
+        if (workspace.child(SyncStateStore.CACHE_DIR).exists()) {
+            logger(listener).println(
+                    "Warm start on " + nodeName + ": workspace has sync state");
+            return;
+        }
+        String last = SyncAffinity.get().preferredNode(build.getParent());
+        logger(listener).println("Cold start on " + nodeName +
+                (last == null ? "" : ". Last sync ran on " +
+                        (last.isEmpty() ? "controller" : last)));
+    }
+
+    /**
+     * @return true if the task is a freestyle job with a Zanata sync step
+     */
+    static boolean runsSync(Queue.Task task) {
+        return task instanceof Project && ((Project<?, ?>) task)
+                .getBuildersList().get(ZanataBuilder.class) != null;
+    }
+
+    static void recordPerformance(Run<?, ?> build,
+            SyncResult result) {
+        try {
+            SyncPerformanceHistory.append(build.getParent(),
+                    SyncPerformanceRecord.of(build.getNumber(),
+                            build.getStartTimeInMillis(), result));
+        } catch (IOException e) {
+            log.warn("failed to record sync performance of {}", build, e);
+        }
+    }
+
+    /**
+     * Keeps the request trace of the sync with the build, next to its log.
+     */
+    private static void archiveTrace(Run<?, ?> build, FilePath workspace)
+            throws IOException, InterruptedException {
+        FilePath trace = workspace.child(SyncStateStore.CACHE_DIR)
+                .child(RequestTrace.TRACE_FILE);
+        if (trace.exists()) {
+            trace.copyTo(new FilePath(
+                    new File(build.getRootDir(), "zanata-trace.json")));
+        }
+    }
+
+    static SyncResult pullFromZanata(FilePath workspace,
+            final ZanataSyncServiceImpl service, GitSyncService gitSyncService,
+            SyncJobDetail syncJobDetail, boolean appendTrace,
+            String buildName, SyncResult result)
+            throws IOException, InterruptedException {
+        ResponseCacheFilter.Store responseCache =
+                exportResponseCache(workspace, syncJobDetail);
+        ProjectVersionLease.Coordinator leases =
+                exportLeases(workspace, buildName);
+        SyncResult agentResult = workspace.act(new FilePath.FileCallable<SyncResult>() {
 
             @Override
-            public Void invoke(File f, VirtualChannel channel)
+            public SyncResult invoke(File f, VirtualChannel channel)
                     throws IOException, InterruptedException {
-                service.pullFromZanata(f.toPath());
-                gitSyncService.syncTranslationToRepo(f.toPath());
-                return null;
+                TransferCompression compression =
+                        prepareAgent(syncJobDetail, responseCache);
+                RequestTrace trace = new RequestTrace(SyncResult.PHASE_PULL);
+                RequestTrace.bind(trace);
+                ProjectVersionLease lease =
+                        new ProjectVersionLease(leases, buildName);
+                ProjectVersionLease.bind(lease);
+                try {
+                    SyncResult phaseResult = CancellableSync.run(SyncResult.PHASE_PULL, () -> {
+                        SyncJournal journal = openJournal(f.toPath(),
+                                gitSyncService, syncJobDetail);
+                        long start = System.currentTimeMillis();
+                        result.setPulledFiles(
+                                service.pullFromZanata(f.toPath(), journal));
+                        result.recordDuration(SyncResult.PHASE_PULL,
+                                System.currentTimeMillis() - start);
+
+                        CancellableSync.checkCancelled();
+                        start = System.currentTimeMillis();
+                        Set<String> committed =
+                                gitSyncService.syncTranslationToRepo(f.toPath());
+                        if (!committed.isEmpty()) {
+                            result.addChangedFiles(committed);
+                            result.setCommitId(gitSyncService
+                                    .headCommit(f.toPath()).orElse(null));
+                            journal.markCommitted(result.getCommitId());
+                        }
+                        result.recordDuration(SyncResult.PHASE_COMMIT,
+                                System.currentTimeMillis() - start);
+                        journal.complete();
+                        return result;
+                    });
+                    phaseResult.addTransferred(compression.getSent(),
+                            compression.getSentOnWire(),
+                            compression.getReceived(),
+                            compression.getReceivedOnWire());
+                    phaseResult.addEndpointStats(trace.summary());
+                    phaseResult.addPulledDocuments(trace.getDocuments());
+                    phaseResult.addLocales(trace.getLocales());
+                    phaseResult.addLeaseWait(lease.getWaitedMillis(),
+                            lease.getSkipped());
+                    // clients of this phase were given back when it ended
+                    phaseResult.setClients(SyncWorker.get().getLeasedClients(),
+                            SyncWorker.get().getIdleClients());
+                    return phaseResult;
+                } finally {
+                    cleanUpAgent();
+                    writeTrace(trace, f.toPath(), appendTrace);
+                }
             }
 
             @Override
@@ -237,18 +685,75 @@ public class ZanataBuilder extends Builder implements SimpleBuildStep {
                     throws SecurityException {
             }
         });
+        return recordClients(workspace, agentResult);
     }
 
-    private static void pushToZanata(FilePath workspace,
-            final ZanataSyncServiceImpl service)
+    static SyncResult pushToZanata(FilePath workspace,
+            final ZanataSyncServiceImpl service,
+            LinkedHashMap<String, ZanataSyncServiceImpl> additionalServices,
+            GitSyncService gitSyncService, SyncJobDetail syncJobDetail,
+            boolean lastPhase, String buildName, SyncResult result)
             throws IOException, InterruptedException {
-        workspace.act(new FilePath.FileCallable<Void>() {
+        ResponseCacheFilter.Store responseCache =
+                exportResponseCache(workspace, syncJobDetail);
+        ProjectVersionLease.Coordinator leases =
+                exportLeases(workspace, buildName);
+        SyncResult agentResult = workspace.act(new FilePath.FileCallable<SyncResult>() {
             @Override
-            public Void invoke(File f, VirtualChannel channel)
+            public SyncResult invoke(File f, VirtualChannel channel)
                     throws IOException, InterruptedException {
-
-                service.pushToZanata(f.toPath());
-                return null;
+                TransferCompression compression =
+                        prepareAgent(syncJobDetail, responseCache);
+                RequestTrace trace = new RequestTrace(SyncResult.PHASE_PUSH);
+                RequestTrace.bind(trace);
+                ProjectVersionLease lease =
+                        new ProjectVersionLease(leases, buildName);
+                ProjectVersionLease.bind(lease);
+                try {
+                    SyncResult phaseResult = CancellableSync.run(SyncResult.PHASE_PUSH, () -> {
+                        long start = System.currentTimeMillis();
+                        Path repoBase = f.toPath();
+                        SyncJournal journal = openJournal(repoBase,
+                                gitSyncService, syncJobDetail);
+                        GitPushHistory pushHistory = syncJobDetail.isDeltaSync() ?
+                                new GitPushHistory(gitSyncService, repoBase,
+                                        syncJobDetail.getSrcRepoBranch()) : null;
+                        if (additionalServices.isEmpty()) {
+                            result.setPushedVersions(service.pushToZanata(repoBase,
+                                    pushHistory == null ? PushHistory.NONE :
+                                            pushHistory, journal));
+                        } else {
+                            pushToAllServers(repoBase, service, additionalServices,
+                                    syncJobDetail.getZanataUrl(), pushHistory,
+                                    journal, result);
+                        }
+                        if (pushHistory != null) {
+                            pushHistory.save();
+                        }
+                        if (lastPhase) {
+                            journal.complete();
+                        }
+                        result.recordDuration(SyncResult.PHASE_PUSH,
+                                System.currentTimeMillis() - start);
+                        return result;
+                    });
+                    phaseResult.addTransferred(compression.getSent(),
+                            compression.getSentOnWire(),
+                            compression.getReceived(),
+                            compression.getReceivedOnWire());
+                    phaseResult.addEndpointStats(trace.summary());
+                    phaseResult.addPushedDocuments(trace.getDocuments());
+                    phaseResult.addLocales(trace.getLocales());
+                    phaseResult.addLeaseWait(lease.getWaitedMillis(),
+                            lease.getSkipped());
+                    // clients of this phase were given back when it ended
+                    phaseResult.setClients(SyncWorker.get().getLeasedClients(),
+                            SyncWorker.get().getIdleClients());
+                    return phaseResult;
+                } finally {
+                    cleanUpAgent();
+                    writeTrace(trace, f.toPath(), false);
+                }
             }
 
             @Override
@@ -256,6 +761,193 @@ public class ZanataBuilder extends Builder implements SimpleBuildStep {
                     throws SecurityException {
             }
         });
+        return recordClients(workspace, agentResult);
+    }
+
+    /**
+     * Keeps the REST client counts the agent reported at the end of a phase
+     * for {@link SyncMetrics}.
+     */
+    private static SyncResult recordClients(FilePath workspace,
+            SyncResult result) {
+        Computer computer = workspace.toComputer();
+        if (computer != null) {
+            SyncMetrics.get().recordClients(computer.getName(),
+                    result.getLeasedClients(), result.getIdleClients());
+        }
+        return result;
+    }
+
+    /**
+     * Runs on the controller before each phase.
+     *
+     * @return the sync's part of the {@link SharedResponseCache}, exported to
+     * the agent of the workspace, or null if the sync does not use the cache
+     */
+    private static ResponseCacheFilter.Store exportResponseCache(
+            FilePath workspace, SyncJobDetail syncJobDetail) {
+        if (syncJobDetail.getResponseCacheScope() == null) {
+            return null;
+        }
+        long maxBytes = Jenkins.getActiveInstance()
+                .getDescriptorByType(DescriptorImpl.class)
+                .getResponseCacheSizeMB() * 1024L * 1024L;
+        ResponseCacheFilter.Store store =
+                SharedResponseCache.get().storeFor(syncJobDetail, maxBytes);
+        VirtualChannel channel = workspace.getChannel();
+        return channel == null ? store :
+                channel.export(ResponseCacheFilter.Store.class, store);
+    }
+
+    /**
+     * Runs on the controller before each phase.
+     *
+     * @return the build's view of {@link ProjectVersionLeases}, exported to
+     * the agent of the workspace
+     */
+    private static ProjectVersionLease.Coordinator exportLeases(
+            FilePath workspace, String buildName) {
+        ProjectVersionLease.Coordinator leases =
+                ProjectVersionLeases.get().forOwner(buildName);
+        VirtualChannel channel = workspace.getChannel();
+        return channel == null ? leases :
+                channel.export(ProjectVersionLease.Coordinator.class, leases);
+    }
+
+    /**
+     * Runs on the agent before each phase. Lets REST clients created by this
+     * sync use the controller's {@link SharedResponseCache}, keeps them warm
+     * for the next sync if asked to and sets up transfer compression.
+     */
+    private static TransferCompression prepareAgent(
+            SyncJobDetail syncJobDetail,
+            ResponseCacheFilter.Store responseCache) {
+        SyncWorker.get().configure(syncJobDetail.getWorkerIdleMinutes());
+        if (responseCache != null) {
+            ResponseCacheFilter.bind(responseCache);
+        }
+        TransferCompression compression = new TransferCompression(
+                syncJobDetail.getTransferCompression(),
+                syncJobDetail.getCompressionMinBytes());
+        TransferCompression.bind(compression);
+        return compression;
+    }
+
+    private static void cleanUpAgent() {
+        ResponseCacheFilter.unbind();
+        TransferCompression.unbind();
+        RequestTrace.unbind();
+        ProjectVersionLease.unbind();
+    }
+
+    /**
+     * Writes the requests of a phase, including a failed one, to the trace
+     * file in the workspace. A trace is only diagnostics so failing to write
+     * it does not fail the sync.
+     */
+    private static void writeTrace(RequestTrace trace, Path workspace,
+            boolean append) {
+        try {
+            trace.write(workspace.resolve(SyncStateStore.CACHE_DIR)
+                    .resolve(RequestTrace.TRACE_FILE), append);
+        } catch (IOException e) {
+            log.warn("failed to write request trace", e);
+        }
+    }
+
+    /**
+     * Pushes to every server at the same time. A failure of the main server
+     * fails the sync. A failure of an additional server is only reported in
+     * the result.
+     */
+    private static void pushToAllServers(Path repoBase,
+            ZanataSyncServiceImpl service,
+            Map<String, ZanataSyncServiceImpl> additionalServices,
+            String mainServer, GitPushHistory pushHistory,
+            SyncJournal journal, SyncResult result)
+            throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(
+                additionalServices.size() + 1, r -> {
+                    Thread thread = new Thread(r, "zanata-push-server");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        try {
+            Future<SyncResult.TargetResult> main = executor.submit(
+                    () -> pushToServer(repoBase, mainServer, service,
+                            pushHistory, journal));
+            Map<String, Future<SyncResult.TargetResult>> others =
+                    new LinkedHashMap<>();
+            additionalServices.forEach((server, additional) -> others.put(
+                    server, executor.submit(() -> pushToServer(repoBase,
+                            server, additional, pushHistory == null ? null :
+                                    pushHistory.forServer(server),
+                            journal.scoped(server)))));
+
+            SyncResult.TargetResult mainResult = getOrThrow(main);
+            result.setPushedVersions(mainResult.getPushedVersions());
+            result.addTarget(mainResult);
+            for (Map.Entry<String, Future<SyncResult.TargetResult>> other : others
+                    .entrySet()) {
+                try {
+                    result.addTarget(other.getValue().get());
+                } catch (ExecutionException e) {
+                    log.warn("push to {} failed", other.getKey(), e.getCause());
+                    result.addTarget(new SyncResult.TargetResult(
+                            other.getKey(), 0,
+                            String.valueOf(e.getCause().getMessage()), 0));
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static SyncResult.TargetResult pushToServer(Path repoBase,
+            String server, ZanataSyncServiceImpl service,
+            PushHistory pushHistory, SyncJournal journal) {
+        long start = System.currentTimeMillis();
+        int pushed = service.pushToZanata(repoBase,
+                pushHistory == null ? PushHistory.NONE : pushHistory, journal);
+        return new SyncResult.TargetResult(server, pushed, null,
+                System.currentTimeMillis() - start);
+    }
+
+    private static <T> T getOrThrow(Future<T> future)
+            throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new ZanataSyncException("failed pushing to Zanata",
+                    e.getCause());
+        }
+    }
+
+    /**
+     * Opens the progress journal if resume is enabled. The journal is tied to
+     * the job settings that decide what gets synced, the git revision the
+     * sync started from and content of all zanata.xml so that it is
+     * discarded if any of them changed.
+     */
+    private static SyncJournal openJournal(Path repoBase,
+            GitSyncService gitSyncService, SyncJobDetail syncJobDetail)
+            throws IOException {
+        if (!syncJobDetail.isResumeSync()) {
+            return SyncJournal.DISABLED;
+        }
+        StringBuilder inputs =
+                new StringBuilder(syncJobDetail.describeSyncInputs());
+        Set<File> configs = new TreeSet<>(
+                PushPullOptionsUtil.findProjectConfigs(repoBase.toFile()));
+        for (File config : configs) {
+            inputs.append(config)
+                    .append(ChangedFileWriter.sha256Hex(config.toPath()));
+        }
+        return SyncJournal.open(repoBase, Util.getDigestOf(inputs.toString()),
+                gitSyncService.headCommit(repoBase).orElse(null));
     }
 
     private static PrintStream logger(TaskListener listener) {
@@ -280,6 +972,12 @@ public class ZanataBuilder extends Builder implements SimpleBuildStep {
      */
     @Extension // This indicates to Jenkins that this is an implementation of an extension point.
     public static final class DescriptorImpl extends BuildStepDescriptor<Builder> {
+        private String readReplicas;
+        private int responseCacheSizeMB;
+        private int workerIdleMinutes;
+        private boolean disableWarmUp;
+        private int affinityWaitSeconds = DEFAULT_AFFINITY_WAIT_SECONDS;
+
         /**
          * In order to load the persisted global configuration, you have to
          * call load() in the constructor.
@@ -288,6 +986,70 @@ public class ZanataBuilder extends Builder implements SimpleBuildStep {
             load();
         }
 
+        /**
+         * @return read replicas used by jobs that don't set their own
+         */
+        public String getReadReplicas() {
+            return readReplicas;
+        }
+
+        public void setReadReplicas(String readReplicas) {
+            this.readReplicas = readReplicas;
+        }
+
+        /**
+         * @return disk cap of the {@link SharedResponseCache}. 0 (the default)
+         * disables it.
+         */
+        public int getResponseCacheSizeMB() {
+            return responseCacheSizeMB;
+        }
+
+        public void setResponseCacheSizeMB(int responseCacheSizeMB) {
+            this.responseCacheSizeMB = Math.max(0, responseCacheSizeMB);
+        }
+
+        /**
+         * @return how long agents keep REST clients and locale lists after
+         * a sync. 0 turns it off.
+         */
+        public int getWorkerIdleMinutes() {
+            return workerIdleMinutes;
+        }
+
+        public void setWorkerIdleMinutes(int workerIdleMinutes) {
+            this.workerIdleMinutes = Math.max(0, workerIdleMinutes);
+        }
+
+        /**
+         * @return true if the REST stack should not be warmed up at startup
+         * and when agents connect (see {@link WarmUp})
+         */
+        public boolean isDisableWarmUp() {
+            return disableWarmUp;
+        }
+
+        public void setDisableWarmUp(boolean disableWarmUp) {
+            this.disableWarmUp = disableWarmUp;
+        }
+
+        /**
+         * @return how long a sync build waits in the queue for the node of
+         * the last sync. 0 turns it off (see {@link SyncAffinity}).
+         */
+        public int getAffinityWaitSeconds() {
+            return affinityWaitSeconds;
+        }
+
+        public void setAffinityWaitSeconds(int affinityWaitSeconds) {
+            this.affinityWaitSeconds = Math.max(0, affinityWaitSeconds);
+        }
+
+        @SuppressWarnings("unused")
+        public SharedResponseCache.Statistics getResponseCacheStatistics() {
+            return SharedResponseCache.get().getStatistics();
+        }
+
         // ========== FORM validation ===========================================
         // ========== https://wiki.jenkins-ci.org/display/JENKINS/Form+Validation
 
@@ -312,6 +1074,19 @@ public class ZanataBuilder extends Builder implements SimpleBuildStep {
                     .includeCurrentValue(credentialsId);
         }
 
+        @SuppressWarnings("unused")
+        public FormValidation doCheckReadReplicas(@QueryParameter String value) {
+            for (String replica : Splitter.on(",").trimResults()
+                    .omitEmptyStrings().split(Strings.nullToEmpty(value))) {
+                try {
+                    new URL(replica);
+                } catch (MalformedURLException e) {
+                    return FormValidation.error(replica + " is not a valid URL");
+                }
+            }
+            return FormValidation.ok();
+        }
+
         @SuppressWarnings("unused")
         public ListBoxModel doFillSyncOptionItems(
                 @QueryParameter String selection) {
@@ -324,6 +1099,36 @@ public class ZanataBuilder extends Builder implements SimpleBuildStep {
 
         }
 
+        @SuppressWarnings("unused")
+        public ListBoxModel doFillTransferCompressionItems(
+                @QueryParameter String selection) {
+            return new ListBoxModel(
+                    new ListBoxModel.Option("off",
+                            TransferCompression.MODE_OFF,
+                            TransferCompression.MODE_OFF.equals(selection)),
+                    new ListBoxModel.Option("responses only",
+                            TransferCompression.MODE_RESPONSES,
+                            TransferCompression.MODE_RESPONSES
+                                    .equals(selection)),
+                    new ListBoxModel.Option("requests and responses",
+                            TransferCompression.MODE_BOTH,
+                            TransferCompression.MODE_BOTH.equals(selection)));
+        }
+
+        @SuppressWarnings("unused")
+        public ListBoxModel doFillPullModeItems(
+                @QueryParameter String selection) {
+            return new ListBoxModel(
+                    new ListBoxModel.Option("document",
+                            ZanataSyncService.PULL_MODE_DOCUMENT,
+                            ZanataSyncService.PULL_MODE_DOCUMENT
+                                    .equals(selection)),
+                    new ListBoxModel.Option("incremental",
+                            ZanataSyncService.PULL_MODE_INCREMENTAL,
+                            ZanataSyncService.PULL_MODE_INCREMENTAL
+                                    .equals(selection)));
+        }
+
         @SuppressWarnings("unused")
         public FormValidation doCheckZanataCredentialsId(@AncestorInPath AbstractProject context,
                 @QueryParameter String url,
@@ -401,9 +1206,7 @@ public class ZanataBuilder extends Builder implements SimpleBuildStep {
         public boolean configure(StaplerRequest req, JSONObject formData) throws FormException {
             // To persist global configuration information,
             // set that to properties and call save().
-//            useFrench = formData.getBoolean("useFrench");
-            // ^Can also use req.bindJSON(this, formData);
-            //  (easier when there are many fields; need set* methods for this, like setUseFrench)
+            req.bindJSON(this, formData);
             save();
             return super.configure(req,formData);
         }
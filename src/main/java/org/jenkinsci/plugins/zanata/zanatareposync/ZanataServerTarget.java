@@ -0,0 +1,106 @@
+/*
+ * Copyright 2017, Red Hat, Inc. and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jenkinsci.plugins.zanata.zanatareposync;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+
+import org.kohsuke.stapler.AncestorInPath;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.QueryParameter;
+import com.cloudbees.plugins.credentials.common.StandardUsernameCredentials;
+import com.cloudbees.plugins.credentials.common.StandardUsernameListBoxModel;
+import com.cloudbees.plugins.credentials.domains.URIRequirementBuilder;
+import com.google.common.base.Strings;
+
+import hudson.Extension;
+import hudson.model.AbstractDescribableImpl;
+import hudson.model.Descriptor;
+import hudson.model.Item;
+import hudson.model.Job;
+import hudson.model.Queue;
+import hudson.model.queue.Tasks;
+import hudson.util.FormValidation;
+import hudson.util.ListBoxModel;
+
+/**
+ * An additional Zanata server that source (and/or translation) is pushed to
+ * together with the main one, e.g. a staging instance mirroring production.
+ * Translations are only pulled from the main server.
+ */
+public class ZanataServerTarget
+        extends AbstractDescribableImpl<ZanataServerTarget> {
+    private final String zanataURL;
+    private final String zanataCredentialsId;
+
+    @DataBoundConstructor
+    public ZanataServerTarget(String zanataURL, String zanataCredentialsId) {
+        this.zanataURL = zanataURL;
+        this.zanataCredentialsId = zanataCredentialsId;
+    }
+
+    public String getZanataURL() {
+        return zanataURL;
+    }
+
+    public String getZanataCredentialsId() {
+        return zanataCredentialsId;
+    }
+
+    @Extension
+    public static class DescriptorImpl extends Descriptor<ZanataServerTarget> {
+
+        @SuppressWarnings("unused")
+        public ListBoxModel doFillZanataCredentialsIdItems(
+                @AncestorInPath Job context,
+                @QueryParameter String zanataURL,
+                @QueryParameter String zanataCredentialsId) {
+            if (context == null || !context.hasPermission(Item.CONFIGURE)) {
+                return new StandardUsernameListBoxModel()
+                        .includeCurrentValue(zanataCredentialsId);
+            }
+            return new StandardUsernameListBoxModel()
+                    .includeEmptyValue()
+                    .includeAs(Tasks.getAuthenticationOf((Queue.Task) context),
+                            context, StandardUsernameCredentials.class,
+                            URIRequirementBuilder.fromUri(zanataURL).build())
+                    .includeCurrentValue(zanataCredentialsId);
+        }
+
+        @SuppressWarnings("unused")
+        public FormValidation doCheckZanataURL(@QueryParameter String value) {
+            if (Strings.isNullOrEmpty(value) || value.trim().isEmpty()) {
+                return FormValidation.error("Zanata server URL is required");
+            }
+            try {
+                new URL(value);
+            } catch (MalformedURLException e) {
+                return FormValidation.error("Not a valid URL");
+            }
+            return FormValidation.ok();
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "Zanata Server";
+        }
+    }
+}
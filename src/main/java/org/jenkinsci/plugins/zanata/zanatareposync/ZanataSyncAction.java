@@ -0,0 +1,135 @@
+/*
+ * Copyright 2017, Red Hat, Inc. and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jenkinsci.plugins.zanata.zanatareposync;
+
+import java.util.List;
+import java.util.Map;
+
+import org.jenkinsci.plugins.zanata.cli.SyncResult;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+import com.google.common.base.Strings;
+
+import hudson.EnvVars;
+import hudson.model.AbstractBuild;
+import hudson.model.EnvironmentContributingAction;
+
+/**
+ * Attaches the {@link SyncResult} of a Zanata sync step to the build. It is
+ * visible in the remote API (e.g. {@code <build>/api/json}) and, for freestyle
+ * jobs, contributes environment variables to later build steps.
+ * <p>
+ * Pipelines can read the same result from
+ * {@code .zanata-cache/sync-result.json} in the workspace.
+ */
+@ExportedBean
+public class ZanataSyncAction implements EnvironmentContributingAction {
+    public static final String RESULT_FILE = "sync-result.json";
+
+    private final SyncResult result;
+
+    public ZanataSyncAction(SyncResult result) {
+        this.result = result;
+    }
+
+    public SyncResult getResult() {
+        return result;
+    }
+
+    @Exported
+    public boolean isChanged() {
+        return result.isChanged();
+    }
+
+    @Exported
+    public int getPushedVersions() {
+        return result.getPushedVersions();
+    }
+
+    @Exported
+    public int getPulledFiles() {
+        return result.getPulledFiles();
+    }
+
+    @Exported
+    public int getPushedDocuments() {
+        return result.getPushedDocuments();
+    }
+
+    @Exported
+    public int getPulledDocuments() {
+        return result.getPulledDocuments();
+    }
+
+    @Exported
+    public List<String> getChangedFiles() {
+        return result.getChangedFiles();
+    }
+
+    @Exported
+    public String getCommitId() {
+        return result.getCommitId();
+    }
+
+    @Exported
+    public Map<String, Long> getDurations() {
+        return result.getDurations();
+    }
+
+    /**
+     * @return push outcome of each Zanata server when additional servers are
+     * configured
+     */
+    @Exported
+    public List<SyncResult.TargetResult> getTargets() {
+        return result.getTargets();
+    }
+
+    @Override
+    public void buildEnvVars(AbstractBuild<?, ?> build, EnvVars env) {
+        env.put("ZANATA_SYNC_CHANGED", String.valueOf(result.isChanged()));
+        env.put("ZANATA_SYNC_PUSHED_VERSIONS",
+                String.valueOf(result.getPushedVersions()));
+        env.put("ZANATA_SYNC_PULLED_FILES",
+                String.valueOf(result.getPulledFiles()));
+        env.put("ZANATA_SYNC_PUSHED_DOCUMENTS",
+                String.valueOf(result.getPushedDocuments()));
+        env.put("ZANATA_SYNC_PULLED_DOCUMENTS",
+                String.valueOf(result.getPulledDocuments()));
+        env.put("ZANATA_SYNC_COMMIT",
+                Strings.nullToEmpty(result.getCommitId()));
+    }
+
+    @Override
+    public String getIconFileName() {
+        return null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "Zanata Sync Result";
+    }
+
+    @Override
+    public String getUrlName() {
+        return null;
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2017, Red Hat, Inc. and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jenkinsci.plugins.zanata.zanatareposync;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.kohsuke.stapler.AncestorInPath;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.QueryParameter;
+import com.cloudbees.plugins.credentials.common.StandardCredentials;
+import com.cloudbees.plugins.credentials.common.StandardListBoxModel;
+import com.cloudbees.plugins.credentials.domains.URIRequirementBuilder;
+import com.google.common.base.Strings;
+import com.google.common.hash.Hashing;
+
+import hudson.Extension;
+import hudson.model.AbstractDescribableImpl;
+import hudson.model.Descriptor;
+import hudson.model.Item;
+import hudson.model.Job;
+import hudson.model.Queue;
+import hudson.model.queue.Tasks;
+import hudson.util.FormValidation;
+import hudson.util.ListBoxModel;
+
+/**
+ * A git repository synced by a job that syncs many repositories (see
+ * {@link SyncFarm}).
+ */
+public class ZanataSyncRepository
+        extends AbstractDescribableImpl<ZanataSyncRepository> {
+    static final String DEFAULT_BRANCH = "master";
+
+    private final String url;
+    private final String branch;
+    private final String credentialsId;
+
+    @DataBoundConstructor
+    public ZanataSyncRepository(String url, String branch,
+            String credentialsId) {
+        this.url = url;
+        this.branch = Strings.isNullOrEmpty(branch) ? DEFAULT_BRANCH : branch;
+        this.credentialsId = Strings.emptyToNull(credentialsId);
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getBranch() {
+        return branch;
+    }
+
+    /**
+     * @return git credential, or null for repositories that need none
+     */
+    public String getCredentialsId() {
+        return credentialsId;
+    }
+
+    /**
+     * @return name of the repository and branch, safe to use as a directory
+     * name. It ends with a short hash of the URL so that repositories with
+     * the same last path segment (e.g. two forks) don't share a directory.
+     */
+    public String getName() {
+        String path = url.replaceAll("/+$", "").replaceAll("\\.git$", "");
+        String name = path.substring(Math.max(path.lastIndexOf('/'),
+                path.lastIndexOf(':')) + 1);
+        String hash = Hashing.sha256()
+                .hashBytes(path.getBytes(StandardCharsets.UTF_8)).toString()
+                .substring(0, 8);
+        return (name + "_" + branch + "_" + hash)
+                .replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+
+    /**
+     * @throws IllegalArgumentException
+     *         if a repository and branch is listed more than once, since
+     *         they would be synced into the same directory
+     */
+    static void checkUnique(List<ZanataSyncRepository> repositories) {
+        Set<String> names = new HashSet<>();
+        for (ZanataSyncRepository repository : repositories) {
+            if (!names.add(repository.getName())) {
+                throw new IllegalArgumentException("Repository " + repository +
+                        " is listed more than once");
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return url + " " + branch;
+    }
+
+    @Extension
+    public static class DescriptorImpl
+            extends Descriptor<ZanataSyncRepository> {
+
+        @SuppressWarnings("unused")
+        public ListBoxModel doFillCredentialsIdItems(
+                @AncestorInPath Job context, @QueryParameter String url,
+                @QueryParameter String credentialsId) {
+            if (context == null || !context.hasPermission(Item.CONFIGURE)) {
+                return new StandardListBoxModel()
+                        .includeCurrentValue(credentialsId);
+            }
+            return new StandardListBoxModel()
+                    .includeEmptyValue()
+                    .includeAs(Tasks.getAuthenticationOf((Queue.Task) context),
+                            context, StandardCredentials.class,
+                            URIRequirementBuilder.fromUri(url).build())
+                    .includeCurrentValue(credentialsId);
+        }
+
+        @SuppressWarnings("unused")
+        public FormValidation doCheckUrl(@QueryParameter String value) {
+            if (Strings.isNullOrEmpty(value) || value.trim().isEmpty()) {
+                return FormValidation.error("Repository URL is required");
+            }
+            return FormValidation.ok();
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "Git Repository";
+        }
+    }
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright 2017, Red Hat, Inc. and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jenkinsci.plugins.zanata.zanatareposync;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.ToLongFunction;
+import javax.annotation.Nonnull;
+
+import org.apache.commons.lang.math.NumberUtils;
+
+import hudson.Extension;
+import hudson.model.Action;
+import hudson.model.Job;
+import jenkins.model.TransientActionFactory;
+
+/**
+ * Job page showing how sync performance develops over the last builds:
+ * percentiles of each number and the builds that took much longer than the
+ * ones before them.
+ */
+public class ZanataSyncTrendAction implements Action {
+    static final int DEFAULT_BUILDS = 50;
+    private static final int MAX_BUILDS = 5000;
+    // a build is compared with the median of this many builds before it
+    private static final int BASELINE_BUILDS = 20;
+    private static final int MIN_BASELINE_BUILDS = 5;
+    private static final double REGRESSION_FACTOR = 1.5;
+    // ignore slowdowns too small to matter
+    private static final long REGRESSION_MIN_MILLIS = 10_000;
+
+    private final Job<?, ?> job;
+
+    public ZanataSyncTrendAction(Job<?, ?> job) {
+        this.job = job;
+    }
+
+    public Job<?, ?> getJob() {
+        return job;
+    }
+
+    @Override
+    public String getIconFileName() {
+        return "graph.png";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "Zanata Sync Trend";
+    }
+
+    @Override
+    public String getUrlName() {
+        return "zanata-sync-trend";
+    }
+
+    /**
+     * @param builds
+     *         number of builds to show, from the request
+     */
+    public Trend loadTrend(String builds) throws IOException {
+        int limit = Math.min(MAX_BUILDS,
+                Math.max(1, NumberUtils.toInt(builds, DEFAULT_BUILDS)));
+        return new Trend(SyncPerformanceHistory.load(job, limit));
+    }
+
+    static long percentile(Collection<Long> values, double percentile) {
+        List<Long> sorted = new ArrayList<>(values);
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        Collections.sort(sorted);
+        int rank = (int) Math.ceil(percentile / 100 * sorted.size());
+        return sorted.get(Math.max(0, rank - 1));
+    }
+
+    /**
+     * Records of the shown builds with their statistics.
+     */
+    public static class Trend {
+        private final List<Row> rows = new ArrayList<>();
+        private final List<Metric> metrics = new ArrayList<>();
+
+        Trend(List<SyncPerformanceRecord> records) {
+            for (int i = 0; i < records.size(); i++) {
+                List<Long> baseline = new ArrayList<>();
+                for (int j = Math.max(0, i - BASELINE_BUILDS); j < i; j++) {
+                    baseline.add(records.get(j).getTotalMillis());
+                }
+                rows.add(new Row(records.get(i), isRegression(
+                        records.get(i).getTotalMillis(), baseline)));
+            }
+            // newest first
+            Collections.reverse(rows);
+            metrics.add(new Metric("Total ms", records,
+                    SyncPerformanceRecord::getTotalMillis));
+            metrics.add(new Metric("Push ms", records,
+                    SyncPerformanceRecord::getPushMillis));
+            metrics.add(new Metric("Pull ms", records,
+                    SyncPerformanceRecord::getPullMillis));
+            metrics.add(new Metric("Commit ms", records,
+                    SyncPerformanceRecord::getCommitMillis));
+            metrics.add(new Metric("Documents", records,
+                    SyncPerformanceRecord::getDocuments));
+            metrics.add(new Metric("Locales", records,
+                    SyncPerformanceRecord::getLocales));
+            metrics.add(new Metric("Bytes sent", records,
+                    SyncPerformanceRecord::getBytesSent));
+            metrics.add(new Metric("Bytes received", records,
+                    SyncPerformanceRecord::getBytesReceived));
+        }
+
+        private static boolean isRegression(long total, List<Long> baseline) {
+            if (baseline.size() < MIN_BASELINE_BUILDS) {
+                return false;
+            }
+            long median = percentile(baseline, 50);
+            return total > median * REGRESSION_FACTOR &&
+                    total - median > REGRESSION_MIN_MILLIS;
+        }
+
+        public List<Row> getRows() {
+            return rows;
+        }
+
+        public List<Metric> getMetrics() {
+            return metrics;
+        }
+    }
+
+    public static class Row {
+        private final SyncPerformanceRecord record;
+        private final boolean regression;
+
+        Row(SyncPerformanceRecord record, boolean regression) {
+            this.record = record;
+            this.regression = regression;
+        }
+
+        public SyncPerformanceRecord getRecord() {
+            return record;
+        }
+
+        /**
+         * @return true if the build took much longer than the builds before
+         * it
+         */
+        public boolean isRegression() {
+            return regression;
+        }
+    }
+
+    /**
+     * Percentiles of one number over the shown builds. Phases that did not
+     * run are left out.
+     */
+    public static class Metric {
+        private final String name;
+        private final long p50;
+        private final long p90;
+        private final long max;
+
+        Metric(String name, List<SyncPerformanceRecord> records,
+                ToLongFunction<SyncPerformanceRecord> value) {
+            List<Long> values = new ArrayList<>();
+            for (SyncPerformanceRecord record : records) {
+                long v = value.applyAsLong(record);
+                if (v >= 0) {
+                    values.add(v);
+                }
+            }
+            this.name = name;
+            this.p50 = percentile(values, 50);
+            this.p90 = percentile(values, 90);
+            this.max = percentile(values, 100);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getP50() {
+            return p50;
+        }
+
+        public long getP90() {
+            return p90;
+        }
+
+        public long getMax() {
+            return max;
+        }
+    }
+
+    /**
+     * Adds the trend to jobs that have run a sync.
+     */
+    @Extension
+    public static class Factory extends TransientActionFactory<Job> {
+        @Override
+        public Class<Job> type() {
+            return Job.class;
+        }
+
+        @Nonnull
+        @Override
+        public Collection<? extends Action> createFor(@Nonnull Job target) {
+            if (!SyncPerformanceHistory.exists(target)) {
+                return Collections.emptyList();
+            }
+            return Collections.singletonList(
+                    new ZanataSyncTrendAction(target));
+        }
+    }
+}
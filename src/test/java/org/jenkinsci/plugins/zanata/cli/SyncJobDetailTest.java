@@ -0,0 +1,38 @@
+package org.jenkinsci.plugins.zanata.cli;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+
+import org.junit.Test;
+
+public class SyncJobDetailTest {
+
+    @Test
+    public void howTheSyncRunsIsNotASyncInput() {
+        SyncJobDetail detail = builder().setWorkerIdleMinutes(5)
+                .setTransferCompression("both").setCompressionMinBytes(1024)
+                .setReadReplicas("https://replica.example.com/").build();
+
+        assertThat(detail.describeSyncInputs(),
+                equalTo(builder().build().describeSyncInputs()));
+    }
+
+    @Test
+    public void whatIsSyncedIsASyncInput() {
+        assertThat(builder().setLocaleId("fr").build().describeSyncInputs(),
+                not(equalTo(builder().build().describeSyncInputs())));
+        assertThat(builder().setSrcRepoBranch("stable").build()
+                .describeSyncInputs(),
+                not(equalTo(builder().build().describeSyncInputs())));
+    }
+
+    private static SyncJobDetail.Builder builder() {
+        return SyncJobDetail.Builder.builder()
+                .setSrcRepoUrl("https://github.com/example/app.git")
+                .setSrcRepoBranch("master")
+                .setZanataUrl("https://zanata.example.com/")
+                .setZanataUsername("admin")
+                .setSyncToZanataOption("source");
+    }
+}
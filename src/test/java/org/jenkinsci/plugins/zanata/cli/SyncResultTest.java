@@ -0,0 +1,121 @@
+package org.jenkinsci.plugins.zanata.cli;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+
+import java.util.Collections;
+
+import org.junit.Test;
+
+import net.sf.json.JSONObject;
+
+public class SyncResultTest {
+    @Test
+    public void pushAloneIsNotAChange() {
+        SyncResult result = new SyncResult();
+        result.setPushedVersions(2);
+        result.addPushedDocuments(5);
+
+        assertThat(result.isChanged(), equalTo(false));
+    }
+
+    @Test
+    public void pulledFilesAreAChange() {
+        SyncResult result = new SyncResult();
+        result.addPulledDocuments(3);
+        assertThat(result.isChanged(), equalTo(false));
+
+        result.setPulledFiles(1);
+
+        assertThat(result.isChanged(), equalTo(true));
+    }
+
+    @Test
+    public void commitIsAChange() {
+        SyncResult result = new SyncResult();
+        result.setCommitId("abc123");
+
+        assertThat(result.isChanged(), equalTo(true));
+    }
+
+    @Test
+    public void jsonHasCountsAndEmptyCommitIdWhenNothingCommitted() {
+        SyncResult result = new SyncResult();
+        result.setPushedVersions(1);
+        result.addPushedDocuments(4);
+        result.addPulledDocuments(6);
+        result.recordDuration(SyncResult.PHASE_PUSH, 1500);
+
+        JSONObject json = JSONObject.fromObject(result.toJson());
+
+        assertThat(json.getBoolean("changed"), equalTo(false));
+        assertThat(json.getInt("pushedVersions"), equalTo(1));
+        assertThat(json.getInt("pushedDocuments"), equalTo(4));
+        assertThat(json.getInt("pulledDocuments"), equalTo(6));
+        assertThat(json.getInt("pulledFiles"), equalTo(0));
+        assertThat(json.getString("commitId"), equalTo(""));
+        assertThat(json.getJSONArray("changedFiles").isEmpty(), equalTo(true));
+        assertThat(json.getJSONObject("durations").getLong("push"),
+                equalTo(1500L));
+    }
+
+    @Test
+    public void jsonHasChangedFilesAndCommit() {
+        SyncResult result = new SyncResult();
+        result.setPulledFiles(1);
+        result.addChangedFiles(Collections.singletonList("po/fr.po"));
+        result.setCommitId("abc123");
+
+        JSONObject json = JSONObject.fromObject(result.toJson());
+
+        assertThat(json.getBoolean("changed"), equalTo(true));
+        assertThat(json.getJSONArray("changedFiles").getString(0),
+                equalTo("po/fr.po"));
+        assertThat(json.getString("commitId"), equalTo("abc123"));
+    }
+
+    @Test
+    public void mergedRepositoryResultsAddUp() {
+        SyncResult repo = new SyncResult();
+        repo.addPushedDocuments(2);
+        repo.addPulledDocuments(3);
+        repo.setPulledFiles(1);
+        repo.addChangedFiles(Collections.singletonList("po/fr.po"));
+        repo.setCommitId("abc123");
+        SyncResult total = new SyncResult();
+        total.addPulledDocuments(1);
+
+        total.merge("app_master_0123abcd", repo);
+
+        assertThat(total.getPushedDocuments(), equalTo(2));
+        assertThat(total.getPulledDocuments(), equalTo(4));
+        assertThat(total.getDocuments(), equalTo(6));
+        assertThat(total.getChangedFiles(),
+                contains("app_master_0123abcd/po/fr.po"));
+        assertThat(total.isChanged(), equalTo(true));
+        // the commit belongs to the repository
+        assertThat(total.getCommitId(), equalTo(null));
+    }
+
+    @Test
+    public void failedAdditionalServerIsReportedWithItsError() {
+        SyncResult result = new SyncResult();
+        result.addTarget(new SyncResult.TargetResult(
+                "https://zanata.example.com/", 2, null, 1200));
+        assertThat(result.hasFailedTarget(), equalTo(false));
+
+        result.addTarget(new SyncResult.TargetResult(
+                "https://staging.example.com/", 0, "401 Unauthorized", 300));
+
+        assertThat(result.hasFailedTarget(), equalTo(true));
+        JSONObject json = JSONObject.fromObject(result.toJson());
+        JSONObject failed = json.getJSONArray("targets").getJSONObject(1);
+        assertThat(failed.getString("server"),
+                equalTo("https://staging.example.com/"));
+        assertThat(failed.getBoolean("success"), equalTo(false));
+        assertThat(failed.getString("error"), equalTo("401 Unauthorized"));
+        assertThat(json.getJSONArray("targets").getJSONObject(0)
+                .has("error"), equalTo(false));
+    }
+}
@@ -0,0 +1,56 @@
+package org.jenkinsci.plugins.zanata.cli.service.impl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+import java.nio.file.Path;
+
+import org.jenkinsci.plugins.zanata.cli.util.SyncStateStore;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class IncrementalPullServiceImplTest {
+    private static final String SERVER = "https://zanata.example.com/";
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void serverIsAssumedToSendEntityTags() {
+        assertThat(IncrementalPullServiceImpl.sendsEntityTags(store(), SERVER,
+                1000L), equalTo(true));
+    }
+
+    @Test
+    public void missingEntityTagIsRememberedAcrossRuns() {
+        SyncStateStore store = store();
+        IncrementalPullServiceImpl.markNoEntityTags(store, SERVER, 1000L);
+        store.save();
+
+        SyncStateStore nextRun = store();
+
+        assertThat(IncrementalPullServiceImpl.sendsEntityTags(nextRun, SERVER,
+                2000L), equalTo(false));
+        assertThat(IncrementalPullServiceImpl.sendsEntityTags(nextRun,
+                "https://other.example.com/", 2000L), equalTo(true));
+    }
+
+    @Test
+    public void serverIsAskedAgainAfterRecheckInterval() {
+        SyncStateStore store = store();
+        IncrementalPullServiceImpl.markNoEntityTags(store, SERVER, 1000L);
+        long later = 1000L + IncrementalPullServiceImpl.RECHECK_MILLIS;
+
+        assertThat(IncrementalPullServiceImpl.sendsEntityTags(store, SERVER,
+                later), equalTo(true));
+        assertThat(store.get(SyncStateStore.key("no-etag", SERVER)),
+                equalTo(null));
+    }
+
+    private SyncStateStore store() {
+        Path repoBase = temp.getRoot().toPath();
+        return SyncStateStore.load(repoBase,
+                IncrementalPullServiceImpl.STORE_NAME);
+    }
+}
@@ -0,0 +1,53 @@
+package org.jenkinsci.plugins.zanata.cli.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class AsyncProcessMonitorTest {
+    private final AsyncProcessMonitor monitor = AsyncProcessMonitor.get();
+
+    @Test
+    public void finishedProcessIsNotPolled() throws InterruptedException {
+        int status = monitor.await("http://finished.example.com|push", 100,
+                previous -> {
+                    throw new AssertionError("polled");
+                }, done -> done >= 100);
+
+        assertThat(status, equalTo(100));
+    }
+
+    @Test
+    public void eachPollIsGivenThePreviousStatus()
+            throws InterruptedException {
+        List<Integer> seen = new ArrayList<>();
+
+        int status = monitor.await("http://polled.example.com|push", 0,
+                previous -> {
+                    seen.add(previous);
+                    return previous + 50;
+                }, done -> done >= 100);
+
+        assertThat(status, equalTo(100));
+        assertThat(seen.toString(), equalTo("[0, 50]"));
+    }
+
+    @Test
+    public void pollsBackOff() throws InterruptedException {
+        List<Long> polledAt = new ArrayList<>();
+        polledAt.add(System.nanoTime());
+
+        monitor.await("http://slow.example.com|push", 0, previous -> {
+            polledAt.add(System.nanoTime());
+            return previous + 1;
+        }, done -> done >= 4);
+
+        long firstGap = polledAt.get(1) - polledAt.get(0);
+        long lastGap = polledAt.get(4) - polledAt.get(3);
+        assertThat(lastGap > firstGap, equalTo(true));
+    }
+}
@@ -0,0 +1,123 @@
+package org.jenkinsci.plugins.zanata.cli.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.jenkinsci.plugins.zanata.exception.SyncCancelledException;
+import org.jenkinsci.plugins.zanata.exception.ZanataSyncException;
+import org.junit.Test;
+
+public class CancellableSyncTest {
+    @Test
+    public void resultOfThePhaseIsReturned() throws Exception {
+        assertThat(CancellableSync.run("push", () -> "done"),
+                equalTo("done"));
+    }
+
+    @Test
+    public void failureOfThePhaseIsRethrownAsIs() throws Exception {
+        IOException failure = new IOException("disk full");
+        try {
+            CancellableSync.run("pull", () -> {
+                throw failure;
+            });
+            throw new AssertionError("expected IOException");
+        } catch (IOException e) {
+            assertThat(e, sameInstance(failure));
+        }
+    }
+
+    @Test
+    public void cancellationWrappedByZanataClientIsAnInterrupt()
+            throws Exception {
+        try {
+            CancellableSync.run("push", () -> {
+                throw new RuntimeException(new SyncCancelledException());
+            });
+            throw new AssertionError("expected InterruptedException");
+        } catch (InterruptedException e) {
+            assertThat(e.getMessage(), equalTo("sync cancelled"));
+        }
+    }
+
+    @Test
+    public void scopedObjectIsSharedByThreadsOfThePhase() throws Exception {
+        CancellableSync.run("push", () -> {
+            Object mine = CancellableSync.scoped("key", Object::new);
+            AtomicReference<Object> other = new AtomicReference<>();
+            Thread thread = new Thread(() -> other.set(
+                    CancellableSync.scoped("key", Object::new)));
+            thread.start();
+            thread.join();
+            assertThat(other.get(), sameInstance(mine));
+            return null;
+        });
+    }
+
+    @Test
+    public void outsideAPhaseNothingIsShared() {
+        assertThat(CancellableSync.inSync(), equalTo(false));
+        Object first = CancellableSync.scoped("key", Object::new);
+        assertThat(CancellableSync.scoped("key", Object::new) == first,
+                equalTo(false));
+        // ignored rather than run
+        CancellableSync.whenDone(cancelled -> {
+            throw new AssertionError("not in a sync phase");
+        });
+    }
+
+    @Test
+    public void doneActionsAreToldWhetherThePhaseCompleted()
+            throws Exception {
+        List<Boolean> done = new ArrayList<>();
+
+        CancellableSync.run("push", () -> {
+            assertThat(CancellableSync.inSync(), equalTo(true));
+            CancellableSync.whenDone(done::add);
+            return null;
+        });
+
+        assertThat(done, equalTo(Collections.singletonList(false)));
+    }
+
+    @Test
+    public void abortStopsThePhaseAndMarksItCancelled() throws Exception {
+        List<Boolean> done = new CopyOnWriteArrayList<>();
+        List<Throwable> thrown = new CopyOnWriteArrayList<>();
+        CountDownLatch started = new CountDownLatch(1);
+        Thread build = new Thread(() -> {
+            try {
+                CancellableSync.run("push", () -> {
+                    CancellableSync.whenDone(done::add);
+                    started.countDown();
+                    while (true) {
+                        CancellableSync.checkCancelled();
+                        Thread.sleep(10);
+                    }
+                });
+            } catch (InterruptedException | IOException |
+                    ZanataSyncException e) {
+                thrown.add(e);
+            }
+        });
+        build.start();
+        started.await();
+
+        build.interrupt();
+        build.join();
+
+        assertThat(thrown.size(), equalTo(1));
+        assertThat(thrown.get(0) instanceof InterruptedException,
+                equalTo(true));
+        assertThat(done, equalTo(Collections.singletonList(true)));
+    }
+}
@@ -0,0 +1,166 @@
+package org.jenkinsci.plugins.zanata.cli.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ChangedFileWriterTest {
+    private static final FileTime LAST_YEAR =
+            FileTime.fromMillis(System.currentTimeMillis() - 365L * 86400000);
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void newFileIsWrittenWithParentDirectories() throws IOException {
+        Path target = temp.getRoot().toPath().resolve("fr/messages.po");
+
+        assertThat(ChangedFileWriter.write(content("bonjour"), target),
+                equalTo(true));
+        assertThat(read(target), equalTo("bonjour"));
+        assertThat(fileNames(target.getParent()), contains("messages.po"));
+    }
+
+    @Test
+    public void sameContentLeavesFileAlone() throws IOException {
+        Path target = write("messages.po", "bonjour");
+        Files.setLastModifiedTime(target, LAST_YEAR);
+
+        assertThat(ChangedFileWriter.write(content("bonjour"), target),
+                equalTo(false));
+        assertThat(Files.getLastModifiedTime(target), equalTo(LAST_YEAR));
+        assertThat(fileNames(target.getParent()), contains("messages.po"));
+    }
+
+    @Test
+    public void changedContentReplacesFileWithoutLeavingTempFile()
+            throws IOException {
+        Path target = write("messages.po", "bonjour");
+
+        assertThat(ChangedFileWriter.write(content("salut"), target),
+                equalTo(true));
+        assertThat(read(target), equalTo("salut"));
+        assertThat(fileNames(target.getParent()), contains("messages.po"));
+    }
+
+    @Test
+    public void volatileChangeIsOnlySkippedWhenNormalizing()
+            throws IOException {
+        Path target = write("messages.po", po("2017-01-01 10:00+1000"));
+
+        assertThat(ChangedFileWriter.write(
+                content(po("2017-02-02 11:00+1000")), target, true),
+                equalTo(false));
+        assertThat(read(target), equalTo(po("2017-01-01 10:00+1000")));
+        assertThat(ChangedFileWriter.write(
+                content(po("2017-02-02 11:00+1000")), target, false),
+                equalTo(true));
+        assertThat(read(target), equalTo(po("2017-02-02 11:00+1000")));
+    }
+
+    @Test
+    public void syncDirCountsOnlyChangedFiles() throws IOException {
+        Path staging = temp.newFolder(".zanata-pull-1").toPath();
+        Path target = temp.newFolder("repo").toPath();
+        Files.createDirectories(staging.resolve("fr"));
+        Files.createDirectories(target.resolve("fr"));
+        Files.write(staging.resolve("fr/same.po"), bytes("bonjour"));
+        Files.write(target.resolve("fr/same.po"), bytes("bonjour"));
+        Files.write(staging.resolve("fr/changed.po"), bytes("salut"));
+        Files.write(target.resolve("fr/changed.po"), bytes("bonjour"));
+        Files.write(staging.resolve("fr/new.po"), bytes("merci"));
+
+        assertThat(ChangedFileWriter.syncDir(staging, target, false),
+                equalTo(2));
+        assertThat(read(target.resolve("fr/changed.po")), equalTo("salut"));
+        assertThat(read(target.resolve("fr/new.po")), equalTo("merci"));
+    }
+
+    @Test
+    public void syncDirRecordsUnchangedFilesAsOutputsToo() throws IOException {
+        Path staging = temp.newFolder(".zanata-pull-1").toPath();
+        Path target = temp.newFolder("repo").toPath();
+        Files.write(staging.resolve("same.po"), bytes("bonjour"));
+        Files.write(target.resolve("same.po"), bytes("bonjour"));
+        Files.write(staging.resolve("new.po"), bytes("merci"));
+        Set<Path> outputs = new TreeSet<>();
+
+        int changed = ChangedFileWriter.collectOutputs(outputs,
+                () -> syncDir(staging, target));
+
+        assertThat(changed, equalTo(1));
+        assertThat(outputs, contains(target.resolve("new.po").toAbsolutePath(),
+                target.resolve("same.po").toAbsolutePath()));
+        // nothing is collected outside of collectOutputs
+        ChangedFileWriter.recordOutput(target.resolve("other.po"));
+        assertThat(outputs.size(), equalTo(2));
+    }
+
+    @Test
+    public void leftoversOfAbortedSyncAreTempPaths() {
+        assertThat(ChangedFileWriter.isTempPath(
+                "po/.messages.po123.zanata-tmp"), equalTo(true));
+        assertThat(ChangedFileWriter.isTempPath(
+                ".zanata-pull-42/fr/messages.po"), equalTo(true));
+        assertThat(ChangedFileWriter.isTempPath("po/fr/messages.po"),
+                equalTo(false));
+    }
+
+    private static int syncDir(Path staging, Path target) {
+        try {
+            return ChangedFileWriter.syncDir(staging, target, false);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private ByteArrayInputStream content(String text) {
+        return new ByteArrayInputStream(bytes(text));
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private Path write(String name, String content) throws IOException {
+        Path file = temp.getRoot().toPath().resolve(name);
+        Files.write(file, bytes(content));
+        return file;
+    }
+
+    private static String read(Path file) throws IOException {
+        return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+    }
+
+    private static List<String> fileNames(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(file -> file.getFileName().toString())
+                    .sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static String po(String revisionDate) {
+        return "msgid \"\"\n" +
+                "msgstr \"\"\n" +
+                "\"PO-Revision-Date: " + revisionDate + "\\n\"\n" +
+                "\n" +
+                "msgid \"hello\"\n" +
+                "msgstr \"bonjour\"\n";
+    }
+}
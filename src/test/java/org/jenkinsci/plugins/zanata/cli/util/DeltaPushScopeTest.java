@@ -0,0 +1,83 @@
+package org.jenkinsci.plugins.zanata.cli.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.zanata.client.commands.push.PushOptionsImpl;
+import org.zanata.client.config.LocaleList;
+import org.zanata.client.config.LocaleMapping;
+
+public class DeltaPushScopeTest {
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void sourceChangesAreRelativeToSrcDir() {
+        DeltaPushScope scope = scope("src", "trans",
+                "src/main/messages.properties", "src/other.properties");
+
+        assertThat(scope.getSourceDocs(),
+                contains("main/messages.properties", "other.properties"));
+        assertThat(scope.getTransLocales().isEmpty(), equalTo(true));
+    }
+
+    @Test
+    public void translationChangesAreMatchedByDirectoryOrFileName() {
+        DeltaPushScope scope = scope("src", "trans",
+                "trans/fr/messages.po", "trans/messages_zh_CN.properties",
+                "trans/ja.po");
+
+        // ja is not a locale of the project
+        assertThat(localLocales(scope), contains("fr", "zh-CN"));
+        assertThat(scope.getSourceDocs().isEmpty(), equalTo(true));
+    }
+
+    @Test
+    public void sharedSrcAndTransDirTellsSourceFromTranslation() {
+        DeltaPushScope scope = scope("po", "po",
+                "po/messages.pot", "po/fr.po");
+
+        assertThat(scope.getSourceDocs(), contains("messages.pot"));
+        assertThat(localLocales(scope), contains("fr"));
+    }
+
+    @Test
+    public void changesOutsideSrcAndTransDirAreIgnored() {
+        DeltaPushScope scope = scope("src", "trans",
+                "README.md", "build/fr/messages.po", "srcfoo/a.properties");
+
+        assertThat(scope.isEmpty(), equalTo(true));
+    }
+
+    private DeltaPushScope scope(String srcDir, String transDir,
+            String... changed) {
+        Path repoBase = temp.getRoot().toPath();
+        PushOptionsImpl options = new PushOptionsImpl();
+        options.setSrcDir(new File(repoBase.toFile(), srcDir));
+        options.setTransDir(new File(repoBase.toFile(), transDir));
+        LocaleList locales = new LocaleList();
+        locales.add(new LocaleMapping("fr"));
+        locales.add(new LocaleMapping("zh-CN"));
+        options.setLocaleMapList(locales);
+        return DeltaPushScope.of(options, repoBase,
+                new LinkedHashSet<>(Arrays.asList(changed)));
+    }
+
+    private static List<String> localLocales(DeltaPushScope scope) {
+        Set<LocaleMapping> locales = scope.getTransLocales();
+        return locales.stream().map(LocaleMapping::getLocalLocale)
+                .collect(Collectors.toList());
+    }
+}
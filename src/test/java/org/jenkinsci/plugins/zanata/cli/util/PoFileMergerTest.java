@@ -0,0 +1,138 @@
+package org.jenkinsci.plugins.zanata.cli.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PoFileMergerTest {
+    private static final String BETWEEN = System.lineSeparator();
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void serverOrderIsKeptWithLocalFormatting() throws IOException {
+        String wrapped = "msgid \"hello\"\n" +
+                "msgstr \"\"\n" +
+                "\"bon\"\n" +
+                "\"jour\"\n";
+        Path local = write("local.po", header("2017-01-01") + "\n" +
+                wrapped + "\n" +
+                "msgid \"bye\"\nmsgstr \"au revoir\"\n");
+        Path downloaded = write("downloaded.po", header("2017-01-01") + "\n" +
+                "msgid \"bye\"\nmsgstr \"au revoir\"\n" + "\n" +
+                "msgid \"hello\"\nmsgstr \"bonjour\"\n");
+
+        assertThat(merge(local, downloaded), equalTo(0));
+        assertThat(output(), equalTo(header("2017-01-01") + BETWEEN +
+                "msgid \"bye\"\nmsgstr \"au revoir\"\n" + BETWEEN + wrapped));
+    }
+
+    @Test
+    public void changedTranslationIsTakenFromServer() throws IOException {
+        Path local = write("local.po", header("2017-01-01") + "\n" +
+                "#. comment\nmsgid \"hello\"\nmsgstr \"bonjour\"\n");
+        Path downloaded = write("downloaded.po", header("2017-01-01") + "\n" +
+                "msgid \"hello\"\nmsgstr \"salut\"\n");
+
+        assertThat(merge(local, downloaded), equalTo(1));
+        assertThat(output(), equalTo(header("2017-01-01") + BETWEEN +
+                "msgid \"hello\"\nmsgstr \"salut\"\n"));
+    }
+
+    @Test
+    public void headerIsAlwaysTakenFromServer() throws IOException {
+        Path local = write("local.po", header("2017-01-01") + "\n" +
+                "msgid \"hello\"\nmsgstr \"bonjour\"\n");
+        Path downloaded = write("downloaded.po", header("2017-02-02") + "\n" +
+                "msgid \"hello\"\nmsgstr \"bonjour\"\n");
+
+        assertThat(merge(local, downloaded), equalTo(0));
+        assertThat(output(), equalTo(header("2017-02-02") + BETWEEN +
+                "msgid \"hello\"\nmsgstr \"bonjour\"\n"));
+    }
+
+    @Test
+    public void obsoleteEntriesAreKeptApartFromActiveOnesAndHeader()
+            throws IOException {
+        String obsolete = "# old one\n#~ msgid \"hello\"\n#~ msgstr \"salut\"\n";
+        String active = "msgid \"hello\"\nmsgstr \"\"\n\"bonjour\"\n";
+        Path local = write("local.po", obsolete + "\n" +
+                header("2017-01-01") + "\n" + active);
+        Path downloaded = write("downloaded.po", header("2017-01-01") + "\n" +
+                "msgid \"hello\"\nmsgstr \"bonjour\"\n" + "\n" +
+                "#~ msgid \"hello\"\n#~ msgstr \"salut\"\n");
+
+        assertThat(merge(local, downloaded), equalTo(0));
+        assertThat(output(), equalTo(header("2017-01-01") + BETWEEN +
+                active + BETWEEN + obsolete));
+    }
+
+    @Test
+    public void pluralFormsAreCompared() throws IOException {
+        String plural = "msgid \"file\"\n" +
+                "msgid_plural \"files\"\n" +
+                "msgstr[0] \"fichier\"\n" +
+                "msgstr[1] \"fichiers\"\n";
+        Path local = write("local.po", header("2017-01-01") + "\n" +
+                "#: a.c:1\n" + plural);
+        Path same = write("same.po", header("2017-01-01") + "\n" + plural);
+        Path changed = write("changed.po", header("2017-01-01") + "\n" +
+                plural.replace("\"fichiers\"", "\"des fichiers\""));
+
+        assertThat(merge(local, same), equalTo(0));
+        assertThat(output(), equalTo(header("2017-01-01") + BETWEEN +
+                "#: a.c:1\n" + plural));
+        assertThat(merge(local, changed), equalTo(1));
+    }
+
+    @Test
+    public void entriesOfCrLfFileAreCopiedExactly() throws IOException {
+        Path local = write("local.po", (header("2017-01-01") + "\n" +
+                "msgid \"hello\"\nmsgstr \"bonjour\"\n" + "\n" +
+                "msgid \"bye\"\nmsgstr \"au revoir\"\n")
+                .replace("\n", "\r\n"));
+        Path downloaded = write("downloaded.po", header("2017-01-01") + "\n" +
+                "msgid \"hello\"\nmsgstr \"bonjour\"\n" + "\n" +
+                "msgid \"bye\"\nmsgstr \"salut\"\n");
+
+        assertThat(merge(local, downloaded), equalTo(1));
+        assertThat(output(), equalTo(header("2017-01-01") + BETWEEN +
+                "msgid \"hello\"\r\nmsgstr \"bonjour\"\r\n" + BETWEEN +
+                "msgid \"bye\"\nmsgstr \"salut\"\n"));
+    }
+
+    private int merge(Path local, Path downloaded) throws IOException {
+        return PoFileMerger.merge(local, downloaded, outputPath());
+    }
+
+    private String output() throws IOException {
+        return new String(Files.readAllBytes(outputPath()),
+                StandardCharsets.ISO_8859_1);
+    }
+
+    private Path outputPath() {
+        return temp.getRoot().toPath().resolve("merged.po");
+    }
+
+    private Path write(String name, String content) throws IOException {
+        Path file = temp.getRoot().toPath().resolve(name);
+        Files.write(file, content.getBytes(StandardCharsets.ISO_8859_1));
+        return file;
+    }
+
+    private static String header(String revisionDate) {
+        return "msgid \"\"\n" +
+                "msgstr \"\"\n" +
+                "\"PO-Revision-Date: " + revisionDate + "\\n\"\n" +
+                "\"Language: fr\\n\"\n";
+    }
+}
@@ -0,0 +1,67 @@
+package org.jenkinsci.plugins.zanata.cli.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.zanata.client.config.ZanataConfig;
+
+public class ProjectConfigCacheTest {
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+    private final ProjectConfigCache cache = ProjectConfigCache.get();
+
+    @Test
+    public void sameContentIsParsedOnce() throws Exception {
+        File first = write("a/zanata.xml", config("app", "1.0"));
+        File second = write("b/zanata.xml", config("app", "1.0"));
+
+        ZanataConfig parsed = cache.load(first).get();
+
+        assertThat(parsed.getProject(), equalTo("app"));
+        assertThat(cache.load(second).get(), sameInstance(parsed));
+    }
+
+    @Test
+    public void changedContentIsParsedAgain() throws Exception {
+        File file = write("zanata.xml", config("app", "2.0"));
+        ZanataConfig before = cache.load(file).get();
+
+        write("zanata.xml", config("app", "3.0"));
+        ZanataConfig after = cache.load(file).get();
+
+        assertThat(after, not(sameInstance(before)));
+        assertThat(after.getProjectVersion(), equalTo("3.0"));
+    }
+
+    @Test
+    public void missingFileIsEmpty() throws Exception {
+        assertThat(cache.load(new File(temp.getRoot(), "zanata.xml"))
+                .isPresent(), equalTo(false));
+    }
+
+    private File write(String path, String content) throws IOException {
+        File file = new File(temp.getRoot(), path);
+        Files.createDirectories(file.getParentFile().toPath());
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static String config(String project, String version) {
+        return "<config xmlns=\"http://zanata.org/namespace/config/\">\n" +
+                "  <url>https://zanata.example.com/</url>\n" +
+                "  <project>" + project + "</project>\n" +
+                "  <project-version>" + version + "</project-version>\n" +
+                "  <project-type>gettext</project-type>\n" +
+                "</config>\n";
+    }
+}
@@ -0,0 +1,116 @@
+package org.jenkinsci.plugins.zanata.cli.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.zanata.client.commands.pull.PullOptionsImpl;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+public class ReadReplicaRouterTest {
+    private static final String STATS =
+            "{\"id\":\"1.0\",\"stats\":[{\"locale\":\"fr\",\"translated\":%d}]," +
+                    "\"refs\":[{\"href\":\"%s\"}]}";
+
+    private final List<HttpServer> servers = new ArrayList<>();
+    private PullOptionsImpl options;
+
+    @Before
+    public void setUp() {
+        options = new PullOptionsImpl();
+        options.setUsername("admin");
+        options.setKey("secret");
+    }
+
+    @After
+    public void tearDown() {
+        servers.forEach(server -> server.stop(0));
+    }
+
+    @Test
+    public void replicaInStepWithPrimaryServesPulls() throws IOException {
+        String primary = zanata(200, 10);
+        String replica = zanata(200, 10);
+        ReadReplicaRouter router = new ReadReplicaRouter(primary,
+                Collections.singletonList(replica));
+
+        assertThat(router.metadataUrl(options), equalTo(replica));
+        assertThat(router.pullUrl(options, "app", "1.0"), equalTo(replica));
+    }
+
+    @Test
+    public void replicaBehindPrimaryIsNotPulledFrom() throws IOException {
+        String primary = zanata(200, 11);
+        String replica = zanata(200, 10);
+        ReadReplicaRouter router = new ReadReplicaRouter(primary,
+                Collections.singletonList(replica));
+
+        assertThat(router.metadataUrl(options), equalTo(replica));
+        assertThat(router.pullUrl(options, "app", "1.0"), equalTo(primary));
+    }
+
+    @Test
+    public void unhealthyReplicaIsSkipped() throws IOException {
+        String primary = zanata(200, 10);
+        String down = zanata(503, 10);
+        String healthy = zanata(200, 10);
+        ReadReplicaRouter router = new ReadReplicaRouter(primary,
+                Arrays.asList(down, healthy));
+
+        assertThat(router.metadataUrl(options), equalTo(healthy));
+        assertThat(router.pullUrl(options, "app", "1.0"), equalTo(healthy));
+    }
+
+    @Test
+    public void noHealthyReplicaMeansPrimary() throws IOException {
+        String primary = zanata(200, 10);
+        String down = zanata(503, 10);
+        ReadReplicaRouter router = new ReadReplicaRouter(primary,
+                Collections.singletonList(down));
+
+        assertThat(router.metadataUrl(options), equalTo(primary));
+        assertThat(router.pullUrl(options, "app", "1.0"), equalTo(primary));
+    }
+
+    /**
+     * @return URL of a fake server answering rest/version with the given
+     * status and reporting the given translated count for every version
+     */
+    private String zanata(int versionStatus, int translated)
+            throws IOException {
+        HttpServer server =
+                HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+        server.createContext("/rest/version",
+                exchange -> respond(exchange, versionStatus, "{}"));
+        // the links differ between servers and must not count
+        server.createContext("/rest/stats/", exchange -> respond(exchange,
+                200, String.format(STATS, translated,
+                        url + exchange.getRequestURI().getPath())));
+        server.start();
+        servers.add(server);
+        return url;
+    }
+
+    private static void respond(HttpExchange exchange, int status,
+            String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
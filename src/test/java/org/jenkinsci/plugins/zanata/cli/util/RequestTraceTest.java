@@ -0,0 +1,91 @@
+package org.jenkinsci.plugins.zanata.cli.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.startsWith;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.core.Response;
+
+import org.jboss.resteasy.client.jaxrs.ResteasyClientBuilder;
+import org.junit.Test;
+import com.google.common.io.ByteStreams;
+import com.sun.net.httpserver.HttpServer;
+
+public class RequestTraceTest {
+    @Test
+    public void idsOfSourceDocumentEndpointAreReplaced() {
+        assertThat(RequestTrace.template("PUT",
+                "/rest/projects/p/app/iterations/i/1.0/r/messages"),
+                equalTo("PUT /rest/projects/p/{}/iterations/i/{}/r/{}"));
+    }
+
+    @Test
+    public void docAndLocaleOfTranslationEndpointAreReplaced() {
+        assertThat(RequestTrace.template("GET",
+                "/rest/projects/p/app/iterations/i/1.0/r/po,messages/translations/zh-CN"),
+                equalTo("GET /rest/projects/p/{}/iterations/i/{}/r/{}/translations/{}"));
+    }
+
+    @Test
+    public void contextPathOfServerIsDropped() {
+        assertThat(RequestTrace.template("GET",
+                "/zanata/rest/project/app/version/1.0/locales"),
+                equalTo("GET /rest/project/{}/version/{}/locales"));
+    }
+
+    @Test
+    public void idLookingLikeKeywordIsStillReplaced() {
+        assertThat(RequestTrace.template("GET",
+                "/rest/projects/p/locale/iterations/i/r/r/doc"),
+                equalTo("GET /rest/projects/p/{}/iterations/i/{}/r/{}"));
+    }
+
+    @Test
+    public void pathOutsideRestIsKept() {
+        assertThat(RequestTrace.template("GET", "/version"),
+                equalTo("GET /version"));
+    }
+
+    @Test
+    public void bytesSentAndReceivedAreCounted() throws IOException {
+        HttpServer zanata =
+                HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        zanata.createContext("/rest/", exchange -> {
+            ByteStreams.toByteArray(exchange.getRequestBody());
+            byte[] body = "merci".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        zanata.start();
+        Client client = new ResteasyClientBuilder()
+                .register(RequestTrace.Filter.class).build();
+        RequestTrace trace = new RequestTrace("push");
+        RequestTrace.bind(trace);
+        try {
+            Response response = client
+                    .target("http://127.0.0.1:" +
+                            zanata.getAddress().getPort() +
+                            "/rest/projects/p/app")
+                    .request().put(Entity.text("bonjour"));
+            response.readEntity(String.class);
+            response.close();
+        } finally {
+            RequestTrace.unbind();
+            client.close();
+            zanata.stop(0);
+        }
+
+        assertThat(trace.summary().size(), equalTo(1));
+        assertThat(trace.summary().get(0), startsWith(
+                "PUT /rest/projects/p/{}: 1 requests, status {200=1}, " +
+                        "7 bytes sent, 5 bytes received,"));
+    }
+}
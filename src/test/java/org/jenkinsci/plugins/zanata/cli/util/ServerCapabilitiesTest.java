@@ -0,0 +1,63 @@
+package org.jenkinsci.plugins.zanata.cli.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+import java.util.UUID;
+
+import org.junit.Test;
+
+public class ServerCapabilitiesTest {
+    private static final ServerCapabilities.Feature STATISTICS =
+            ServerCapabilities.Feature.STATISTICS;
+
+    // what is learnt is kept for the JVM so every test uses its own server
+    private final String server =
+            "https://" + UUID.randomUUID() + ".example.com/";
+
+    @Test
+    public void featuresAreAssumedSupported() {
+        assertThat(ServerCapabilities.supports(server, STATISTICS),
+                equalTo(true));
+    }
+
+    @Test
+    public void missingFeatureIsRememberedPerServer() {
+        ServerCapabilities.markUnsupported(server, STATISTICS);
+
+        assertThat(ServerCapabilities.supports(server, STATISTICS),
+                equalTo(false));
+        // with or without trailing slash
+        assertThat(ServerCapabilities.supports(
+                server.substring(0, server.length() - 1), STATISTICS),
+                equalTo(false));
+        assertThat(ServerCapabilities.supports(
+                "https://other-" + UUID.randomUUID() + ".example.com/",
+                STATISTICS), equalTo(true));
+    }
+
+    @Test
+    public void missingFeatureIsForgottenAfterTtl() {
+        long now = System.currentTimeMillis();
+        ServerCapabilities.markUnsupported(server, STATISTICS, now);
+
+        assertThat(ServerCapabilities.supports(server, STATISTICS,
+                now + ServerCapabilities.TTL_MILLIS - 1), equalTo(false));
+        assertThat(ServerCapabilities.supports(server, STATISTICS,
+                now + ServerCapabilities.TTL_MILLIS), equalTo(true));
+        // and asked again afterwards
+        assertThat(ServerCapabilities.supports(server, STATISTICS, now),
+                equalTo(true));
+    }
+
+    @Test
+    public void markingAgainRestartsTtl() {
+        long now = System.currentTimeMillis();
+        ServerCapabilities.markUnsupported(server, STATISTICS, now);
+        ServerCapabilities.markUnsupported(server, STATISTICS,
+                now + ServerCapabilities.TTL_MILLIS / 2);
+
+        assertThat(ServerCapabilities.supports(server, STATISTICS,
+                now + ServerCapabilities.TTL_MILLIS), equalTo(false));
+    }
+}
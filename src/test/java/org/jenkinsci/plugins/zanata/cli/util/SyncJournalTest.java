@@ -0,0 +1,147 @@
+package org.jenkinsci.plugins.zanata.cli.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SyncJournalTest {
+    private static final String BASE = "1111111";
+    private static final String SYNC_COMMIT = "2222222";
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void unitsDoneBySameInputsAreSkipped() {
+        Path repoBase = temp.getRoot().toPath();
+        SyncJournal.open(repoBase, "abc", BASE)
+                .markDone(SyncJournal.PHASE_PUSH, "project|1.0");
+
+        SyncJournal resumed = SyncJournal.open(repoBase, "abc", BASE);
+
+        assertThat(resumed.isDone(SyncJournal.PHASE_PUSH, "project|1.0"),
+                equalTo(true));
+        assertThat(resumed.isDone(SyncJournal.PHASE_PUSH, "project|2.0"),
+                equalTo(false));
+    }
+
+    @Test
+    public void changedInputsStartOver() {
+        Path repoBase = temp.getRoot().toPath();
+        SyncJournal.open(repoBase, "abc", BASE)
+                .markDone(SyncJournal.PHASE_PUSH, "project|1.0");
+
+        SyncJournal changed = SyncJournal.open(repoBase, "def", BASE);
+
+        assertThat(changed.isDone(SyncJournal.PHASE_PUSH, "project|1.0"),
+                equalTo(false));
+        // the old units are gone even if the old inputs come back
+        assertThat(SyncJournal.open(repoBase, "abc", BASE)
+                .isDone(SyncJournal.PHASE_PUSH, "project|1.0"), equalTo(false));
+    }
+
+    @Test
+    public void otherRevisionStartsOver() {
+        Path repoBase = temp.getRoot().toPath();
+        SyncJournal.open(repoBase, "abc", BASE)
+                .markDone(SyncJournal.PHASE_PUSH, "project|1.0");
+
+        assertThat(SyncJournal.open(repoBase, "abc", "3333333")
+                .isDone(SyncJournal.PHASE_PUSH, "project|1.0"), equalTo(false));
+    }
+
+    @Test
+    public void commitOfTheSyncStillResumes() {
+        Path repoBase = temp.getRoot().toPath();
+        SyncJournal journal = SyncJournal.open(repoBase, "abc", BASE);
+        journal.markDone(SyncJournal.PHASE_PUSH, "project|1.0");
+        journal.markCommitted(SYNC_COMMIT);
+
+        SyncJournal resumed = SyncJournal.open(repoBase, "abc", SYNC_COMMIT);
+
+        assertThat(resumed.isDone(SyncJournal.PHASE_PUSH, "project|1.0"),
+                equalTo(true));
+    }
+
+    @Test
+    public void pulledLocaleIsSkippedWhileItsFilesAreUnchanged()
+            throws IOException {
+        Path repoBase = temp.getRoot().toPath();
+        Path pulled = write(repoBase.resolve("po/fr.po"), "bonjour");
+        SyncJournal.open(repoBase, "abc", BASE).markDone(
+                SyncJournal.PHASE_PULL, "project|1.0|fr",
+                Collections.singleton(pulled));
+
+        assertThat(SyncJournal.open(repoBase, "abc", BASE)
+                .isDone(SyncJournal.PHASE_PULL, "project|1.0|fr"),
+                equalTo(true));
+    }
+
+    @Test
+    public void pulledLocaleIsRedoneIfItsFilesAreGone() throws IOException {
+        Path repoBase = temp.getRoot().toPath();
+        Path pulled = write(repoBase.resolve("po/fr.po"), "bonjour");
+        SyncJournal.open(repoBase, "abc", BASE).markDone(
+                SyncJournal.PHASE_PULL, "project|1.0|fr",
+                Collections.singleton(pulled));
+
+        // e.g. the next checkout reset the workspace
+        write(pulled, "hello");
+        assertThat(SyncJournal.open(repoBase, "abc", BASE)
+                .isDone(SyncJournal.PHASE_PULL, "project|1.0|fr"),
+                equalTo(false));
+        Files.delete(pulled);
+        assertThat(SyncJournal.open(repoBase, "abc", BASE)
+                .isDone(SyncJournal.PHASE_PULL, "project|1.0|fr"),
+                equalTo(false));
+    }
+
+    @Test
+    public void completedRunLeavesNothingToResume() {
+        Path repoBase = temp.getRoot().toPath();
+        SyncJournal journal = SyncJournal.open(repoBase, "abc", BASE);
+        journal.markDone(SyncJournal.PHASE_PUSH, "project|1.0");
+        journal.complete();
+
+        assertThat(SyncJournal.open(repoBase, "abc", BASE)
+                .isDone(SyncJournal.PHASE_PUSH, "project|1.0"), equalTo(false));
+    }
+
+    @Test
+    public void scopedUnitsAreRecordedSeparately() {
+        Path repoBase = temp.getRoot().toPath();
+        SyncJournal journal = SyncJournal.open(repoBase, "abc", BASE);
+        journal.scoped("https://mirror.example.com/")
+                .markDone(SyncJournal.PHASE_PUSH, "project|1.0");
+
+        SyncJournal resumed = SyncJournal.open(repoBase, "abc", BASE);
+
+        assertThat(resumed.isDone(SyncJournal.PHASE_PUSH, "project|1.0"),
+                equalTo(false));
+        assertThat(resumed.scoped("https://mirror.example.com/")
+                .isDone(SyncJournal.PHASE_PUSH, "project|1.0"), equalTo(true));
+    }
+
+    @Test
+    public void disabledJournalNeverSkips() {
+        SyncJournal.DISABLED.markDone(SyncJournal.PHASE_PUSH, "project|1.0");
+
+        assertThat(SyncJournal.DISABLED.isEnabled(), equalTo(false));
+        assertThat(SyncJournal.DISABLED.isDone(SyncJournal.PHASE_PUSH,
+                "project|1.0"), equalTo(false));
+    }
+
+    private static Path write(Path file, String content) throws IOException {
+        Files.createDirectories(file.getParent());
+        return Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,130 @@
+package org.jenkinsci.plugins.zanata.cli.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URL;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.zanata.client.commands.push.PushOptionsImpl;
+import org.zanata.rest.client.RestClientFactory;
+import org.zanata.rest.dto.VersionInfo;
+
+public class SyncWorkerTest {
+    private final SyncWorker worker = SyncWorker.get();
+    private final AtomicInteger created = new AtomicInteger();
+    private PushOptionsImpl options;
+
+    @Before
+    public void setUp() throws MalformedURLException {
+        worker.configure(5);
+        options = new PushOptionsImpl();
+        options.setUrl(new URL("http://zanata.example.com/"));
+        options.setUsername("admin");
+        options.setKey("secret");
+    }
+
+    @After
+    public void tearDown() {
+        // drops whatever is pooled
+        worker.configure(0);
+    }
+
+    @Test
+    public void clientGoesBackToThePoolWhenTheSyncFinishes() throws Exception {
+        RestClientFactory first = CancellableSync.run("push", () -> {
+            RestClientFactory factory = factory();
+            assertThat(worker.getLeasedClients(), equalTo(1));
+            return factory;
+        });
+
+        assertThat(worker.getLeasedClients(), equalTo(0));
+        assertThat(worker.getIdleClients(), equalTo(1));
+        assertThat(CancellableSync.run("pull", this::factory),
+                sameInstance(first));
+        assertThat(created.get(), equalTo(1));
+    }
+
+    @Test
+    public void threadsOfOneSyncShareTheLeasedClient() throws Exception {
+        CancellableSync.run("push", () -> {
+            RestClientFactory factory = factory();
+            AtomicReference<RestClientFactory> other =
+                    new AtomicReference<>();
+            Thread thread = new Thread(() -> other.set(factory()));
+            thread.start();
+            thread.join();
+            assertThat(other.get(), sameInstance(factory));
+            return null;
+        });
+
+        assertThat(created.get(), equalTo(1));
+        assertThat(worker.getIdleClients(), equalTo(1));
+    }
+
+    @Test
+    public void otherUserGetsItsOwnClient() throws Exception {
+        RestClientFactory admin = CancellableSync.run("push", this::factory);
+        options.setUsername("translator");
+
+        assertThat(CancellableSync.run("push", this::factory),
+                not(sameInstance(admin)));
+        assertThat(worker.getIdleClients(), equalTo(2));
+    }
+
+    @Test
+    public void clientOfAbortedSyncIsNotGivenBack() throws Exception {
+        CountDownLatch leased = new CountDownLatch(1);
+        Thread build = new Thread(() -> {
+            try {
+                CancellableSync.run("push", () -> {
+                    factory();
+                    leased.countDown();
+                    Thread.sleep(60000);
+                    return null;
+                });
+            } catch (Exception e) {
+                // aborted
+            }
+        });
+        build.start();
+        leased.await();
+
+        build.interrupt();
+        build.join();
+
+        assertThat(worker.getLeasedClients(), equalTo(0));
+        assertThat(worker.getIdleClients(), equalTo(0));
+    }
+
+    @Test
+    public void disabledWorkerPoolsNothing() throws Exception {
+        worker.configure(0);
+
+        RestClientFactory first = CancellableSync.run("push", this::factory);
+
+        assertThat(worker.getIdleClients(), equalTo(0));
+        assertThat(CancellableSync.run("push", this::factory),
+                not(sameInstance(first)));
+        assertThat(created.get(), equalTo(2));
+    }
+
+    private RestClientFactory factory() {
+        return worker.restClientFactory(options, handle -> {
+            created.incrementAndGet();
+            return new RestClientFactory(URI.create(options.getUrl().toString()),
+                    options.getUsername(), options.getKey(),
+                    new VersionInfo("unknown", "unknown", "unknown"), false,
+                    false, builder -> builder.register(handle));
+        });
+    }
+}
@@ -0,0 +1,95 @@
+package org.jenkinsci.plugins.zanata.cli.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+
+import org.junit.Before;
+import org.junit.Test;
+import com.google.common.io.ByteStreams;
+
+public class ThresholdGzipOutputStreamTest {
+    private ByteArrayOutputStream wire;
+    private MultivaluedMap<String, Object> headers;
+
+    @Before
+    public void setUp() {
+        wire = new ByteArrayOutputStream();
+        headers = new MultivaluedHashMap<>();
+        headers.putSingle(HttpHeaders.CONTENT_LENGTH, "100");
+    }
+
+    @Test
+    public void bodyBelowThresholdIsWrittenAsIs() throws IOException {
+        byte[] body = body(99);
+
+        TransferCompression.ThresholdGzipOutputStream out = write(body, 100);
+
+        assertThat(wire.toByteArray(), equalTo(body));
+        assertThat(out.getCount(), equalTo(99L));
+        assertThat(headers.containsKey(HttpHeaders.CONTENT_ENCODING),
+                equalTo(false));
+        assertThat(headers.getFirst(HttpHeaders.CONTENT_LENGTH),
+                equalTo((Object) "100"));
+    }
+
+    @Test
+    public void bodyReachingThresholdIsCompressed() throws IOException {
+        byte[] body = body(100000);
+
+        TransferCompression.ThresholdGzipOutputStream out = write(body, 100);
+
+        assertThat(gunzip(wire.toByteArray()), equalTo(body));
+        assertThat(out.getCount(), equalTo(100000L));
+        assertThat(wire.size() < body.length, equalTo(true));
+        assertThat(headers.getFirst(HttpHeaders.CONTENT_ENCODING),
+                equalTo((Object) "gzip"));
+        assertThat(headers.containsKey(HttpHeaders.CONTENT_LENGTH),
+                equalTo(false));
+    }
+
+    @Test
+    public void negativeThresholdNeverCompresses() throws IOException {
+        byte[] body = body(100000);
+
+        write(body, -1);
+
+        assertThat(wire.toByteArray(), equalTo(body));
+        assertThat(headers.containsKey(HttpHeaders.CONTENT_ENCODING),
+                equalTo(false));
+    }
+
+    private TransferCompression.ThresholdGzipOutputStream write(byte[] body,
+            int threshold) throws IOException {
+        TransferCompression.ThresholdGzipOutputStream out =
+                new TransferCompression.ThresholdGzipOutputStream(wire,
+                        threshold, headers);
+        // written in chunks as a message body writer would
+        for (int off = 0; off < body.length; off += 64) {
+            out.write(body, off, Math.min(64, body.length - off));
+        }
+        out.finish();
+        return out;
+    }
+
+    private static byte[] body(int size) {
+        byte[] body = new byte[size];
+        Arrays.fill(body, (byte) 'a');
+        return body;
+    }
+
+    private static byte[] gunzip(byte[] compressed) throws IOException {
+        try (GZIPInputStream in = new GZIPInputStream(
+                new ByteArrayInputStream(compressed))) {
+            return ByteStreams.toByteArray(in);
+        }
+    }
+}
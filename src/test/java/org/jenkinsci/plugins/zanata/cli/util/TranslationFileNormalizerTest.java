@@ -0,0 +1,118 @@
+package org.jenkinsci.plugins.zanata.cli.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TranslationFileNormalizerTest {
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void poRevisionDateIsIgnored() throws IOException {
+        Path before = write("before.po", po("2017-01-01 10:00+1000", "bonjour"));
+        Path after = write("after.po", po("2017-02-02 11:00+1000", "bonjour"));
+
+        assertThat(TranslationFileNormalizer.normalizedDigest(before),
+                equalTo(TranslationFileNormalizer.normalizedDigest(after)));
+    }
+
+    @Test
+    public void poTranslationChangeIsDetected() throws IOException {
+        Path before = write("before.po", po("2017-01-01 10:00+1000", "bonjour"));
+        Path after = write("after.po", po("2017-01-01 10:00+1000", "salut"));
+
+        assertThat(TranslationFileNormalizer.normalizedDigest(before),
+                not(equalTo(TranslationFileNormalizer.normalizedDigest(after))));
+    }
+
+    @Test
+    public void headerCommentIsIgnored() throws IOException {
+        Path before = write("before.po", po("2017-01-01 10:00+1000", "bonjour"));
+        Path after = write("after.po", po("2017-01-01 10:00+1000", "bonjour")
+                .replace("# Generated by Zanata", "# Translators: someone"));
+
+        assertThat(TranslationFileNormalizer.normalizedDigest(before),
+                equalTo(TranslationFileNormalizer.normalizedDigest(after)));
+    }
+
+    @Test
+    public void firstEntryCommentChangeIsDetected() throws IOException {
+        Path before = write("before.po", po("2017-01-01 10:00+1000", "bonjour"));
+        Path after = write("after.po", po("2017-01-01 10:00+1000", "bonjour")
+                .replace("#: hello.c:1", "#: hello.c:2"));
+
+        assertThat(TranslationFileNormalizer.normalizedDigest(before),
+                not(equalTo(TranslationFileNormalizer.normalizedDigest(after))));
+    }
+
+    @Test
+    public void poWithoutHeaderKeepsFirstEntryComments() throws IOException {
+        Path before = write("before.po",
+                "#. greeting\nmsgid \"hello\"\nmsgstr \"bonjour\"\n");
+        Path after = write("after.po",
+                "#. salutation\nmsgid \"hello\"\nmsgstr \"bonjour\"\n");
+
+        assertThat(TranslationFileNormalizer.normalizedDigest(before),
+                not(equalTo(TranslationFileNormalizer.normalizedDigest(after))));
+    }
+
+    @Test
+    public void propertiesTimestampAndOrderAreIgnored() throws IOException {
+        Path before = write("before.properties",
+                "#Mon Jan 02 10:00:00 AEST 2017\na=1\nb=2\n");
+        Path after = write("after.properties",
+                "#Tue Feb 07 11:30:00 AEST 2017\nb=2\na=1\n");
+
+        assertThat(TranslationFileNormalizer.normalizedDigest(before),
+                equalTo(TranslationFileNormalizer.normalizedDigest(after)));
+    }
+
+    @Test
+    public void xliffDateIsIgnored() throws IOException {
+        Path before = write("before.xlf",
+                "<file date=\"2017-01-01T00:00:00Z\" source-language=\"en\">\n");
+        Path after = write("after.xlf",
+                "<file date=\"2017-03-01T00:00:00Z\" source-language=\"en\">\n");
+
+        assertThat(TranslationFileNormalizer.normalizedDigest(before),
+                equalTo(TranslationFileNormalizer.normalizedDigest(after)));
+    }
+
+    @Test
+    public void plainXmlIsNotNormalized() {
+        assertThat(TranslationFileNormalizer.isSupported(
+                temp.getRoot().toPath().resolve("strings.xml")), equalTo(false));
+        assertThat(TranslationFileNormalizer.isSupported(
+                temp.getRoot().toPath().resolve("messages.xliff")),
+                equalTo(true));
+    }
+
+    private Path write(String name, String content) throws IOException {
+        Path file = temp.getRoot().toPath().resolve(name);
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static String po(String revisionDate, String translation) {
+        return "# Generated by Zanata\n" +
+                "msgid \"\"\n" +
+                "msgstr \"\"\n" +
+                "\"PO-Revision-Date: " + revisionDate + "\\n\"\n" +
+                "\"Language: fr\\n\"\n" +
+                "\n" +
+                "#. greeting shown on start\n" +
+                "#: hello.c:1\n" +
+                "msgid \"hello\"\n" +
+                "msgstr \"" + translation + "\"\n";
+    }
+}
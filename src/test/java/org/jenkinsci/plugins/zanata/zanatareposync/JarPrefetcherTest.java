@@ -0,0 +1,40 @@
+package org.jenkinsci.plugins.zanata.zanatareposync;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import hudson.remoting.VirtualChannel;
+
+public class JarPrefetcherTest {
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+    private final List<String> reports = new ArrayList<>();
+
+    @Test
+    public void workspaceOnControllerNeedsNoPrefetch() throws Exception {
+        JarPrefetcher.prefetch(j.jenkins.getRootPath().getChannel(),
+                reports::add);
+
+        assertThat(reports.isEmpty(), equalTo(true));
+    }
+
+    @Test
+    public void agentIsPrefetchedOncePerConnection() throws Exception {
+        VirtualChannel channel = j.createOnlineSlave().getChannel();
+
+        JarPrefetcher.prefetch(channel, reports::add);
+        int afterFirst = reports.size();
+        JarPrefetcher.prefetch(channel, reports::add);
+
+        // nothing is reported if the agent has no jar cache
+        assertThat(afterFirst <= 1, equalTo(true));
+        assertThat(reports.size(), equalTo(afterFirst));
+    }
+}
@@ -0,0 +1,117 @@
+package org.jenkinsci.plugins.zanata.zanatareposync;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.jenkinsci.plugins.zanata.cli.util.ProjectVersionLease;
+import org.junit.After;
+import org.junit.Test;
+
+public class ProjectVersionLeasesTest {
+    private static final String BUILD_A = "job-a #1";
+    private static final String BUILD_B = "job-b #1";
+
+    private final ProjectVersionLeases leases = ProjectVersionLeases.get();
+    // the leases are shared by the controller so every test uses its own key
+    private final String key = "https://zanata.example.com/|project|" +
+            UUID.randomUUID();
+
+    @After
+    public void tearDown() {
+        leases.releaseAll(BUILD_A);
+        leases.releaseAll(BUILD_B);
+    }
+
+    @Test
+    public void leaseIsExclusiveUntilReleased() {
+        assertThat(leases.tryAcquire(key, BUILD_A, null, 0), notNullValue());
+        assertThat(leases.tryAcquire(key, BUILD_B, null, 50), nullValue());
+
+        leases.release(key, BUILD_A, null, true);
+
+        assertThat(leases.tryAcquire(key, BUILD_B, null, 0), notNullValue());
+    }
+
+    @Test
+    public void holderCanAcquireAgain() {
+        assertThat(leases.tryAcquire(key, BUILD_A, null, 0), notNullValue());
+        assertThat(leases.tryAcquire(key, BUILD_A, null, 0), notNullValue());
+    }
+
+    @Test
+    public void releaseByOtherBuildIsIgnored() {
+        leases.tryAcquire(key, BUILD_A, null, 0);
+
+        leases.release(key, BUILD_B, null, true);
+
+        assertThat(leases.tryAcquire(key, BUILD_B, null, 0), nullValue());
+    }
+
+    @Test
+    public void waitingBuildGetsLeaseOnRelease() throws Exception {
+        leases.tryAcquire(key, BUILD_A, null, 0);
+        CompletableFuture<ProjectVersionLease.Grant> waiting =
+                CompletableFuture.supplyAsync(() -> leases.tryAcquire(key,
+                        BUILD_B, null, TimeUnit.SECONDS.toMillis(30)));
+
+        leases.release(key, BUILD_A, null, true);
+
+        assertThat(waiting.get(10, TimeUnit.SECONDS), notNullValue());
+    }
+
+    @Test
+    public void samePushedInputIsReported() {
+        leases.tryAcquire(key, BUILD_A, "digest", 0);
+        leases.release(key, BUILD_A, "digest", true);
+
+        assertThat(leases.tryAcquire(key, BUILD_B, "digest", 0)
+                .getIdenticalPushBy(), equalTo(BUILD_A));
+        leases.release(key, BUILD_B, null, true);
+        assertThat(leases.tryAcquire(key, BUILD_B, "other", 0)
+                .getIdenticalPushBy(), nullValue());
+    }
+
+    @Test
+    public void failedPushIsForgotten() {
+        leases.tryAcquire(key, BUILD_A, "digest", 0);
+        leases.release(key, BUILD_A, "digest", true);
+        leases.tryAcquire(key, BUILD_A, "digest", 0);
+        leases.release(key, BUILD_A, "digest", false);
+
+        assertThat(leases.tryAcquire(key, BUILD_B, "digest", 0)
+                .getIdenticalPushBy(), nullValue());
+    }
+
+    @Test
+    public void finishedBuildDropsAllItsLeases() {
+        int before = leases.getHeld();
+        leases.tryAcquire(key, BUILD_A, null, 0);
+        leases.tryAcquire(key + "|2", BUILD_A, null, 0);
+        assertThat(leases.getHeld(), equalTo(before + 2));
+
+        leases.releaseAll(BUILD_A);
+
+        assertThat(leases.getHeld(), equalTo(before));
+        assertThat(leases.tryAcquire(key, BUILD_B, null, 0), notNullValue());
+    }
+
+    @Test
+    public void exportedCoordinatorOnlyActsForItsBuild() {
+        ProjectVersionLease.Coordinator agentOfA = leases.forOwner(BUILD_A);
+        leases.tryAcquire(key, BUILD_B, null, 0);
+
+        // naming another build changes nothing
+        agentOfA.release(key, BUILD_B, null, true);
+        assertThat(agentOfA.tryAcquire(key, BUILD_B, null, 0), nullValue());
+
+        leases.release(key, BUILD_B, null, true);
+        assertThat(agentOfA.tryAcquire(key, BUILD_B, null, 0), notNullValue());
+        assertThat(leases.tryAcquire(key, BUILD_B, null, 0), nullValue());
+    }
+}
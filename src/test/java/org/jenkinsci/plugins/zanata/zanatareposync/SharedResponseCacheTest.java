@@ -0,0 +1,107 @@
+package org.jenkinsci.plugins.zanata.zanatareposync;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.jenkinsci.plugins.zanata.cli.SyncJobDetail;
+import org.jenkinsci.plugins.zanata.cli.util.ResponseCacheFilter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import com.sun.net.httpserver.HttpServer;
+
+public class SharedResponseCacheTest {
+    private static final String ACCEPT = "application/json";
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+    private HttpServer zanata;
+    private String server;
+    private final List<String> authUsers = new ArrayList<>();
+    private SharedResponseCache cache;
+
+    @Before
+    public void setUp() throws IOException {
+        zanata = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        zanata.createContext("/rest/", exchange -> {
+            authUsers.add(exchange.getRequestHeaders().getFirst("X-Auth-User"));
+            byte[] body = "{\"from\":\"zanata\"}"
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("ETag", "\"v1\"");
+            exchange.getResponseHeaders().add("Content-Type", ACCEPT);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        zanata.start();
+        server = "http://127.0.0.1:" + zanata.getAddress().getPort() + "/";
+        cache = new SharedResponseCache(temp.getRoot().toPath());
+    }
+
+    @After
+    public void tearDown() {
+        zanata.stop(0);
+    }
+
+    @Test
+    public void bodyReportedByAgentIsDownloadedAgainByController() {
+        ResponseCacheFilter.Store store = store("scope-a");
+        String key = server + "rest/projects/p/app|" + ACCEPT;
+
+        store.store(key, entry("\"v1\"", "{\"from\":\"agent\"}"));
+
+        assertThat(store.etagOf(key), equalTo("\"v1\""));
+        assertThat(new String(store.fetch(key, "\"v1\"").getBody(),
+                StandardCharsets.UTF_8), equalTo("{\"from\":\"zanata\"}"));
+        assertThat(authUsers, equalTo(Collections.singletonList("admin")));
+    }
+
+    @Test
+    public void entriesAreOnlyVisibleInTheirScope() {
+        String key = server + "rest/projects/p/app|" + ACCEPT;
+        store("scope-a").store(key, entry("\"v1\"", "ignored"));
+
+        ResponseCacheFilter.Store other = store("scope-b");
+
+        assertThat(other.etagOf(key), equalTo(null));
+        assertThat(other.fetch(key, "\"v1\""), equalTo(null));
+    }
+
+    @Test
+    public void otherServersAreNeitherAskedNorCached() {
+        ResponseCacheFilter.Store store = store("scope-a");
+        String key = "http://other.example.com/rest/projects/p/app|" + ACCEPT;
+
+        store.store(key, entry("\"v1\"", "{}"));
+
+        assertThat(store.etagOf(key), equalTo(null));
+        assertThat(authUsers.isEmpty(), equalTo(true));
+    }
+
+    private ResponseCacheFilter.Store store(String scope) {
+        SyncJobDetail detail = SyncJobDetail.Builder.builder()
+                .setZanataUrl(server)
+                .setZanataUsername("admin")
+                .setZanataSecret("secret")
+                .setResponseCacheScope(scope)
+                .build();
+        // fill right away instead of on the controller's fill thread
+        return cache.storeFor(detail, 1024 * 1024, Runnable::run);
+    }
+
+    private static ResponseCacheFilter.Entry entry(String etag, String body) {
+        return new ResponseCacheFilter.Entry(etag,
+                body.getBytes(StandardCharsets.UTF_8), ACCEPT, null);
+    }
+}
@@ -0,0 +1,101 @@
+package org.jenkinsci.plugins.zanata.zanatareposync;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.util.Calendar;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import hudson.model.Action;
+import hudson.model.FreeStyleProject;
+import hudson.model.Queue;
+import hudson.slaves.DumbSlave;
+
+public class SyncAffinityTest {
+    private static final String REPO = "https://github.com/example/app.git";
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+    private final SyncAffinity.Dispatcher dispatcher =
+            new SyncAffinity.Dispatcher();
+    private DumbSlave warm;
+    private DumbSlave cold;
+
+    @Before
+    public void setUp() throws Exception {
+        warm = j.createOnlineSlave();
+        cold = j.createOnlineSlave();
+        j.jenkins.getDescriptorByType(ZanataBuilder.DescriptorImpl.class)
+                .setAffinityWaitSeconds(300);
+    }
+
+    @Test
+    public void syncWaitsForTheNodeItLastSyncedOn() throws Exception {
+        FreeStyleProject job = syncJob("waits");
+        SyncAffinity.get().record(job, REPO + "/waits", warm.getNodeName());
+        Queue.BuildableItem item = buildable(job);
+
+        assertThat(dispatcher.canTake(cold, item), notNullValue());
+        assertThat(dispatcher.canTake(warm, item), nullValue());
+    }
+
+    @Test
+    public void offlinePreferredNodeIsNotWaitedFor() throws Exception {
+        FreeStyleProject job = syncJob("offline");
+        SyncAffinity.get().record(job, REPO + "/offline", warm.getNodeName());
+        warm.toComputer().setTemporarilyOffline(true, null);
+
+        assertThat(dispatcher.canTake(cold, buildable(job)), nullValue());
+    }
+
+    @Test
+    public void nothingIsHeldWhenWaitIsTurnedOff() throws Exception {
+        FreeStyleProject job = syncJob("off");
+        SyncAffinity.get().record(job, REPO + "/off", warm.getNodeName());
+        j.jenkins.getDescriptorByType(ZanataBuilder.DescriptorImpl.class)
+                .setAffinityWaitSeconds(0);
+
+        assertThat(dispatcher.canTake(cold, buildable(job)), nullValue());
+    }
+
+    @Test
+    public void jobsWithoutSyncAreNotHeld() throws Exception {
+        FreeStyleProject job = j.createFreeStyleProject("no-sync");
+        SyncAffinity.get().record(job, REPO + "/no-sync",
+                warm.getNodeName());
+
+        assertThat(dispatcher.canTake(cold, buildable(job)), nullValue());
+    }
+
+    @Test
+    public void removedNodeFallsBackToNodeOfSameRepo() throws Exception {
+        FreeStyleProject job = syncJob("removed");
+        FreeStyleProject other = syncJob("other");
+        SyncAffinity.get().record(job, REPO + "/shared", "gone");
+        SyncAffinity.get().record(other, REPO + "/shared",
+                warm.getNodeName());
+
+        assertThat(SyncAffinity.get().preferredNode(job),
+                equalTo(warm.getNodeName()));
+        assertThat(dispatcher.canTake(cold, buildable(job)), notNullValue());
+    }
+
+    private FreeStyleProject syncJob(String name) throws Exception {
+        FreeStyleProject job = j.createFreeStyleProject("sync-" + name);
+        job.getBuildersList().add(new ZanataBuilder("zanata"));
+        return job;
+    }
+
+    private static Queue.BuildableItem buildable(FreeStyleProject job) {
+        return new Queue.BuildableItem(new Queue.WaitingItem(
+                Calendar.getInstance(), job,
+                Collections.<Action>emptyList()));
+    }
+}
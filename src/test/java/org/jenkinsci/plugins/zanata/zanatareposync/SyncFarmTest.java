@@ -0,0 +1,104 @@
+package org.jenkinsci.plugins.zanata.zanatareposync;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.eclipse.jgit.api.Git;
+import org.jenkinsci.plugins.zanata.cli.util.SyncStateStore;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.jvnet.hudson.test.JenkinsRule;
+import com.cloudbees.plugins.credentials.CredentialsScope;
+import com.cloudbees.plugins.credentials.SystemCredentialsProvider;
+import com.cloudbees.plugins.credentials.impl.UsernamePasswordCredentialsImpl;
+
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.model.Result;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+public class SyncFarmTest {
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Before
+    public void setUp() throws Exception {
+        SystemCredentialsProvider.getInstance().getCredentials().add(
+                new UsernamePasswordCredentialsImpl(CredentialsScope.GLOBAL,
+                        "zanata", "", "admin", "secret"));
+    }
+
+    @Test
+    public void failedRepositoryDoesNotStopTheOthers() throws Exception {
+        String missing = new File(temp.getRoot(), "missing").getPath();
+        String good = gitRepo("good");
+
+        FreeStyleBuild build = farm(missing, good);
+
+        j.assertBuildStatus(Result.UNSTABLE, build);
+        JSONObject report = report(build);
+        assertThat(report.getInt("succeeded"), equalTo(1));
+        assertThat(report.getInt("failed"), equalTo(1));
+        JSONArray repositories = report.getJSONArray("repositories");
+        assertThat(repositories.getJSONObject(0).getBoolean("success"),
+                equalTo(false));
+        assertThat(repositories.getJSONObject(1).getBoolean("success"),
+                equalTo(true));
+        assertThat(repositories.getJSONObject(1).getString("gitPush"),
+                equalTo("nothing to push"));
+    }
+
+    @Test
+    public void buildFailsWhenEveryRepositoryFails() throws Exception {
+        FreeStyleBuild build = farm(
+                new File(temp.getRoot(), "missing-a").getPath(),
+                new File(temp.getRoot(), "missing-b").getPath());
+
+        j.assertBuildStatus(Result.FAILURE, build);
+        assertThat(report(build).getInt("failed"), equalTo(2));
+    }
+
+    private FreeStyleBuild farm(String... urls) throws Exception {
+        FreeStyleProject job = j.createFreeStyleProject();
+        // only checkout and reporting are exercised, there is no Zanata
+        ZanataBuilder builder = new ZanataBuilder("zanata");
+        builder.setPushToZanata(false);
+        builder.setPullFromZanata(false);
+        ZanataSyncRepository[] repositories =
+                new ZanataSyncRepository[urls.length];
+        for (int i = 0; i < urls.length; i++) {
+            repositories[i] = new ZanataSyncRepository(urls[i], "master", null);
+        }
+        builder.setRepositories(Arrays.asList(repositories));
+        job.getBuildersList().add(builder);
+        return job.scheduleBuild2(0).get();
+    }
+
+    private String gitRepo(String name) throws Exception {
+        File dir = temp.newFolder(name);
+        try (Git git = Git.init().setDirectory(dir).call()) {
+            Files.write(new File(dir, "messages.properties").toPath(),
+                    "hello=Hello\n".getBytes(StandardCharsets.UTF_8));
+            git.add().addFilepattern(".").call();
+            git.commit().setMessage("initial").setAuthor("dev",
+                    "dev@example.com").call();
+        }
+        return dir.getPath();
+    }
+
+    private static JSONObject report(FreeStyleBuild build) throws Exception {
+        return JSONObject.fromObject(build.getWorkspace()
+                .child(SyncStateStore.CACHE_DIR).child(SyncFarm.REPORT_FILE)
+                .readToString());
+    }
+}
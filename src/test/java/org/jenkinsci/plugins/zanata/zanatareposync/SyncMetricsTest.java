@@ -0,0 +1,64 @@
+package org.jenkinsci.plugins.zanata.zanatareposync;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.jenkinsci.plugins.zanata.cli.SyncResult;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import hudson.slaves.DumbSlave;
+
+public class SyncMetricsTest {
+    private static final String MAIN = "https://zanata.example.com/";
+    private static final String STAGING = "https://staging.example.com/";
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+    private final SyncMetrics metrics = SyncMetrics.get();
+
+    @Test
+    public void runningPhasesAreCountedPerServerAndPhase() {
+        long push = metrics.begin("app #1", Arrays.asList(MAIN, STAGING),
+                SyncResult.PHASE_PUSH);
+        long pull = metrics.begin("app #2", Collections.singletonList(MAIN),
+                SyncResult.PHASE_PULL);
+        try {
+            assertThat(metrics.getActiveSyncs(), equalTo(2));
+            assertThat(metrics.getActiveSyncsByServerAndPhase()
+                    .get(MAIN + "|push"), equalTo(1));
+            assertThat(metrics.getActiveSyncsByServerAndPhase()
+                    .get(STAGING + "|push"), equalTo(1));
+            assertThat(metrics.getActiveSyncsByServerAndPhase()
+                    .get(MAIN + "|pull"), equalTo(1));
+        } finally {
+            metrics.end(push);
+            metrics.end(pull);
+        }
+
+        assertThat(metrics.getActiveSyncs(), equalTo(0));
+        assertThat(metrics.getLongestRunningMillis(), equalTo(0L));
+    }
+
+    @Test
+    public void clientsReportedByOnlineAgentsAreAddedUp() throws Exception {
+        DumbSlave agent = j.createOnlineSlave();
+        int leased = metrics.getLeasedClients();
+        int idle = metrics.getIdleClients();
+
+        metrics.recordClients(agent.getNodeName(), 2, 1);
+        metrics.recordClients("removed-agent", 5, 5);
+
+        assertThat(metrics.getLeasedClients(), equalTo(leased + 2));
+        assertThat(metrics.getIdleClients(), equalTo(idle + 1));
+
+        agent.toComputer().setTemporarilyOffline(true, null);
+
+        assertThat(metrics.getLeasedClients(), equalTo(leased));
+        assertThat(metrics.getIdleClients(), equalTo(idle));
+    }
+}
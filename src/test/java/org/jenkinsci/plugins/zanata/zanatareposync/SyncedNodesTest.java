@@ -0,0 +1,52 @@
+package org.jenkinsci.plugins.zanata.zanatareposync;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SyncedNodesTest {
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void syncedNodeIsKnownAfterRestart() {
+        Path file = temp.getRoot().toPath().resolve(SyncedNodes.FILE);
+        new SyncedNodes(file).add("agent-1");
+
+        SyncedNodes restarted = new SyncedNodes(file);
+
+        assertThat(restarted.contains("agent-1"), equalTo(true));
+        assertThat(restarted.contains("agent-2"), equalTo(false));
+    }
+
+    @Test
+    public void eachNodeIsWrittenOnce() throws IOException {
+        Path file = temp.getRoot().toPath().resolve(SyncedNodes.FILE);
+        SyncedNodes nodes = new SyncedNodes(file);
+
+        nodes.add("agent-1");
+        nodes.add("agent-1");
+        nodes.add("");
+        new SyncedNodes(file).add("agent-1");
+
+        assertThat(Files.readAllLines(file, StandardCharsets.UTF_8),
+                contains("agent-1"));
+    }
+
+    @Test
+    public void missingFileMeansNoNodeSynced() {
+        SyncedNodes nodes = new SyncedNodes(
+                temp.getRoot().toPath().resolve(SyncedNodes.FILE));
+
+        assertThat(nodes.contains("agent-1"), equalTo(false));
+    }
+}
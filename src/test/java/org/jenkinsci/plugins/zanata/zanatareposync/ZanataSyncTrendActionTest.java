@@ -0,0 +1,52 @@
+package org.jenkinsci.plugins.zanata.zanatareposync;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ZanataSyncTrendActionTest {
+    private static final List<Long> TEN =
+            Arrays.asList(70L, 10L, 100L, 40L, 20L, 90L, 30L, 60L, 50L, 80L);
+
+    @Test
+    public void percentileIsNearestRankOfSortedValues() {
+        assertThat(ZanataSyncTrendAction.percentile(TEN, 50), equalTo(50L));
+        assertThat(ZanataSyncTrendAction.percentile(TEN, 90), equalTo(90L));
+        assertThat(ZanataSyncTrendAction.percentile(TEN, 95), equalTo(100L));
+        assertThat(ZanataSyncTrendAction.percentile(TEN, 100), equalTo(100L));
+    }
+
+    @Test
+    public void lowPercentileIsSmallestValue() {
+        assertThat(ZanataSyncTrendAction.percentile(TEN, 0), equalTo(10L));
+        assertThat(ZanataSyncTrendAction.percentile(TEN, 1), equalTo(10L));
+    }
+
+    @Test
+    public void singleValueIsEveryPercentile() {
+        List<Long> one = Collections.singletonList(42L);
+
+        assertThat(ZanataSyncTrendAction.percentile(one, 50), equalTo(42L));
+        assertThat(ZanataSyncTrendAction.percentile(one, 90), equalTo(42L));
+    }
+
+    @Test
+    public void noValuesGiveZero() {
+        assertThat(ZanataSyncTrendAction.percentile(
+                Collections.<Long>emptyList(), 50), equalTo(0L));
+    }
+
+    @Test
+    public void valuesAreNotReordered() {
+        List<Long> values = Arrays.asList(3L, 1L, 2L);
+
+        ZanataSyncTrendAction.percentile(values, 50);
+
+        assertThat(values, equalTo(Arrays.asList(3L, 1L, 2L)));
+    }
+}